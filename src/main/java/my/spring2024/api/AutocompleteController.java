@@ -0,0 +1,57 @@
+package my.spring2024.api;
+
+import my.spring2024.api.DTO.SuggestionDTO;
+import my.spring2024.app.AutocompleteService;
+import my.spring2024.app.PrefixIndex;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Контроллер автодополнения.
+ * Предоставляет подсказки по названиям проектов и именам пользователей.
+ */
+@RestController
+@RequestMapping("/api/autocomplete")
+public class AutocompleteController {
+    private static final int MAX_LIMIT = 50;
+
+    private final AutocompleteService autocompleteService;
+
+    public AutocompleteController(AutocompleteService autocompleteService) {
+        this.autocompleteService = autocompleteService;
+    }
+
+    /**
+     * Возвращает подсказки по названиям проектов.
+     *
+     * @param prefix начало названия проекта
+     * @param limit максимальное количество подсказок (не более 50)
+     * @return список подсказок, упорядоченный по количеству участников
+     */
+    @GetMapping("/projects")
+    public ResponseEntity<List<SuggestionDTO>> suggestProjects(@RequestParam String prefix,
+                                                               @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(convertToDto(autocompleteService.suggestProjects(prefix, Math.min(limit, MAX_LIMIT))));
+    }
+
+    /**
+     * Возвращает подсказки по именам пользователей.
+     *
+     * @param prefix начало имени или фамилии пользователя
+     * @param limit максимальное количество подсказок (не более 50)
+     * @return список подсказок, упорядоченный по средней оценке
+     */
+    @GetMapping("/users")
+    public ResponseEntity<List<SuggestionDTO>> suggestUsers(@RequestParam String prefix,
+                                                            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(convertToDto(autocompleteService.suggestUsers(prefix, Math.min(limit, MAX_LIMIT))));
+    }
+
+    private List<SuggestionDTO> convertToDto(List<PrefixIndex.Entry> entries) {
+        return entries.stream()
+                .map(entry -> new SuggestionDTO(entry.id(), entry.name()))
+                .toList();
+    }
+}
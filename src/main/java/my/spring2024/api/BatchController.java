@@ -0,0 +1,284 @@
+package my.spring2024.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import jakarta.validation.Valid;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.api.DTO.*;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.PathContainer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Контроллер пакетного выполнения операций API.
+ * Принимает упорядоченный список операций вида "метод + путь + тело" и выполняет их
+ * через методы существующих контроллеров за один HTTP-запрос.
+ * Операции записи выполняются по порядку в одной транзакции: если операция завершилась ошибкой,
+ * транзакция откатывается, а следующие операции не выполняются.
+ * Индексы и метрики в памяти сервисы обновляют только после фиксации, поэтому откат пакета их не затрагивает.
+ * Если транзакция не фиксируется из-за ошибки базы данных, например нарушения ограничения при сбросе изменений,
+ * пакет завершается ответом 409 Conflict (или 500 при прочих ошибках) с этим же статусом у каждой операции.
+ * Пакет, состоящий только из независимых операций чтения, выполняется параллельно.
+ * Путь и строковые значения тела могут ссылаться на результаты предыдущих операций
+ * в виде ${номер.поле}, например ${0.id}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/batch")
+public class BatchController {
+    private static final Pattern REFERENCE = Pattern.compile("\\$\\{(\\d+)((?:\\.\\w+)*)}");
+
+    @FunctionalInterface
+    private interface Handler {
+        ResponseEntity<?> handle(Map<String, String> variables, JsonNode body);
+    }
+
+    private record Route(HttpMethod method, PathPattern pattern, Handler handler) {
+    }
+
+    private final List<Route> routes = new ArrayList<>();
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readTransaction;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    public BatchController(UserController userController, ProjectController projectController,
+                           PostController postController, ReviewController reviewController,
+                           PlatformTransactionManager transactionManager,
+                           ObjectProvider<ObjectMapper> objectMapper, ObjectProvider<Validator> validator) {
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper.getIfAvailable(ObjectMapper::new);
+        this.validator = validator.getIfAvailable(() -> Validation.buildDefaultValidatorFactory().getValidator());
+
+        route(HttpMethod.POST, "/api/users/register", (v, b) -> userController.createUser(body(b, UserDTO.class)));
+        route(HttpMethod.GET, "/api/users/{id}", (v, b) -> single(userController.getUsersByIds(List.of(id(v, "id")))));
+        route(HttpMethod.DELETE, "/api/users/{id}", (v, b) -> userController.deleteUser(id(v, "id")));
+
+        route(HttpMethod.POST, "/api/projects/create", (v, b) -> projectController.createProject(body(b, ProjectDTO.class)));
+        route(HttpMethod.GET, "/api/projects/{id}", (v, b) -> single(projectController.getProjectsByIds(List.of(id(v, "id")))));
+        route(HttpMethod.DELETE, "/api/projects/{id}", (v, b) -> projectController.deleteProject(id(v, "id")));
+        route(HttpMethod.POST, "/api/projects/{id}/users/{userId}",
+                (v, b) -> projectController.addUserToProject(id(v, "id"), id(v, "userId")));
+
+        route(HttpMethod.POST, "/api/posts/create", (v, b) -> postController.createPost(body(b, PostDTO.class)));
+        route(HttpMethod.GET, "/api/posts/{id}", (v, b) -> single(postController.getPostsByIds(List.of(id(v, "id")))));
+        route(HttpMethod.DELETE, "/api/posts/{id}", (v, b) -> postController.deletePost(id(v, "id")));
+
+        route(HttpMethod.POST, "/api/reviews/create", (v, b) -> reviewController.createReview(body(b, ReviewDTO.class)));
+        route(HttpMethod.GET, "/api/reviews/{id}", (v, b) -> single(reviewController.getReviewsByIds(List.of(id(v, "id")))));
+        route(HttpMethod.PUT, "/api/reviews/{id}", (v, b) -> reviewController.updateReview(id(v, "id"), body(b, ReviewDTO.class)));
+        route(HttpMethod.DELETE, "/api/reviews/{id}", (v, b) -> reviewController.deleteReview(id(v, "id")));
+    }
+
+    /**
+     * Выполняет пакет операций.
+     *
+     * @param request список операций
+     * @return результат каждой операции в порядке запроса и признак фиксации транзакции
+     */
+    @PostMapping
+    public ResponseEntity<BatchResponseDTO> execute(@Valid @RequestBody BatchRequestDTO request) {
+        var operations = request.getOperations();
+        if (isIndependentReads(operations)) {
+            return ResponseEntity.ok(new BatchResponseDTO(true, executeInParallel(operations)));
+        }
+        var results = new ArrayList<BatchResultDTO>(operations.size());
+        boolean committed;
+        try {
+            committed = Boolean.TRUE.equals(writeTransaction.execute(status -> executeInOrder(operations, results, status)));
+        } catch (TransactionException | DataAccessException e) {
+            log.warn("Не удалось зафиксировать пакет из {} операций", operations.size(), e);
+            return commitFailed(operations, e);
+        }
+        log.info("Выполнен пакет из {} операций, транзакция {}", operations.size(), committed ? "зафиксирована" : "откачена");
+        return ResponseEntity.ok(new BatchResponseDTO(committed, results));
+    }
+
+    private boolean executeInOrder(List<BatchOperationDTO> operations, List<BatchResultDTO> results, TransactionStatus status) {
+        for (BatchOperationDTO operation : operations) {
+            if (status.isRollbackOnly()) {
+                results.add(new BatchResultDTO(HttpStatus.FAILED_DEPENDENCY.value(), null));
+                continue;
+            }
+            BatchResultDTO result;
+            try {
+                result = invoke(resolve(operation, results));
+            } catch (IllegalArgumentException e) {
+                result = new BatchResultDTO(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            }
+            results.add(result);
+            if (!HttpStatus.valueOf(result.getStatus()).is2xxSuccessful()) {
+                status.setRollbackOnly();
+            }
+        }
+        return !status.isRollbackOnly();
+    }
+
+    private static ResponseEntity<BatchResponseDTO> commitFailed(List<BatchOperationDTO> operations, RuntimeException e) {
+        var status = e instanceof DataIntegrityViolationException || e instanceof ConcurrencyFailureException
+                ? HttpStatus.CONFLICT : HttpStatus.INTERNAL_SERVER_ERROR;
+        var results = operations.stream()
+                .map(operation -> new BatchResultDTO(status.value(), "Транзакция пакета не зафиксирована"))
+                .toList();
+        return ResponseEntity.status(status).body(new BatchResponseDTO(false, results));
+    }
+
+    private List<BatchResultDTO> executeInParallel(List<BatchOperationDTO> operations) {
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<BatchResultDTO>>(operations.size());
+            for (BatchOperationDTO operation : operations) {
+                futures.add(executor.submit(() -> readTransaction.execute(status -> invoke(operation))));
+            }
+            var results = new ArrayList<BatchResultDTO>(operations.size());
+            for (Future<BatchResultDTO> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (Exception e) {
+                    log.warn("Операция пакета завершилась ошибкой", e);
+                    results.add(new BatchResultDTO(HttpStatus.INTERNAL_SERVER_ERROR.value(), null));
+                }
+            }
+            return results;
+        }
+    }
+
+    private BatchResultDTO invoke(BatchOperationDTO operation) {
+        HttpMethod method = HttpMethod.valueOf(operation.getMethod().toUpperCase());
+        var path = PathContainer.parsePath(operation.getPath());
+        for (Route route : routes) {
+            if (!route.method().equals(method)) continue;
+            var match = route.pattern().matchAndExtract(path);
+            if (match == null) continue;
+            try {
+                ResponseEntity<?> response = route.handler().handle(match.getUriVariables(), operation.getBody());
+                return new BatchResultDTO(response.getStatusCode().value(), response.getBody());
+            } catch (IllegalArgumentException e) {
+                return new BatchResultDTO(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            } catch (RuntimeException e) {
+                log.warn("Операция пакета {} {} завершилась ошибкой", method, operation.getPath(), e);
+                return new BatchResultDTO(HttpStatus.INTERNAL_SERVER_ERROR.value(), null);
+            }
+        }
+        return new BatchResultDTO(HttpStatus.NOT_FOUND.value(), null);
+    }
+
+    private boolean isIndependentReads(List<BatchOperationDTO> operations) {
+        for (BatchOperationDTO operation : operations) {
+            if (!HttpMethod.GET.matches(operation.getMethod().toUpperCase())
+                    || REFERENCE.matcher(operation.getPath()).find()) {
+                return false;
+            }
+        }
+        return operations.size() > 1;
+    }
+
+    private BatchOperationDTO resolve(BatchOperationDTO operation, List<BatchResultDTO> results) {
+        var path = resolveText(operation.getPath(), results);
+        var body = operation.getBody() == null ? null : resolveNode(operation.getBody().deepCopy(), results);
+        return new BatchOperationDTO(operation.getMethod(), path.asText(), body);
+    }
+
+    private JsonNode resolveNode(JsonNode node, List<BatchResultDTO> results) {
+        if (node.isTextual()) {
+            return resolveText(node.asText(), results);
+        }
+        if (node instanceof ObjectNode object) {
+            object.fields().forEachRemaining(field -> field.setValue(resolveNode(field.getValue(), results)));
+        } else if (node instanceof ArrayNode array) {
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, resolveNode(array.get(i), results));
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Подставляет результаты предыдущих операций в строку.
+     * Если строка целиком состоит из ссылки, значение подставляется с сохранением типа.
+     */
+    private JsonNode resolveText(String text, List<BatchResultDTO> results) {
+        Matcher matcher = REFERENCE.matcher(text);
+        if (matcher.matches()) {
+            return lookup(matcher, results);
+        }
+        var resolved = new StringBuilder();
+        matcher.reset();
+        while (matcher.find()) {
+            matcher.appendReplacement(resolved, Matcher.quoteReplacement(lookup(matcher, results).asText()));
+        }
+        matcher.appendTail(resolved);
+        return TextNode.valueOf(resolved.toString());
+    }
+
+    private JsonNode lookup(Matcher reference, List<BatchResultDTO> results) {
+        int index = Integer.parseInt(reference.group(1));
+        if (index >= results.size()) {
+            throw new IllegalArgumentException("Ссылка на невыполненную операцию " + index);
+        }
+        JsonNode value = objectMapper.valueToTree(results.get(index).getBody());
+        for (String field : reference.group(2).split("\\.")) {
+            if (!field.isEmpty()) {
+                value = value.path(field);
+            }
+        }
+        if (value.isMissingNode() || value.isNull()) {
+            throw new IllegalArgumentException("Ссылка " + reference.group() + " не найдена в результате операции " + index);
+        }
+        return value;
+    }
+
+    private void route(HttpMethod method, String pattern, Handler handler) {
+        routes.add(new Route(method, PathPatternParser.defaultInstance.parse(pattern), handler));
+    }
+
+    private <T> T body(JsonNode body, Class<T> type) {
+        if (body == null) {
+            throw new IllegalArgumentException("Тело операции обязательно");
+        }
+        T dto = objectMapper.convertValue(body, type);
+        var violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.iterator().next().getMessage());
+        }
+        return dto;
+    }
+
+    private static Long id(Map<String, String> variables, String name) {
+        return Long.valueOf(variables.get(name));
+    }
+
+    private static <D> ResponseEntity<D> single(ResponseEntity<BatchDTO<D>> response) {
+        var batch = response.getBody();
+        if (batch == null || batch.getItems().isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(batch.getItems().getFirst());
+    }
+}
@@ -0,0 +1,52 @@
+package my.spring2024.api;
+
+import my.spring2024.api.DTO.BatchDTO;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Построение ответов на пакетные запросы по списку идентификаторов.
+ */
+final class Batches {
+    /**
+     * Максимальное количество идентификаторов в одном запросе.
+     */
+    static final int MAX_IDS = 1000;
+
+    private Batches() {
+    }
+
+    /**
+     * Проверяет, допустим ли размер запроса.
+     * @param ids запрошенные идентификаторы
+     * @return true, если идентификаторы заданы и их не больше {@link #MAX_IDS}
+     */
+    static boolean isValid(List<Long> ids) {
+        return ids != null && !ids.isEmpty() && ids.size() <= MAX_IDS;
+    }
+
+    /**
+     * Собирает ответ из найденных сущностей.
+     * @param ids запрошенные идентификаторы
+     * @param found найденные сущности в порядке запроса
+     * @param converter преобразование сущности в dto
+     * @return dto найденных сущностей в порядке запроса и список ненайденных идентификаторов
+     */
+    static <E, D> BatchDTO<D> of(List<Long> ids, Map<Long, E> found, Function<E, D> converter) {
+        var items = new ArrayList<D>(found.size());
+        for (E entity : found.values()) {
+            items.add(converter.apply(entity));
+        }
+        var missing = new ArrayList<Long>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id != null && !found.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        return new BatchDTO<>(items, missing);
+    }
+}
@@ -0,0 +1,181 @@
+package my.spring2024.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import my.spring2024.app.RequestCoalescer;
+import my.spring2024.app.SerializedResponseCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Построение ответов карточек сущностей из кэша сериализованных представлений.
+ * Формат ответа выбирается по заголовку Accept с учетом весов q: JSON (по умолчанию и для шаблонов), CBOR или Smile;
+ * если ни один из них не принимается, возвращается 406 Not Acceptable.
+ * Сжатие gzip выбирается по заголовку Accept-Encoding с учетом весов q.
+ * ETag зависит от формата и сжатия, так что у каждого варианта ответа свой ETag.
+ * Одновременные промахи кэша по одной карточке строят ее один раз через {@link RequestCoalescer}.
+ */
+@Component
+class CachedResponses {
+    static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private record Format(String name, MediaType mediaType, ObjectMapper mapper) {
+    }
+
+    private final SerializedResponseCache cache;
+    private final RequestCoalescer coalescer;
+    private final Format json;
+    private final List<Format> formats;
+
+    CachedResponses(SerializedResponseCache cache, RequestCoalescer coalescer, ObjectProvider<ObjectMapper> objectMapper) {
+        this.cache = cache;
+        this.coalescer = coalescer;
+        this.json = new Format("json", MediaType.APPLICATION_JSON, objectMapper.getIfAvailable(ObjectMapper::new));
+        this.formats = List.of(json,
+                new Format("cbor", MediaType.APPLICATION_CBOR, Jackson2ObjectMapperBuilder.cbor().build()),
+                new Format("smile", SMILE, Jackson2ObjectMapperBuilder.smile().build()));
+    }
+
+    /**
+     * Данные для построения записи кэша при промахе.
+     * @param version версия сущности
+     * @param dto DTO сущности
+     */
+    record Card(Long version, Object dto) {
+    }
+
+    /**
+     * Возвращает представление сущности в запрошенном формате из кэша, а при промахе строит и сохраняет его.
+     * Одновременные промахи по одной сущности и формату объединяются: сущность загружается, преобразуется в DTO
+     * и сериализуется один раз, а остальные запросы получают ту же запись кэша. Между потоками передаются
+     * только неизменяемые байты записи, а не сущности.
+     * @param type тип сущности
+     * @param id идентификатор сущности
+     * @param request запрос
+     * @param loader загрузка сущности и построение DTO; пустой, если сущность не найдена
+     * @return запись кэша; пустой, если сущность не найдена
+     * @throws ResponseStatusException 406 Not Acceptable, если клиент не принимает ни один из форматов
+     */
+    Optional<SerializedResponseCache.Entry> get(String type, Long id, WebRequest request, Supplier<Optional<Card>> loader) {
+        var format = format(request);
+        var cached = cache.get(type, id, format.name());
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return coalescer.execute(type, List.of(id, format.name()), () -> {
+            var built = cache.get(type, id, format.name());
+            if (built != null) {
+                return Optional.of(built);
+            }
+            return loader.get().map(card -> put(type, id, format, card));
+        });
+    }
+
+    private SerializedResponseCache.Entry put(String type, Long id, Format format, Card card) {
+        try {
+            return cache.put(type, id, format.name(), card.version(), format.mapper().writeValueAsBytes(card.dto()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать " + type + " с id " + id, e);
+        }
+    }
+
+    /**
+     * Строит ответ из записи кэша: 304, если клиент уже имеет это представление,
+     * иначе готовые байты, сжатые gzip, если клиент это поддерживает.
+     * @param entry запись кэша
+     * @param request запрос
+     * @return ответ
+     */
+    ResponseEntity<byte[]> respond(SerializedResponseCache.Entry entry, WebRequest request) {
+        boolean gzip = entry.gzip() != null && acceptsGzip(request);
+        String eTag = ETags.of(entry, gzip);
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        var response = ResponseEntity.ok()
+                .eTag(eTag)
+                .contentType(format(request).mediaType())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.gzip());
+        }
+        return response.body(entry.body());
+    }
+
+    /**
+     * Выбирает формат с наибольшим весом в заголовке Accept; при равных весах - в порядке заголовка.
+     * Шаблоны типов выбирают JSON. Формат с весом 0 не выбирается.
+     */
+    private Format format(WebRequest request) {
+        var accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || accept.isBlank()) return json;
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "Некорректный заголовок Accept", e);
+        }
+        mediaTypes.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() <= 0) break;
+            for (Format format : formats) {
+                if (mediaType.includes(format.mediaType()) && !rejected(mediaTypes, format)) return format;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "Поддерживаются форматы JSON, CBOR и Smile");
+    }
+
+    private static boolean rejected(List<MediaType> mediaTypes, Format format) {
+        return mediaTypes.stream().anyMatch(mediaType ->
+                mediaType.getQualityValue() <= 0 && mediaType.equalsTypeAndSubtype(format.mediaType()));
+    }
+
+    /**
+     * Проверяет, принимает ли клиент gzip: явный вес gzip важнее веса *.
+     */
+    private static boolean acceptsGzip(WebRequest request) {
+        var acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) return false;
+        Double gzip = null;
+        Double any = null;
+        for (String part : acceptEncoding.split(",")) {
+            var tokens = part.split(";");
+            var coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < tokens.length; i++) {
+                var parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = quality;
+            } else if (coding.equals("*")) {
+                any = quality;
+            }
+        }
+        double quality = gzip != null ? gzip : any != null ? any : 0;
+        return quality > 0;
+    }
+}
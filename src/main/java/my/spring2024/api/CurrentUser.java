@@ -0,0 +1,16 @@
+package my.spring2024.api;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Помечает параметр метода контроллера, в который подставляется текущий аутентифицированный пользователь.
+ * Подставляется отсоединенный снимок собственных полей пользователя без связей; связи загружаются по идентификатору.
+ * Если пользователь не аутентифицирован или не зарегистрирован, подставляется null.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUser {
+}
@@ -0,0 +1,16 @@
+package my.spring2024.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchDTO<T> {
+    private List<T> items;
+
+    private List<Long> missing;
+}
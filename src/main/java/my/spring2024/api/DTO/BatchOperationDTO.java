@@ -0,0 +1,20 @@
+package my.spring2024.api.DTO;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOperationDTO {
+    @NotBlank(message = "Method is required")
+    private String method;
+
+    @NotBlank(message = "Path is required")
+    private String path;
+
+    private JsonNode body;
+}
@@ -0,0 +1,19 @@
+package my.spring2024.api.DTO;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRequestDTO {
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 50, message = "No more than 50 operations are allowed")
+    private List<@Valid BatchOperationDTO> operations;
+}
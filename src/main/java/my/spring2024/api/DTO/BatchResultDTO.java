@@ -0,0 +1,14 @@
+package my.spring2024.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResultDTO {
+    private int status;
+
+    private Object body;
+}
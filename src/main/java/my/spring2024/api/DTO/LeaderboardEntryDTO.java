@@ -0,0 +1,16 @@
+package my.spring2024.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntryDTO {
+    private Long id;
+
+    private long reviews;
+
+    private double averageRating;
+}
@@ -3,11 +3,15 @@ package my.spring2024.api.DTO;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import my.spring2024.domain.TeamRoleTag;
 import my.spring2024.domain.User;
 
 import java.util.List;
 
+@Data
+@NoArgsConstructor
 public class PostDTO {
     private Long id;
 
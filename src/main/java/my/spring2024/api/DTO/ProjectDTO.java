@@ -1,12 +1,16 @@
 package my.spring2024.api.DTO;
 
+import jakarta.validation.constraints.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import my.spring2024.domain.Review;
 import my.spring2024.domain.User;
-import jakarta.validation.constraints.*;
 
 import java.net.URL;
 import java.util.List;
 
+@Data
+@NoArgsConstructor
 public class ProjectDTO {
     private Long id;
 
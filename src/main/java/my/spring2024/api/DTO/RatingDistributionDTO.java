@@ -0,0 +1,26 @@
+package my.spring2024.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingDistributionDTO {
+    private long total;
+
+    private List<Long> counts;
+
+    private double mean;
+
+    private int p25;
+
+    private int median;
+
+    private int p75;
+
+    private int p90;
+}
@@ -1,9 +1,13 @@
 package my.spring2024.api.DTO;
 
 import jakarta.validation.constraints.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import my.spring2024.domain.Project;
 import my.spring2024.domain.User;
 
+@Data
+@NoArgsConstructor
 public class ReviewDTO {
     private Long id;
 
@@ -0,0 +1,17 @@
+package my.spring2024.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import my.spring2024.domain.TeamRoleTag;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TeamMemberDTO {
+    private Long userId;
+
+    private TeamRoleTag role;
+
+    private double rating;
+}
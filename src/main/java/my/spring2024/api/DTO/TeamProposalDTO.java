@@ -0,0 +1,19 @@
+package my.spring2024.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import my.spring2024.domain.TeamRoleTag;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TeamProposalDTO {
+    private List<TeamMemberDTO> members;
+
+    private List<TeamRoleTag> missingRoles;
+
+    private double score;
+}
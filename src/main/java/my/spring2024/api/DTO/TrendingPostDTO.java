@@ -0,0 +1,26 @@
+package my.spring2024.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingPostDTO {
+    private Long id;
+
+    private String title;
+
+    private String text;
+
+    private Long authorId;
+
+    private int respondents;
+
+    private Instant createdAt;
+
+    private Instant lastRespondedAt;
+}
@@ -0,0 +1,38 @@
+package my.spring2024.api;
+
+import my.spring2024.app.SerializedResponseCache;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Построение ETag по сериализованному представлению ответа.
+ * Представление включает связанные сущности и коллекции, поэтому ETag меняется при изменении любой из них,
+ * а не только версии корневой сущности.
+ */
+final class ETags {
+    private ETags() {
+    }
+
+    /**
+     * Возвращает ETag для сериализованного представления.
+     * @param representation байты ответа
+     * @return значение заголовка ETag
+     */
+    static String of(byte[] representation) {
+        return quote(DigestUtils.md5DigestAsHex(representation));
+    }
+
+    /**
+     * Возвращает ETag для представления из кэша сериализованных ответов.
+     * Сжатый ответ - отдельный вариант представления, поэтому его ETag отличается суффиксом -gzip.
+     * @param entry запись кэша
+     * @param gzip отправляется ли сжатая копия
+     * @return значение заголовка ETag
+     */
+    static String of(SerializedResponseCache.Entry entry, boolean gzip) {
+        return quote(gzip ? entry.digest() + "-gzip" : entry.digest());
+    }
+
+    private static String quote(String digest) {
+        return "\"" + digest + "\"";
+    }
+}
@@ -0,0 +1,67 @@
+package my.spring2024.api;
+
+import my.spring2024.api.DTO.LeaderboardEntryDTO;
+import my.spring2024.app.Leaderboard;
+import my.spring2024.app.LeaderboardService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Контроллер таблиц лидеров.
+ * Таблицы упорядочиваются по средней оценке (order=RATING, только участники с минимальным количеством отзывов)
+ * или по количеству отзывов (order=VOLUME).
+ */
+@RestController
+@RequestMapping("/api/leaderboards")
+public class LeaderboardController {
+    private final LeaderboardService leaderboardService;
+
+    public LeaderboardController(LeaderboardService leaderboardService) {
+        this.leaderboardService = leaderboardService;
+    }
+
+    /**
+     * Возвращает таблицу лучших проектов.
+     *
+     * @param order порядок таблицы
+     * @param pageable объект для пагинации
+     * @return страница таблицы
+     */
+    @GetMapping("/projects")
+    public ResponseEntity<Page<LeaderboardEntryDTO>> getProjects(@RequestParam(defaultValue = "RATING") Leaderboard.Order order,
+                                                                 Pageable pageable) {
+        return ResponseEntity.ok(leaderboardService.getProjects(order, pageable).map(this::convertToDto));
+    }
+
+    /**
+     * Возвращает таблицу пользователей по полученным отзывам.
+     *
+     * @param order порядок таблицы
+     * @param pageable объект для пагинации
+     * @return страница таблицы
+     */
+    @GetMapping("/receivers")
+    public ResponseEntity<Page<LeaderboardEntryDTO>> getReceivers(@RequestParam(defaultValue = "RATING") Leaderboard.Order order,
+                                                                  Pageable pageable) {
+        return ResponseEntity.ok(leaderboardService.getReceivers(order, pageable).map(this::convertToDto));
+    }
+
+    /**
+     * Возвращает таблицу пользователей по отправленным отзывам.
+     *
+     * @param order порядок таблицы
+     * @param pageable объект для пагинации
+     * @return страница таблицы
+     */
+    @GetMapping("/reviewers")
+    public ResponseEntity<Page<LeaderboardEntryDTO>> getReviewers(@RequestParam(defaultValue = "VOLUME") Leaderboard.Order order,
+                                                                  Pageable pageable) {
+        return ResponseEntity.ok(leaderboardService.getReviewers(order, pageable).map(this::convertToDto));
+    }
+
+    private LeaderboardEntryDTO convertToDto(Leaderboard.Standing standing) {
+        return new LeaderboardEntryDTO(standing.id(), standing.reviews(), standing.averageRating());
+    }
+}
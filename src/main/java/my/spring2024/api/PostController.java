@@ -1,12 +1,26 @@
 package my.spring2024.api;
 
 import jakarta.validation.Valid;
+import my.spring2024.api.DTO.BatchDTO;
 import my.spring2024.api.DTO.PostDTO;
+import my.spring2024.api.DTO.TeamMemberDTO;
+import my.spring2024.api.DTO.TeamProposalDTO;
+import my.spring2024.api.DTO.TrendingPostDTO;
 import my.spring2024.app.PostService;
+import my.spring2024.app.SerializedResponseCache;
+import my.spring2024.app.TeamFormationService;
+import my.spring2024.app.TrendingService;
 import my.spring2024.domain.Post;
 import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * Контроллер для управления постами.
@@ -15,13 +29,21 @@ import org.springframework.web.bind.annotation.*;
 @RestController
 @RequestMapping("/api/posts")
 public class PostController {
+    private static final int MAX_TEAMS = 10;
 
     private final PostService postService;
     private final ModelMapper modelMapper;
+    private final CachedResponses cachedResponses;
+    private final TrendingService trendingService;
+    private final TeamFormationService teamFormationService;
 
-    public PostController(PostService postService, ModelMapper modelMapper) {
+    public PostController(PostService postService, ModelMapper modelMapper, CachedResponses cachedResponses,
+                          TrendingService trendingService, TeamFormationService teamFormationService) {
         this.postService = postService;
         this.modelMapper = modelMapper;
+        this.cachedResponses = cachedResponses;
+        this.trendingService = trendingService;
+        this.teamFormationService = teamFormationService;
     }
 
     /**
@@ -38,17 +60,91 @@ public class PostController {
 
     /**
      * Получает пост по его идентификатору.
+     * ETag вычисляется по сериализованному ответу, включающему связанные сущности; если он совпадает
+     * с If-None-Match, возвращается 304 Not Modified. Сериализованный ответ кэшируется до изменения поста
+     * или истечения времени жизни записи, и пока запись в кэше, ответ строится без загрузки поста.
      *
      * @param id идентификатор поста
-     * @return dto поста, если найден, или 404 Not Found
+     * @param request запрос
+     * @return dto поста, если найден, 304 Not Modified, если пост не изменился, или 404 Not Found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<PostDTO> getPostById(@PathVariable Long id) {
-        Post post = postService.getPostById(id);
-        if (post == null) {
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<byte[]> getPostById(@PathVariable Long id, WebRequest request) {
+        return cachedResponses.get(SerializedResponseCache.POST, id, request, () -> Optional.ofNullable(postService.getPostById(id))
+                        .map(post -> new CachedResponses.Card(post.getVersion(), convertToDto(post))))
+                .map(entry -> cachedResponses.respond(entry, request))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Возвращает все посты с возможностью пагинации.
+     * Если задан параметр fields, из базы выбираются и возвращаются только перечисленные поля dto.
+     *
+     * @param fields имена полей dto через запятую
+     * @param pageable объект для пагинации
+     * @return страница dto, или 400 Bad Request, если у dto нет какого-либо из полей
+     */
+    @GetMapping
+    public ResponseEntity<Page<?>> getAllPosts(@RequestParam(required = false) Set<String> fields, Pageable pageable) {
+        if (fields == null || fields.isEmpty()) {
+            return ResponseEntity.ok(postService.getAllPosts(null, pageable).map(this::convertToDto));
         }
-        return ResponseEntity.ok(convertToDto(post));
+        var attributes = SparseFields.resolve(PostDTO.class, fields);
+        if (attributes == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(postService.getAllPosts(attributes, null, pageable));
+    }
+
+    /**
+     * Получает dto постов по списку идентификаторов одним запросом.
+     *
+     * @param ids идентификаторы через запятую, не более {@value Batches#MAX_IDS}
+     * @return dto найденных постов в порядке запроса и список ненайденных идентификаторов,
+     * или 400 Bad Request, если идентификаторов нет или их слишком много
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<BatchDTO<PostDTO>> getPostsByIds(@RequestParam List<Long> ids) {
+        if (!Batches.isValid(ids)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(Batches.of(ids, postService.getPostsByIds(ids), this::convertToDto));
+    }
+
+    /**
+     * Возвращает ленту популярных постов.
+     * Посты упорядочены по числу недавних откликов; лента хранится в памяти и не требует запросов к базе данных.
+     *
+     * @param limit максимальное количество постов
+     * @return список постов в порядке убывания популярности
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<List<TrendingPostDTO>> getTrendingPosts(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(trendingService.getTrending(limit).stream()
+                .map(entry -> new TrendingPostDTO(entry.id(), entry.title(), entry.text(), entry.authorId(),
+                        entry.respondents(), entry.createdAt(), entry.lastRespondedAt()))
+                .toList());
+    }
+
+    /**
+     * Предлагает команды под роли, требуемые постом.
+     * Команды составляются из пользователей с нужными ролями; выше оцениваются команды
+     * с высокими оценками участников и участниками, уже работавшими вместе.
+     *
+     * @param id идентификатор поста
+     * @param limit максимальное количество команд (не более 10)
+     * @return список команд в порядке убывания оценки, или 404 Not Found, если пост не найден
+     */
+    @GetMapping("/{id}/teams")
+    public ResponseEntity<List<TeamProposalDTO>> proposeTeams(@PathVariable Long id,
+                                                              @RequestParam(defaultValue = "3") int limit) {
+        return teamFormationService.proposeTeams(id, Math.min(limit, MAX_TEAMS))
+                .map(proposals -> ResponseEntity.ok(proposals.stream()
+                        .map(proposal -> new TeamProposalDTO(proposal.members().stream()
+                                .map(member -> new TeamMemberDTO(member.userId(), member.role(), member.rating()))
+                                .toList(), proposal.missingRoles(), proposal.score()))
+                        .toList()))
+                .orElse(ResponseEntity.notFound().build());
     }
 
     /**
@@ -0,0 +1,83 @@
+package my.spring2024.api;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.app.PostCreatedEvent;
+import my.spring2024.app.PostStreamService;
+import my.spring2024.domain.TeamRoleTag;
+import my.spring2024.domain.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Контроллер потока событий постов (Server-Sent Events).
+ * Вместо периодического опроса списка постов клиент держит открытое соединение и получает
+ * новые посты с нужными ролями, а аутентифицированный пользователь - также изменения откликов на свои посты.
+ * Каждое соединение обслуживается отдельным виртуальным потоком, который вычитывает буфер подписки.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/posts/stream")
+public class PostStreamController {
+    private static final Duration HEARTBEAT = Duration.ofSeconds(15);
+
+    private final PostStreamService postStreamService;
+    private final Duration timeout;
+
+    public PostStreamController(PostStreamService postStreamService,
+                                @Value("${posts.stream.timeout:PT30M}") Duration timeout) {
+        this.postStreamService = postStreamService;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Открывает поток событий постов.
+     * События "post" содержат новые посты, события "respondents" - изменения откликов на посты текущего пользователя.
+     * Если клиент не успевает читать события, соединение закрывается, и клиенту следует переподключиться.
+     *
+     * @param roles роли, посты с которыми нужно получать; если не заданы, то все новые посты
+     * @param user текущий пользователь
+     * @return поток событий
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) Set<TeamRoleTag> roles, @CurrentUser User user) {
+        var subscription = postStreamService.subscribe(roles, user == null ? null : user.getId());
+        var emitter = new SseEmitter(timeout.toMillis());
+        emitter.onCompletion(() -> postStreamService.unsubscribe(subscription));
+        emitter.onTimeout(() -> postStreamService.unsubscribe(subscription));
+        emitter.onError(e -> postStreamService.unsubscribe(subscription));
+        Thread.ofVirtual().name("post-stream").start(() -> send(subscription, emitter));
+        return emitter;
+    }
+
+    private void send(PostStreamService.Subscription subscription, SseEmitter emitter) {
+        try {
+            while (!subscription.isClosed()) {
+                Object event = subscription.next(HEARTBEAT);
+                if (event == null) {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } else {
+                    emitter.send(SseEmitter.event()
+                            .name(event instanceof PostCreatedEvent ? "post" : "respondents")
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+            }
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Поток событий постов закрыт клиентом");
+            postStreamService.unsubscribe(subscription);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            postStreamService.unsubscribe(subscription);
+            emitter.complete();
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package my.spring2024.api;
 
 import jakarta.validation.Valid;
+import my.spring2024.api.DTO.BatchDTO;
 import my.spring2024.api.DTO.ProjectDTO;
 import my.spring2024.app.ProjectService;
+import my.spring2024.app.SerializedResponseCache;
 import my.spring2024.domain.Project;
 import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
@@ -10,8 +12,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Контроллер для управления пользователями.
@@ -23,10 +28,12 @@ public class ProjectController {
 
     private final ProjectService projectService;
     private final ModelMapper modelMapper;
+    private final CachedResponses cachedResponses;
 
-    public ProjectController(ProjectService projectService, ModelMapper modelMapper) {
+    public ProjectController(ProjectService projectService, ModelMapper modelMapper, CachedResponses cachedResponses) {
         this.projectService = projectService;
         this.modelMapper = modelMapper;
+        this.cachedResponses = cachedResponses;
     }
 
     /**
@@ -43,18 +50,53 @@ public class ProjectController {
 
     /**
      * Получает проект по его идентификатору.
+     * ETag вычисляется по сериализованному ответу, включающему связанные сущности; если он совпадает
+     * с If-None-Match, возвращается 304 Not Modified. Сериализованный ответ кэшируется до изменения проекта
+     * или истечения времени жизни записи, и пока запись в кэше, ответ строится без загрузки проекта.
      *
      * @param id идентификатор проекта
-     * @return DTO проекта, если найден, или 404 Not Found
+     * @param request запрос
+     * @return DTO проекта, если найден, 304 Not Modified, если проект не изменился, или 404 Not Found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ProjectDTO> getProjectById(@PathVariable Long id) {
-        Optional<Project> projectOptional = projectService.getProjectById(id);
-        return projectOptional
-                .map(project -> ResponseEntity.ok(convertToDto(project)))
+    public ResponseEntity<byte[]> getProjectById(@PathVariable Long id, WebRequest request) {
+        return cachedResponses.get(SerializedResponseCache.PROJECT, id, request, () -> projectService.getProjectById(id)
+                        .map(project -> new CachedResponses.Card(project.getVersion(), convertToDto(project))))
+                .map(entry -> cachedResponses.respond(entry, request))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    /**
+     * Получает dto проектов по списку идентификаторов одним запросом.
+     *
+     * @param ids идентификаторы через запятую, не более {@value Batches#MAX_IDS}
+     * @return dto найденных проектов в порядке запроса и список ненайденных идентификаторов,
+     * или 400 Bad Request, если идентификаторов нет или их слишком много
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<BatchDTO<ProjectDTO>> getProjectsByIds(@RequestParam List<Long> ids) {
+        if (!Batches.isValid(ids)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(Batches.of(ids, projectService.getProjectsByIds(ids), this::convertToDto));
+    }
+
+    /**
+     * Добавляет пользователя в проект.
+     *
+     * @param id идентификатор проекта
+     * @param userId идентификатор пользователя
+     * @return DTO обновленного проекта, или 404 Not Found, если проект или пользователь не найден
+     */
+    @PostMapping("/{id}/users/{userId}")
+    public ResponseEntity<ProjectDTO> addUserToProject(@PathVariable Long id, @PathVariable Long userId) {
+        Project project = projectService.addUserToProject(id, userId);
+        if (project == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(convertToDto(project));
+    }
+
     /**
      * Удаляет проект по его идентификатору.
      *
@@ -72,15 +114,24 @@ public class ProjectController {
     }
 
     /**
-     Возвращает все посты с возможностью пагинации и фильтрации.
+     Возвращает все проекты с возможностью пагинации и фильтрации.
+     * Если задан параметр fields, из базы выбираются и возвращаются только перечисленные поля dto проекта.
+     * @param fields имена полей dto проекта через запятую
      * @param spec спецификация для фильтрации
      * @param pageable объект для пагинации
-     * @return страница постов
+     * @return страница проектов, или 400 Bad Request, если у dto проекта нет какого-либо из полей
      */
     @GetMapping
-    public ResponseEntity<Page<Project>> getAllProjects(Specification<Project> spec, Pageable pageable) {
-        Page<Project> projects = projectService.getAllProjects(spec, pageable);
-        return ResponseEntity.ok(projects);
+    public ResponseEntity<Page<?>> getAllProjects(@RequestParam(required = false) Set<String> fields,
+                                                  Specification<Project> spec, Pageable pageable) {
+        if (fields == null || fields.isEmpty()) {
+            return ResponseEntity.ok(projectService.getAllProjects(spec, pageable));
+        }
+        var attributes = SparseFields.resolve(ProjectDTO.class, fields);
+        if (attributes == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(projectService.getAllProjects(attributes, spec, pageable));
     }
     private Project convertToEntity(ProjectDTO projectDTO) {
         return modelMapper.map(projectDTO, Project.class);
@@ -0,0 +1,76 @@
+package my.spring2024.api;
+
+import my.spring2024.api.DTO.RatingDistributionDTO;
+import my.spring2024.app.RatingDistributionService;
+import my.spring2024.app.RatingHistogram;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Контроллер распределений оценок.
+ * Возвращает количество оценок каждого значения, среднюю оценку, медиану и процентили.
+ */
+@RestController
+@RequestMapping("/api/ratings")
+public class RatingController {
+    private final RatingDistributionService ratingDistributionService;
+
+    public RatingController(RatingDistributionService ratingDistributionService) {
+        this.ratingDistributionService = ratingDistributionService;
+    }
+
+    /**
+     * Возвращает распределение всех оценок в системе.
+     *
+     * @return распределение оценок
+     */
+    @GetMapping
+    public ResponseEntity<RatingDistributionDTO> getOverallDistribution() {
+        return ResponseEntity.ok(convertToDto(ratingDistributionService.getOverallDistribution()));
+    }
+
+    /**
+     * Возвращает распределение оценок проекта.
+     *
+     * @param id идентификатор проекта
+     * @return распределение оценок; пустое, если у проекта нет отзывов
+     */
+    @GetMapping("/projects/{id}")
+    public ResponseEntity<RatingDistributionDTO> getProjectDistribution(@PathVariable Long id) {
+        return ResponseEntity.ok(convertToDto(ratingDistributionService.getProjectDistribution(id)));
+    }
+
+    /**
+     * Возвращает общее распределение оценок нескольких проектов.
+     *
+     * @param ids идентификаторы проектов через запятую, не более {@value Batches#MAX_IDS}
+     * @return распределение оценок, или 400 Bad Request, если идентификаторов нет или их слишком много
+     */
+    @GetMapping(value = "/projects", params = "ids")
+    public ResponseEntity<RatingDistributionDTO> getProjectsDistribution(@RequestParam List<Long> ids) {
+        if (!Batches.isValid(ids)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(convertToDto(ratingDistributionService.getProjectsDistribution(ids)));
+    }
+
+    /**
+     * Возвращает распределение оценок, полученных пользователем.
+     *
+     * @param id идентификатор пользователя
+     * @return распределение оценок; пустое, если у пользователя нет отзывов
+     */
+    @GetMapping("/users/{id}")
+    public ResponseEntity<RatingDistributionDTO> getUserDistribution(@PathVariable Long id) {
+        return ResponseEntity.ok(convertToDto(ratingDistributionService.getUserDistribution(id)));
+    }
+
+    private RatingDistributionDTO convertToDto(RatingHistogram histogram) {
+        return new RatingDistributionDTO(histogram.total(), Arrays.stream(histogram.counts()).boxed().toList(),
+                histogram.mean(), histogram.quantile(0.25), histogram.quantile(0.5), histogram.quantile(0.75),
+                histogram.quantile(0.9));
+    }
+}
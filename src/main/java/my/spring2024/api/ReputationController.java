@@ -0,0 +1,52 @@
+package my.spring2024.api;
+
+import my.spring2024.api.DTO.ReputationDTO;
+import my.spring2024.app.ReputationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Контроллер репутации пользователей.
+ * Репутация вычисляется по графу отзывов и учитывает репутацию авторов отзывов.
+ */
+@RestController
+@RequestMapping("/api/reputation")
+public class ReputationController {
+    private static final int MAX_LIMIT = 100;
+
+    private final ReputationService reputationService;
+
+    public ReputationController(ReputationService reputationService) {
+        this.reputationService = reputationService;
+    }
+
+    /**
+     * Возвращает репутацию пользователя.
+     *
+     * @param id идентификатор пользователя
+     * @return репутация пользователя, или 404 Not Found, если пользователь не участвует ни в одном отзыве
+     */
+    @GetMapping("/users/{id}")
+    public ResponseEntity<ReputationDTO> getReputation(@PathVariable Long id) {
+        var score = reputationService.getReputation(id);
+        if (score.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new ReputationDTO(id, score.getAsDouble()));
+    }
+
+    /**
+     * Возвращает пользователей с наибольшей репутацией.
+     *
+     * @param limit максимальное количество пользователей (не более 100)
+     * @return список пользователей в порядке убывания репутации
+     */
+    @GetMapping("/leaderboard")
+    public ResponseEntity<List<ReputationDTO>> getLeaderboard(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(reputationService.getLeaderboard(Math.min(limit, MAX_LIMIT)).stream()
+                .map(score -> new ReputationDTO(score.userId(), score.score()))
+                .toList());
+    }
+}
@@ -1,6 +1,9 @@
 package my.spring2024.api;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
+import my.spring2024.api.DTO.BatchDTO;
 import my.spring2024.api.DTO.ReviewDTO;
 import my.spring2024.app.ProjectService;
 import my.spring2024.app.ReviewService;
@@ -9,11 +12,17 @@ import my.spring2024.domain.Project;
 import my.spring2024.domain.Review;
 import my.spring2024.domain.User;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -28,12 +37,15 @@ public class ReviewController {
     private final UserService userService;
     private final ProjectService projectService;
     private final ModelMapper modelMapper;
+    private final ObjectMapper objectMapper;
 
-    public ReviewController(ReviewService reviewService, UserService userService, ProjectService projectService, ModelMapper modelMapper) {
+    public ReviewController(ReviewService reviewService, UserService userService, ProjectService projectService, ModelMapper modelMapper,
+                            ObjectProvider<ObjectMapper> objectMapper) {
         this.reviewService = reviewService;
         this.userService = userService;
         this.projectService = projectService;
         this.modelMapper = modelMapper;
+        this.objectMapper = objectMapper.getIfAvailable(ObjectMapper::new);
     }
     /**
      * Создает новый отзыв.
@@ -49,17 +61,67 @@ public class ReviewController {
 
     /**
      * Получает отзыв по его идентификатору.
+     * ETag вычисляется по сериализованному отзыву вместе с отправителем, получателем и проектом;
+     * если он совпадает с If-None-Match, возвращается 304 Not Modified.
+     * Отзыв загружается и сериализуется при каждом запросе: представление зависит от связанных сущностей,
+     * изменения которых не удаляют его из кэша, поэтому 304 экономит только передачу тела ответа.
      *
      * @param id идентификатор отзыва
-     * @return DTO отзыва, если найден, или 404 Not Found
+     * @param request запрос
+     * @return DTO отзыва, если найден, 304 Not Modified, если отзыв не изменился, или 404 Not Found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ReviewDTO> getReviewById(@PathVariable Long id) {
+    public ResponseEntity<ReviewDTO> getReviewById(@PathVariable Long id, WebRequest request) {
         Review review = reviewService.getReviewById(id);
         if (review == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(convertToDto(review));
+        ReviewDTO dto = convertToDto(review);
+        String eTag;
+        try {
+            eTag = ETags.of(objectMapper.writeValueAsBytes(dto));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать отзыв с id " + id, e);
+        }
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).body(dto);
+    }
+
+    /**
+     * Возвращает все отзывы с возможностью пагинации.
+     * Если задан параметр fields, из базы выбираются и возвращаются только перечисленные поля dto.
+     *
+     * @param fields имена полей dto через запятую
+     * @param pageable объект для пагинации
+     * @return страница dto, или 400 Bad Request, если у dto нет какого-либо из полей
+     */
+    @GetMapping
+    public ResponseEntity<Page<?>> getAllReviews(@RequestParam(required = false) Set<String> fields, Pageable pageable) {
+        if (fields == null || fields.isEmpty()) {
+            return ResponseEntity.ok(reviewService.getAllReviews(null, pageable).map(this::convertToDto));
+        }
+        var attributes = SparseFields.resolve(ReviewDTO.class, fields);
+        if (attributes == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(reviewService.getAllReviews(attributes, null, pageable));
+    }
+
+    /**
+     * Получает dto отзывов по списку идентификаторов одним запросом.
+     *
+     * @param ids идентификаторы через запятую, не более {@value Batches#MAX_IDS}
+     * @return dto найденных отзывов в порядке запроса и список ненайденных идентификаторов,
+     * или 400 Bad Request, если идентификаторов нет или их слишком много
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<BatchDTO<ReviewDTO>> getReviewsByIds(@RequestParam List<Long> ids) {
+        if (!Batches.isValid(ids)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(Batches.of(ids, reviewService.getReviewsByIds(ids), this::convertToDto));
     }
 
     /**
@@ -0,0 +1,55 @@
+package my.spring2024.api;
+
+import my.spring2024.api.DTO.SimilarityDTO;
+import my.spring2024.app.MinHashIndex;
+import my.spring2024.app.SimilarityService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Контроллер похожих проектов и пользователей.
+ * Сходство оценивается по общим участникам проектов.
+ */
+@RestController
+@RequestMapping("/api/similar")
+public class SimilarityController {
+    private static final int MAX_LIMIT = 100;
+
+    private final SimilarityService similarityService;
+
+    public SimilarityController(SimilarityService similarityService) {
+        this.similarityService = similarityService;
+    }
+
+    /**
+     * Возвращает проекты с похожим составом участников.
+     *
+     * @param id идентификатор проекта
+     * @param limit максимальное количество проектов (не более 100)
+     * @return похожие проекты в порядке убывания сходства
+     */
+    @GetMapping("/projects/{id}")
+    public ResponseEntity<List<SimilarityDTO>> getSimilarProjects(@PathVariable Long id,
+                                                                  @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(convertToDto(similarityService.getSimilarProjects(id, Math.min(limit, MAX_LIMIT))));
+    }
+
+    /**
+     * Возвращает пользователей, участвовавших в тех же проектах, что и заданный пользователь.
+     *
+     * @param id идентификатор пользователя
+     * @param limit максимальное количество пользователей (не более 100)
+     * @return похожие пользователи в порядке убывания сходства
+     */
+    @GetMapping("/users/{id}")
+    public ResponseEntity<List<SimilarityDTO>> getSimilarUsers(@PathVariable Long id,
+                                                               @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(convertToDto(similarityService.getSimilarUsers(id, Math.min(limit, MAX_LIMIT))));
+    }
+
+    private static List<SimilarityDTO> convertToDto(List<MinHashIndex.Match> matches) {
+        return matches.stream().map(match -> new SimilarityDTO(match.id(), match.similarity())).toList();
+    }
+}
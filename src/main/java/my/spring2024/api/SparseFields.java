@@ -0,0 +1,51 @@
+package my.spring2024.api;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Разбор параметра fields списочных запросов.
+ * Запрашивать можно только поля dto эндпоинта, поэтому выборка полей не раскрывает поля сущности,
+ * которых нет в полном ответе, например версию или системную роль пользователя.
+ */
+final class SparseFields {
+    private SparseFields() {
+    }
+
+    /**
+     * Сопоставляет запрошенные поля dto полям сущности.
+     * @param dto класс dto эндпоинта
+     * @param fields запрошенные имена полей dto
+     * @param renamed поля dto, которые называются в сущности иначе: имя в dto - имя в сущности
+     * @return имена полей ответа и соответствующие им поля сущности; null, если у dto нет какого-либо из полей
+     */
+    static Map<String, String> resolve(Class<?> dto, Set<String> fields, Map<String, String> renamed) {
+        var allowed = Arrays.stream(dto.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                .map(Field::getName)
+                .collect(Collectors.toSet());
+        var attributes = new LinkedHashMap<String, String>();
+        for (String field : fields) {
+            if (!allowed.contains(field)) {
+                return null;
+            }
+            attributes.put(field, renamed.getOrDefault(field, field));
+        }
+        return attributes;
+    }
+
+    /**
+     * Сопоставляет запрошенные поля dto одноименным полям сущности.
+     * @param dto класс dto эндпоинта
+     * @param fields запрошенные имена полей dto
+     * @return имена полей ответа и соответствующие им поля сущности; null, если у dto нет какого-либо из полей
+     */
+    static Map<String, String> resolve(Class<?> dto, Set<String> fields) {
+        return resolve(dto, fields, Map.of());
+    }
+}
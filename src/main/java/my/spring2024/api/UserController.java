@@ -1,14 +1,23 @@
 package my.spring2024.api;
 
 import jakarta.validation.Valid;
+import my.spring2024.api.DTO.BatchDTO;
 import my.spring2024.api.DTO.UserDTO;
+import my.spring2024.app.SerializedResponseCache;
 import my.spring2024.app.UserService;
 import my.spring2024.domain.User;
 import org.modelmapper.ModelMapper;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Контроллер для управления пользователями.
@@ -20,37 +29,87 @@ public class  UserController {
 
     private final UserService userService;
     private final ModelMapper modelMapper;
+    private final CachedResponses cachedResponses;
 
-    public UserController(UserService userService, ModelMapper modelMapper) {
+    public UserController(UserService userService, ModelMapper modelMapper, CachedResponses cachedResponses) {
         this.userService = userService;
         this.modelMapper = modelMapper;
+        this.cachedResponses = cachedResponses;
     }
 
     /**
      * Создает нового пользователя.
+     * Если email зарегистрирован одновременно другим запросом после проверки, вставку отклоняет
+     * уникальный индекс по email, и ответ также 409 Conflict.
      *
      * @param userDTO dto пользователя для сохранения
-     * @return сохраненный dto пользователя
+     * @return сохраненный dto пользователя, или 409 Conflict, если email уже зарегистрирован
      */
     @PostMapping("/register")
     public ResponseEntity<UserDTO> createUser(@RequestBody @Valid UserDTO userDTO) {
-        User savedUser = userService.saveUser(convertToEntity(userDTO));
+        if (userService.isEmailRegistered(userDTO.getEmail())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        User savedUser;
+        try {
+            savedUser = userService.saveUser(convertToEntity(userDTO));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         return ResponseEntity.ok(convertToDto(savedUser));
     }
 
     /**
      * Получает dto пользователя по его идентификатору.
+     * ETag вычисляется по сериализованному ответу, включающему связанные сущности; если он совпадает
+     * с If-None-Match, возвращается 304 Not Modified. Сериализованный ответ кэшируется до изменения пользователя
+     * или истечения времени жизни записи, и пока запись в кэше, ответ строится без загрузки пользователя.
      *
      * @param id идентификатор пользователя
-     * @return dto пользователя, если найден, или Not Found
+     * @param request запрос
+     * @return dto пользователя, если найден, Not Modified, если пользователь не изменился, или Not Found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<UserDTO> getUserById(@PathVariable Long id) {
-        Optional<User> user = userService.getUserById(id);
-        return userService.getUserById(id)
-                .map(this::convertToDto)
-                .map(ResponseEntity::ok)
-                .orElseGet(()-> ResponseEntity.notFound().build());
+    public ResponseEntity<byte[]> getUserById(@PathVariable Long id, WebRequest request) {
+        return cachedResponses.get(SerializedResponseCache.USER, id, request, () -> userService.getUserById(id)
+                        .map(user -> new CachedResponses.Card(user.getVersion(), convertToDto(user))))
+                .map(entry -> cachedResponses.respond(entry, request))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Возвращает всех пользователей с возможностью пагинации.
+     * Если задан параметр fields, из базы выбираются и возвращаются только перечисленные поля dto.
+     *
+     * @param fields имена полей dto через запятую
+     * @param pageable объект для пагинации
+     * @return страница dto, или 400 Bad Request, если у dto нет какого-либо из полей
+     */
+    @GetMapping
+    public ResponseEntity<Page<?>> getAllUsers(@RequestParam(required = false) Set<String> fields, Pageable pageable) {
+        if (fields == null || fields.isEmpty()) {
+            return ResponseEntity.ok(userService.getAllUsers(null, pageable).map(this::convertToDto));
+        }
+        var attributes = SparseFields.resolve(UserDTO.class, fields, Map.of("role", "teamRole"));
+        if (attributes == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userService.getAllUsers(attributes, null, pageable));
+    }
+
+    /**
+     * Получает dto пользователей по списку идентификаторов одним запросом.
+     *
+     * @param ids идентификаторы через запятую, не более {@value Batches#MAX_IDS}
+     * @return dto найденных пользователей в порядке запроса и список ненайденных идентификаторов,
+     * или 400 Bad Request, если идентификаторов нет или их слишком много
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<BatchDTO<UserDTO>> getUsersByIds(@RequestParam List<Long> ids) {
+        if (!Batches.isValid(ids)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(Batches.of(ids, userService.getUsersByIds(ids), this::convertToDto));
     }
 
     /**
@@ -69,6 +128,23 @@ public class  UserController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Получает dto текущего аутентифицированного пользователя.
+     * Ответ совпадает с карточкой пользователя и берется из того же кэша сериализованных представлений,
+     * поскольку снимок текущего пользователя не содержит связей.
+     *
+     * @param user текущий пользователь
+     * @param request запрос
+     * @return dto пользователя, или Not Found, если пользователь не аутентифицирован или не зарегистрирован
+     */
+    @GetMapping("/me")
+    public ResponseEntity<byte[]> getCurrentUser(@CurrentUser User user, WebRequest request) {
+        if (user == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return getUserById(user.getId(), request);
+    }
+
     /**
      * Получает dto пользователя по его email.
      *
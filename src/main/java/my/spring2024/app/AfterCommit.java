@@ -0,0 +1,39 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Отложенное выполнение действий до фиксации текущей транзакции.
+ * Через него обновляются построенные в памяти индексы и метрики, чтобы откат транзакции
+ * не оставлял в них изменений, которых нет в базе данных.
+ * Действия выполняются в порядке регистрации; без активной транзакции действие выполняется сразу.
+ */
+@Slf4j
+final class AfterCommit {
+    private AfterCommit() {
+    }
+
+    /**
+     * Выполняет действие после фиксации текущей транзакции; при откате действие не выполняется.
+     * Ошибка действия записывается в журнал и не передается вызывающему, так как транзакция уже зафиксирована.
+     * @param action действие
+     */
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    log.error("Не удалось выполнить действие после фиксации транзакции", e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,141 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.domain.Project;
+import my.spring2024.domain.User;
+import my.spring2024.infrastructure.ProjectRepository;
+import my.spring2024.infrastructure.ReviewRepository;
+import my.spring2024.infrastructure.UserRepository;
+import org.hibernate.Hibernate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сервис автодополнения названий проектов и имен пользователей.
+ * Индексы хранятся в памяти и обновляются из методов записи сервисов,
+ * поэтому подсказки выдаются без обращения к базе данных.
+ * Проекты упорядочиваются по количеству участников, пользователи - по средней оценке.
+ */
+@Slf4j
+@Service
+public class AutocompleteService {
+    private final ProjectRepository projectRepository;
+    private final UserRepository userRepository;
+    private final ReviewRepository reviewRepository;
+
+    private final PrefixIndex projectIndex = new PrefixIndex();
+    private final PrefixIndex userIndex = new PrefixIndex();
+
+    public AutocompleteService(ProjectRepository projectRepository, UserRepository userRepository, ReviewRepository reviewRepository) {
+        this.projectRepository = projectRepository;
+        this.userRepository = userRepository;
+        this.reviewRepository = reviewRepository;
+    }
+
+    /**
+     * Перестраивает индексы по данным из базы данных.
+     * Вызывается при старте приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        projectIndex.clear();
+        userIndex.clear();
+
+        Map<Long, Double> memberCounts = new HashMap<>();
+        for (Object[] row : projectRepository.countUsersByProject()) {
+            memberCounts.put((Long) row[0], ((Number) row[1]).doubleValue());
+        }
+        for (Project project : projectRepository.findAll()) {
+            projectIndex.put(project.getId(), project.getName(), memberCounts.getOrDefault(project.getId(), 0.0));
+        }
+
+        Map<Long, Double> ratings = new HashMap<>();
+        for (Object[] row : reviewRepository.findAverageRatingByReceiver()) {
+            ratings.put((Long) row[0], ((Number) row[1]).doubleValue());
+        }
+        for (User user : userRepository.findAll()) {
+            userIndex.put(user.getId(), fullName(user), ratings.getOrDefault(user.getId(), 0.0));
+        }
+        log.info("Индексы автодополнения построены: {} проектов, {} пользователей", projectIndex.size(), userIndex.size());
+    }
+
+    /**
+     * Возвращает подсказки по названиям проектов.
+     * @param prefix начало названия проекта
+     * @param limit максимальное количество подсказок
+     * @return подсказки, упорядоченные по количеству участников
+     */
+    public List<PrefixIndex.Entry> suggestProjects(String prefix, int limit) {
+        return projectIndex.search(prefix, limit);
+    }
+
+    /**
+     * Возвращает подсказки по именам пользователей.
+     * @param prefix начало имени или фамилии пользователя
+     * @param limit максимальное количество подсказок
+     * @return подсказки, упорядоченные по средней оценке
+     */
+    public List<PrefixIndex.Entry> suggestUsers(String prefix, int limit) {
+        return userIndex.search(prefix, limit);
+    }
+
+    /**
+     * Добавляет или обновляет проект в индексе.
+     * Количество участников обновляется, только если список участников уже загружен.
+     * @param project проект
+     */
+    public void indexProject(Project project) {
+        var users = project.getUsers();
+        if (users != null && Hibernate.isInitialized(users)) {
+            projectIndex.put(project.getId(), project.getName(), users.size());
+        } else {
+            projectIndex.putName(project.getId(), project.getName());
+        }
+    }
+
+    /**
+     * Удаляет проект из индекса.
+     * @param projectId идентификатор проекта
+     */
+    public void removeProject(Long projectId) {
+        projectIndex.remove(projectId);
+    }
+
+    /**
+     * Добавляет или обновляет пользователя в индексе, сохраняя его текущую оценку.
+     * @param user пользователь
+     */
+    public void indexUser(User user) {
+        userIndex.putName(user.getId(), fullName(user));
+    }
+
+    /**
+     * Обновляет среднюю оценку пользователя в индексе.
+     * @param userId идентификатор пользователя
+     * @param averageRating средняя оценка
+     */
+    public void updateUserRating(Long userId, double averageRating) {
+        userIndex.updatePopularity(userId, averageRating);
+    }
+
+    /**
+     * Удаляет пользователя из индекса.
+     * @param userId идентификатор пользователя
+     */
+    public void removeUser(Long userId) {
+        userIndex.remove(userId);
+    }
+
+    private static String fullName(User user) {
+        var firstname = user.getFirstname() == null ? "" : user.getFirstname();
+        var lastname = user.getLastname() == null ? "" : user.getLastname();
+        return (firstname + " " + lastname).trim();
+    }
+}
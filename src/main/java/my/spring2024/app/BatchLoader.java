@@ -0,0 +1,54 @@
+package my.spring2024.app;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Загрузка сущностей по списку идентификаторов.
+ * Идентификаторы разбиваются на части, и каждая часть загружается одним запросом с IN,
+ * чтобы размер запроса не превышал ограничения базы данных на число параметров.
+ */
+final class BatchLoader {
+    /**
+     * Максимальное количество идентификаторов в одном запросе.
+     */
+    static final int CHUNK_SIZE = 500;
+
+    private BatchLoader() {
+    }
+
+    /**
+     * Загружает сущности по идентификаторам.
+     * @param ids идентификаторы; повторы и null пропускаются
+     * @param finder загрузка сущностей по части идентификаторов
+     * @param idOf идентификатор сущности
+     * @return найденные сущности в порядке запрошенных идентификаторов
+     */
+    static <T> Map<Long, T> loadInOrder(Collection<Long> ids, Function<List<Long>, List<T>> finder, Function<T, Long> idOf) {
+        var unique = new ArrayList<Long>(new LinkedHashSet<>(ids));
+        unique.removeIf(id -> id == null);
+
+        var found = new HashMap<Long, T>(unique.size() * 2);
+        for (int from = 0; from < unique.size(); from += CHUNK_SIZE) {
+            var chunk = unique.subList(from, Math.min(from + CHUNK_SIZE, unique.size()));
+            for (T entity : finder.apply(chunk)) {
+                found.put(idOf.apply(entity), entity);
+            }
+        }
+
+        var result = new LinkedHashMap<Long, T>(found.size() * 2);
+        for (Long id : unique) {
+            T entity = found.get(id);
+            if (entity != null) {
+                result.put(id, entity);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,88 @@
+package my.spring2024.app;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума для строковых ключей.
+ * Отвечает "точно нет" или "возможно да": ложноотрицательных ответов не бывает,
+ * доля ложноположительных задается при создании. Удаление ключей не поддерживается.
+ * Потокобезопасен: биты хранятся в {@link AtomicLongArray}.
+ */
+public class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Создает фильтр, рассчитанный на заданное количество ключей.
+     * @param expectedInsertions ожидаемое количество ключей
+     * @param falsePositiveRate допустимая доля ложноположительных ответов, от 0 до 1
+     * @throws IllegalArgumentException если параметры вне допустимых пределов
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException();
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Добавляет ключ в фильтр.
+     * @param key ключ
+     */
+    public void put(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(index);
+                if ((current & mask) != 0) break;
+            } while (!words.compareAndSet(index, current, current | mask));
+        }
+    }
+
+    /**
+     * Проверяет, мог ли ключ быть добавлен в фильтр.
+     * @param key ключ
+     * @return false, если ключ точно не добавлялся; true, если возможно добавлялся
+     */
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Сбрасывает все биты фильтра.
+     */
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+    }
+
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
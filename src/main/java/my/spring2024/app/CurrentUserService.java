@@ -0,0 +1,119 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.domain.Role;
+import my.spring2024.domain.TeamRoleTag;
+import my.spring2024.domain.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.net.URL;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сервис определения текущего пользователя по аутентифицированному принципалу.
+ * На сессию в ограниченном кэше хранится снимок полей пользователя, поэтому повторные запросы в рамках сессии
+ * не обращаются к базе данных. Каждый запрос получает новый отсоединенный объект User, построенный по снимку:
+ * он содержит собственные поля пользователя, но не его связи, которые нужно загружать по идентификатору.
+ * Записи пользователя удаляются из кэша после фиксации изменения, удаления или смены роли пользователя.
+ */
+@Slf4j
+@Service
+public class CurrentUserService {
+    private record CachedUser(String principal, Long id, Long version, String firstname, String lastname, String email,
+                              URL gitHubLink, TeamRoleTag teamRole, Role role) {
+        static CachedUser of(String principal, User user) {
+            return new CachedUser(principal, user.getId(), user.getVersion(), user.getFirstname(), user.getLastname(),
+                    user.getEmail(), user.getGitHubLink(), user.getTeamRole(), user.getRole());
+        }
+
+        User toUser() {
+            return User.builder().id(id).version(version).firstname(firstname).lastname(lastname).email(email)
+                    .gitHubLink(gitHubLink).teamRole(teamRole).role(role).build();
+        }
+    }
+
+    private final UserService userService;
+    private final LruCache<String, CachedUser> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CurrentUserService(UserService userService,
+                              @Value("${users.principal-cache.max-size:10000}") int maxSize) {
+        this.userService = userService;
+        this.cache = new LruCache<>(maxSize);
+    }
+
+    /**
+     * Возвращает отсоединенный снимок пользователя, соответствующего принципалу.
+     * При попадании в кэш сессии база данных не запрашивается.
+     * @param sessionKey ключ сессии, на которую кэшируется результат
+     * @param email email из принципала
+     * @return пользователь без загруженных связей; пустой, если пользователь с таким email не зарегистрирован
+     */
+    public Optional<User> resolve(String sessionKey, String email) {
+        var cached = cache.get(sessionKey);
+        if (cached != null && Objects.equals(cached.principal(), email)) {
+            hits.incrementAndGet();
+            return Optional.of(cached.toUser());
+        }
+        misses.incrementAndGet();
+        var user = userService.getUserByEmail(email);
+        if (user == null) {
+            return Optional.empty();
+        }
+        var snapshot = CachedUser.of(email, user);
+        cache.put(sessionKey, snapshot);
+        return Optional.of(snapshot.toUser());
+    }
+
+    /**
+     * Удаляет из кэша запись сессии.
+     * @param sessionKey ключ сессии
+     */
+    public void evictSession(String sessionKey) {
+        cache.remove(sessionKey);
+    }
+
+    /**
+     * Удаляет из кэша все сессии пользователя, роль которого изменилась.
+     * @param event событие изменения роли
+     */
+    @EventListener
+    public void onRoleChanged(UserRoleChangedEvent event) {
+        evictUser(event.userId());
+        log.info("Сессии пользователя с id {} удалены из кэша после смены роли на {}", event.userId(), event.role());
+    }
+
+    /**
+     * Удаляет из кэша все сессии измененного или удаленного пользователя.
+     * @param event событие изменения пользователя
+     */
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        evictUser(event.userId());
+    }
+
+    private void evictUser(Long userId) {
+        cache.removeIf((key, cached) -> Objects.equals(cached.id(), userId));
+    }
+
+    /**
+     * Возвращает количество запросов, в которых пользователь найден по кэшу сессии.
+     * @return количество попаданий
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Возвращает количество запросов, потребовавших поиска пользователя по email.
+     * @return количество промахов
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,18 @@
+package my.spring2024.app;
+
+import java.time.Instant;
+
+/**
+ * Событие изменения сущности, доставленное из outbox.
+ * Доставка выполняется не менее одного раза, поэтому подписчики должны обрабатывать повторы.
+ * События одной сущности доставляются в порядке их записи.
+ * @param id идентификатор события; растет в порядке записи
+ * @param aggregateType тип сущности, например "User"
+ * @param aggregateId идентификатор сущности
+ * @param type тип события, например "UserSaved"
+ * @param payload данные события в формате JSON
+ * @param createdAt время записи события
+ */
+public record DomainEvent(Long id, String aggregateType, Long aggregateId, String type, String payload,
+                          Instant createdAt) {
+}
@@ -0,0 +1,65 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.domain.User;
+import my.spring2024.infrastructure.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Индекс зарегистрированных email на основе фильтра Блума.
+ * Позволяет ответить "email точно не зарегистрирован" без запроса к базе данных;
+ * при положительном ответе проверка выполняется по уникальному индексу в базе.
+ * Заполняется при старте приложения и при сохранении пользователей через {@link UserService}.
+ */
+@Slf4j
+@Component
+public class EmailIndex {
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final BloomFilter filter;
+    private volatile boolean ready;
+
+    public EmailIndex(UserRepository userRepository,
+                      @Value("${users.email-filter.enabled:true}") boolean enabled,
+                      @Value("${users.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                      @Value("${users.email-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.filter = new BloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    /**
+     * Заполняет фильтр email всех пользователей из базы данных.
+     * До завершения загрузки фильтр не используется для отрицательных ответов.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) return;
+        var emails = userRepository.findAllEmails();
+        emails.forEach(email -> filter.put(User.normalizeEmail(email)));
+        ready = true;
+        log.info("Фильтр email заполнен: {} адресов", emails.size());
+    }
+
+    /**
+     * Добавляет email в фильтр.
+     * @param email email пользователя
+     */
+    public void add(String email) {
+        if (email != null) filter.put(User.normalizeEmail(email));
+    }
+
+    /**
+     * Проверяет, может ли email быть зарегистрирован.
+     * @param email email пользователя
+     * @return false, если email точно не зарегистрирован; true, если требуется проверка в базе данных
+     */
+    public boolean mightBeRegistered(String email) {
+        if (email == null) return false;
+        if (!enabled || !ready) return true;
+        return filter.mightContain(User.normalizeEmail(email));
+    }
+}
@@ -0,0 +1,282 @@
+package my.spring2024.app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.domain.OutboxEvent;
+import my.spring2024.infrastructure.ChangeJournal;
+import my.spring2024.infrastructure.OutboxRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Сервис журнала изменений для быстрого перезапуска.
+ * Все события изменения сущностей, доставленные из outbox, дописываются в {@link ChangeJournal}.
+ * Сервис также ведет по журналу снимки всех отзывов и периодически сохраняет их в файл
+ * вместе с номером следующей записи журнала, после чего старые сегменты удаляются.
+ * При старте отзывы восстанавливаются из последнего снимка, хвоста журнала и еще не доставленных событий outbox,
+ * а не чтением таблицы отзывов, поэтому время запуска построенных по отзывам метрик не зависит от размера таблиц.
+ * Журнал сбрасывается на диск перед фиксацией транзакции, отмечающей пачку событий доставленными,
+ * поэтому доставленное событие не теряется при сбое: оно есть либо в журнале, либо среди недоставленных.
+ * Доставка событий не менее чем однократная, поэтому повторное применение события не меняет результат:
+ * событие задает итоговое состояние отзыва, а не его изменение.
+ * Если при старте загружен снимок базы данных (snapshot.import), журнал к ней не относится,
+ * и отзывы загружаются из базы данных.
+ * Журнал включается свойством journal.enabled и имеет смысл только с постоянной базой данных:
+ * снимок в журнале должен соответствовать содержимому таблиц.
+ */
+@Slf4j
+@Service
+public class JournalService {
+    private static final int SNAPSHOT_MAGIC = 0x52455631;
+    private static final String SNAPSHOT_FILE = "reviews.snapshot";
+    private static final String REVIEW = "Review";
+    private static final long NONE = -1;
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final ChangeJournal journal;
+    private final String snapshotImport;
+
+    private final Map<Long, ReviewSnapshot> reviews = new HashMap<>();
+    private boolean seeded;
+
+    public JournalService(OutboxRepository outboxRepository, ObjectProvider<ObjectMapper> objectMapper,
+                          @Value("${journal.enabled:false}") boolean enabled,
+                          @Value("${journal.dir:data/journal}") Path directory,
+                          @Value("${journal.segment-size:67108864}") int segmentSize,
+                          @Value("${snapshot.import:}") String snapshotImport) throws IOException {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper.getIfAvailable(ObjectMapper::new);
+        this.directory = directory;
+        this.journal = enabled ? new ChangeJournal(directory, segmentSize) : null;
+        this.snapshotImport = snapshotImport;
+    }
+
+    /**
+     * Восстанавливает снимки отзывов из последнего снимка, хвоста журнала и недоставленных событий outbox.
+     * @return снимки отзывов; пустой, если журнал отключен, снимка еще нет или загружен снимок базы данных
+     */
+    public synchronized Optional<Collection<ReviewSnapshot>> recoverReviews() {
+        if (journal == null) return Optional.empty();
+        if (!snapshotImport.isBlank()) {
+            log.info("Загружен снимок базы данных {}, отзывы будут загружены из базы данных, а не из журнала", snapshotImport);
+            return Optional.empty();
+        }
+        try {
+            var snapshotFile = directory.resolve(SNAPSHOT_FILE);
+            if (!Files.exists(snapshotFile)) return Optional.empty();
+            reviews.clear();
+            long from = readSnapshot(snapshotFile);
+            int[] replayed = {0};
+            journal.read(from, entry -> {
+                apply(decode(entry.data()));
+                replayed[0]++;
+            });
+            var pending = outboxRepository.findByDispatchedAtIsNullOrderByIdAsc(Pageable.unpaged());
+            for (OutboxEvent event : pending) {
+                apply(new DomainEvent(event.getId(), event.getAggregateType(), event.getAggregateId(),
+                        event.getType(), event.getPayload(), event.getCreatedAt()));
+            }
+            seeded = true;
+            log.info("Восстановлено {} отзывов из снимка, {} записей журнала и {} событий outbox",
+                    reviews.size(), replayed[0], pending.size());
+            return Optional.of(List.copyOf(reviews.values()));
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Не удалось восстановить отзывы из журнала, они будут загружены из базы данных", e);
+            reviews.clear();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Задает снимки отзывов, загруженные из базы данных, и сразу сохраняет их как снимок,
+     * чтобы следующий запуск мог восстановиться из журнала.
+     * @param loaded снимки всех отзывов
+     */
+    public synchronized void seed(Collection<ReviewSnapshot> loaded) {
+        if (journal == null) return;
+        reviews.clear();
+        loaded.forEach(review -> reviews.put(review.id(), review));
+        seeded = true;
+        snapshot();
+    }
+
+    /**
+     * Дописывает событие в журнал и применяет его к снимкам отзывов.
+     * В транзакции доставки журнал сбрасывается на диск один раз перед ее фиксацией, без транзакции - сразу.
+     * @param event событие изменения сущности
+     */
+    @EventListener
+    public synchronized void onDomainEvent(DomainEvent event) {
+        if (journal == null) return;
+        try {
+            journal.append(encode(event));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        apply(event);
+        flushBeforeCommit();
+    }
+
+    /**
+     * Сохраняет снимок отзывов и удаляет сегменты журнала, которые ему предшествуют.
+     * Вызывается по расписанию.
+     */
+    @Scheduled(fixedDelayString = "${journal.snapshot-interval:PT10M}")
+    public synchronized void snapshot() {
+        if (journal == null || !seeded) return;
+        try {
+            journal.flush();
+            long sequence = journal.getNextSequence();
+            writeSnapshot(directory.resolve(SNAPSHOT_FILE), sequence);
+            int deleted = journal.deleteBefore(sequence);
+            log.info("Сохранен снимок {} отзывов, удалено {} сегментов журнала", reviews.size(), deleted);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить снимок отзывов", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (journal != null) journal.close();
+    }
+
+    /**
+     * Регистрирует сброс журнала перед фиксацией текущей транзакции, если он еще не зарегистрирован.
+     * Ошибка сброса откатывает транзакцию, и события остаются недоставленными.
+     */
+    private void flushBeforeCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            journal.flush();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(journal)) return;
+        TransactionSynchronizationManager.bindResource(journal, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                journal.flush();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(journal);
+            }
+        });
+    }
+
+    private void apply(DomainEvent event) {
+        if (!REVIEW.equals(event.aggregateType())) return;
+        switch (event.type()) {
+            case "ReviewSaved" -> {
+                try {
+                    reviews.put(event.aggregateId(), objectMapper.readValue(event.payload(), ReviewSnapshot.class));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            case "ReviewDeleted" -> reviews.remove(event.aggregateId());
+            default -> { }
+        }
+    }
+
+    private static byte[] encode(DomainEvent event) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeLong(event.id());
+            out.writeUTF(event.aggregateType());
+            out.writeLong(event.aggregateId());
+            out.writeUTF(event.type());
+            out.writeUTF(event.payload());
+            out.writeLong(event.createdAt().toEpochMilli());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DomainEvent decode(byte[] data) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(data))) {
+            return new DomainEvent(in.readLong(), in.readUTF(), in.readLong(), in.readUTF(), in.readUTF(),
+                    Instant.ofEpochMilli(in.readLong()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Записывает снимок во временный файл и атомарно заменяет им предыдущий.
+     * Формат: признак формата, номер следующей записи журнала, количество отзывов, отзывы и контрольная сумма.
+     */
+    private void writeSnapshot(Path file, long sequence) throws IOException {
+        var temporary = file.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        var checked = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)), new CRC32C());
+        try (var out = new DataOutputStream(checked)) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(reviews.size());
+            for (ReviewSnapshot review : reviews.values()) {
+                out.writeLong(review.id());
+                out.writeLong(orNone(review.senderId()));
+                out.writeLong(orNone(review.receiverId()));
+                out.writeLong(orNone(review.projectId()));
+                out.writeInt(review.rating());
+            }
+            out.writeLong(checked.getChecksum().getValue());
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читает снимок в reviews.
+     * @return номер записи журнала, с которой нужно продолжить восстановление
+     */
+    private long readSnapshot(Path file) throws IOException {
+        var checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), new CRC32C());
+        try (var in = new DataInputStream(checked)) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Неизвестный формат снимка " + file);
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                var review = new ReviewSnapshot(in.readLong(), orNull(in.readLong()), orNull(in.readLong()),
+                        orNull(in.readLong()), in.readInt());
+                reviews.put(review.id(), review);
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Контрольная сумма снимка " + file + " не совпадает");
+            }
+            return sequence;
+        }
+    }
+
+    private static long orNone(Long id) {
+        return id == null ? NONE : id;
+    }
+
+    private static Long orNull(long id) {
+        return id == NONE ? null : id;
+    }
+}
@@ -0,0 +1,164 @@
+package my.spring2024.app;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Таблица лидеров по отзывам.
+ * Для каждого участника (проекта или пользователя) хранится количество отзывов и сумма оценок,
+ * а участники упорядочены в двух отсортированных множествах: по средней оценке и по количеству отзывов.
+ * Изменение одного отзыва обновляет позицию одного участника за O(log n).
+ * Страницы читаются из отсортированного снимка множества, который пересобирается при первом чтении
+ * после изменения, поэтому глубокая страница стоит O(limit) и не держит блокировку на время пропуска offset.
+ */
+public class Leaderboard {
+    /**
+     * Позиция участника.
+     * @param id идентификатор участника
+     * @param reviews количество отзывов
+     * @param ratingSum сумма оценок
+     */
+    public record Standing(Long id, long reviews, long ratingSum) {
+        /**
+         * Возвращает среднюю оценку.
+         * @return средняя оценка; 0, если отзывов нет
+         */
+        public double averageRating() {
+            return reviews == 0 ? 0 : (double) ratingSum / reviews;
+        }
+    }
+
+    /**
+     * Порядок таблицы.
+     */
+    public enum Order {
+        /**
+         * По средней оценке среди участников с минимальным количеством отзывов.
+         */
+        RATING,
+        /**
+         * По количеству отзывов.
+         */
+        VOLUME
+    }
+
+    private static final Comparator<Standing> BY_RATING = Comparator
+            .comparingDouble(Standing::averageRating).reversed()
+            .thenComparing(Comparator.comparingLong(Standing::reviews).reversed())
+            .thenComparing(Standing::id);
+    private static final Comparator<Standing> BY_VOLUME = Comparator
+            .comparingLong(Standing::reviews).reversed()
+            .thenComparing(Comparator.comparingDouble(Standing::averageRating).reversed())
+            .thenComparing(Standing::id);
+
+    private final int minReviews;
+    private final Map<Long, Standing> standings = new HashMap<>();
+    private final TreeSet<Standing> byRating = new TreeSet<>(BY_RATING);
+    private final TreeSet<Standing> byVolume = new TreeSet<>(BY_VOLUME);
+    private volatile Standing[] ratingSnapshot;
+    private volatile Standing[] volumeSnapshot;
+
+    /**
+     * @param minReviews минимальное количество отзывов для попадания в таблицу по средней оценке
+     */
+    public Leaderboard(int minReviews) {
+        this.minReviews = minReviews;
+    }
+
+    /**
+     * Добавляет оценку участнику или убирает ее.
+     * @param id идентификатор участника; null игнорируется
+     * @param rating оценка
+     * @param sign 1, чтобы добавить оценку, -1, чтобы убрать
+     */
+    public synchronized void add(Long id, int rating, int sign) {
+        if (id == null) return;
+        invalidate();
+        var previous = standings.get(id);
+        if (previous != null) {
+            byRating.remove(previous);
+            byVolume.remove(previous);
+        }
+        long reviews = (previous == null ? 0 : previous.reviews()) + sign;
+        long ratingSum = (previous == null ? 0 : previous.ratingSum()) + (long) sign * rating;
+        if (reviews <= 0) {
+            standings.remove(id);
+            return;
+        }
+        var standing = new Standing(id, reviews, ratingSum);
+        standings.put(id, standing);
+        byVolume.add(standing);
+        if (reviews >= minReviews) {
+            byRating.add(standing);
+        }
+    }
+
+    /**
+     * Удаляет всех участников.
+     */
+    public synchronized void clear() {
+        standings.clear();
+        byRating.clear();
+        byVolume.clear();
+        invalidate();
+    }
+
+    /**
+     * Возвращает позицию участника.
+     * @param id идентификатор участника
+     * @return позиция; null, если у участника нет отзывов
+     */
+    public synchronized Standing get(Long id) {
+        return standings.get(id);
+    }
+
+    /**
+     * Возвращает количество участников в таблице.
+     * @param order порядок таблицы
+     * @return количество участников
+     */
+    public synchronized int size(Order order) {
+        return order == Order.RATING ? byRating.size() : byVolume.size();
+    }
+
+    /**
+     * Возвращает страницу таблицы.
+     * @param order порядок таблицы
+     * @param offset количество пропускаемых участников
+     * @param limit размер страницы
+     * @return участники страницы в порядке таблицы
+     */
+    public List<Standing> page(Order order, long offset, int limit) {
+        var snapshot = snapshot(order);
+        int from = (int) Math.min(offset, snapshot.length);
+        int to = (int) Math.min((long) from + limit, snapshot.length);
+        return List.of(Arrays.copyOfRange(snapshot, from, to));
+    }
+
+    /**
+     * Возвращает отсортированный снимок множества, пересобирая его, если таблица изменилась.
+     * @param order порядок таблицы
+     * @return участники в порядке таблицы
+     */
+    private Standing[] snapshot(Order order) {
+        var snapshot = order == Order.RATING ? ratingSnapshot : volumeSnapshot;
+        if (snapshot != null) return snapshot;
+        synchronized (this) {
+            if (order == Order.RATING) {
+                if (ratingSnapshot == null) ratingSnapshot = byRating.toArray(Standing[]::new);
+                return ratingSnapshot;
+            }
+            if (volumeSnapshot == null) volumeSnapshot = byVolume.toArray(Standing[]::new);
+            return volumeSnapshot;
+        }
+    }
+
+    private void invalidate() {
+        ratingSnapshot = null;
+        volumeSnapshot = null;
+    }
+}
@@ -0,0 +1,98 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+/**
+ * Сервис таблиц лидеров: лучшие проекты, лучшие получатели отзывов и самые активные авторы отзывов.
+ * Таблицы хранятся в памяти и обновляются по событиям изменения отзывов из ReviewService,
+ * поэтому для их построения не нужно агрегировать таблицу отзывов.
+ * При старте приложения таблицы перестраиваются по всем отзывам.
+ */
+@Slf4j
+@Service
+public class LeaderboardService {
+    private final Leaderboard projects;
+    private final Leaderboard receivers;
+    private final Leaderboard reviewers;
+
+    public LeaderboardService(@Value("${reviews.leaderboard.min-reviews:3}") int minReviews) {
+        this.projects = new Leaderboard(minReviews);
+        this.receivers = new Leaderboard(minReviews);
+        this.reviewers = new Leaderboard(minReviews);
+    }
+
+    /**
+     * Перестраивает таблицы по всем отзывам.
+     * @param event событие загрузки отзывов
+     */
+    @EventListener
+    public void onReviewsLoaded(ReviewsLoadedEvent event) {
+        projects.clear();
+        receivers.clear();
+        reviewers.clear();
+        event.reviews().forEach(review -> apply(review, 1));
+        log.info("Таблицы лидеров построены: {} проектов, {} получателей, {} авторов отзывов",
+                projects.size(Leaderboard.Order.VOLUME), receivers.size(Leaderboard.Order.VOLUME),
+                reviewers.size(Leaderboard.Order.VOLUME));
+    }
+
+    /**
+     * Обновляет таблицы при изменении отзыва.
+     * @param event событие изменения отзыва
+     */
+    @EventListener
+    public void onReviewChanged(ReviewChangedEvent event) {
+        if (event.before() != null) apply(event.before(), -1);
+        if (event.after() != null) apply(event.after(), 1);
+    }
+
+    /**
+     * Возвращает таблицу проектов.
+     * @param order порядок таблицы
+     * @param pageable страница
+     * @return страница таблицы
+     */
+    public Page<Leaderboard.Standing> getProjects(Leaderboard.Order order, Pageable pageable) {
+        return page(projects, order, pageable);
+    }
+
+    /**
+     * Возвращает таблицу пользователей по полученным отзывам.
+     * @param order порядок таблицы
+     * @param pageable страница
+     * @return страница таблицы
+     */
+    public Page<Leaderboard.Standing> getReceivers(Leaderboard.Order order, Pageable pageable) {
+        return page(receivers, order, pageable);
+    }
+
+    /**
+     * Возвращает таблицу пользователей по отправленным отзывам.
+     * @param order порядок таблицы
+     * @param pageable страница
+     * @return страница таблицы
+     */
+    public Page<Leaderboard.Standing> getReviewers(Leaderboard.Order order, Pageable pageable) {
+        return page(reviewers, order, pageable);
+    }
+
+    private void apply(ReviewSnapshot review, int sign) {
+        projects.add(review.projectId(), review.rating(), sign);
+        receivers.add(review.receiverId(), review.rating(), sign);
+        reviewers.add(review.senderId(), review.rating(), sign);
+    }
+
+    private static Page<Leaderboard.Standing> page(Leaderboard leaderboard, Leaderboard.Order order, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(leaderboard.page(order, 0, Integer.MAX_VALUE));
+        }
+        return new PageImpl<>(leaderboard.page(order, pageable.getOffset(), pageable.getPageSize()),
+                pageable, leaderboard.size(order));
+    }
+}
@@ -0,0 +1,82 @@
+package my.spring2024.app;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Ограниченный по размеру кэш с вытеснением давно не использованных записей.
+ * Потокобезопасен; все операции выполняются под блокировкой экземпляра.
+ *
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final LinkedHashMap<K, V> entries;
+
+    /**
+     * Создает кэш.
+     * @param maxSize максимальное количество записей
+     * @throws IllegalArgumentException если размер не положительный
+     */
+    public LruCache(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException();
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Возвращает значение по ключу.
+     * @param key ключ
+     * @return значение; если записи нет, то null
+     */
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Сохраняет значение по ключу.
+     * @param key ключ
+     * @param value значение
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * Удаляет запись по ключу.
+     * @param key ключ
+     */
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Удаляет все записи, удовлетворяющие условию.
+     * @param condition условие удаления
+     */
+    public synchronized void removeIf(BiPredicate<K, V> condition) {
+        entries.entrySet().removeIf(entry -> condition.test(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Удаляет все записи.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Возвращает количество записей.
+     * @return количество записей
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
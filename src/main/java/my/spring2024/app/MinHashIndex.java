@@ -0,0 +1,167 @@
+package my.spring2024.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Индекс похожих множеств на основе MinHash и LSH.
+ * Для каждого множества хранится сигнатура из минимумов нескольких хэш-функций: доля совпадающих
+ * позиций двух сигнатур оценивает коэффициент Жаккара множеств.
+ * Сигнатура разбита на полосы, и множества с совпадающей полосой попадают в одну корзину,
+ * поэтому кандидаты в похожие находятся просмотром нескольких корзин, а не сравнением со всеми множествами.
+ */
+public class MinHashIndex {
+    /**
+     * Похожее множество.
+     * @param id идентификатор множества
+     * @param similarity оценка коэффициента Жаккара
+     */
+    public record Match(Long id, double similarity) {
+    }
+
+    private final int bands;
+    private final int rows;
+    private final long[] multipliers;
+    private final long[] increments;
+
+    private final Map<Long, long[]> signatures = new HashMap<>();
+    private final List<Map<Long, Set<Long>>> buckets;
+
+    /**
+     * @param hashes количество хэш-функций в сигнатуре
+     * @param bands количество полос; должно делить количество хэш-функций
+     * @param seed начальное значение генератора хэш-функций
+     * @throws IllegalArgumentException если количество полос не делит количество хэш-функций
+     */
+    public MinHashIndex(int hashes, int bands, long seed) {
+        if (hashes <= 0 || bands <= 0 || hashes % bands != 0) {
+            throw new IllegalArgumentException("Количество полос должно делить количество хэш-функций");
+        }
+        this.bands = bands;
+        this.rows = hashes / bands;
+        this.multipliers = new long[hashes];
+        this.increments = new long[hashes];
+        var random = new SplittableRandom(seed);
+        for (int i = 0; i < hashes; i++) {
+            multipliers[i] = random.nextLong() | 1;
+            increments[i] = random.nextLong();
+        }
+        this.buckets = new ArrayList<>(bands);
+        for (int i = 0; i < bands; i++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Добавляет или заменяет множество в индексе.
+     * @param id идентификатор множества
+     * @param elements элементы множества; если пустое, то множество удаляется из индекса
+     */
+    public synchronized void put(Long id, Collection<Long> elements) {
+        remove(id);
+        if (elements.isEmpty()) return;
+        long[] signature = signature(elements);
+        signatures.put(id, signature);
+        for (int band = 0; band < bands; band++) {
+            buckets.get(band).computeIfAbsent(bandKey(signature, band), key -> new HashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Удаляет множество из индекса.
+     * @param id идентификатор множества
+     */
+    public synchronized void remove(Long id) {
+        long[] signature = signatures.remove(id);
+        if (signature == null) return;
+        for (int band = 0; band < bands; band++) {
+            var bucketsOfBand = buckets.get(band);
+            long key = bandKey(signature, band);
+            var bucket = bucketsOfBand.get(key);
+            bucket.remove(id);
+            if (bucket.isEmpty()) bucketsOfBand.remove(key);
+        }
+    }
+
+    /**
+     * Удаляет все множества из индекса.
+     */
+    public synchronized void clear() {
+        signatures.clear();
+        buckets.forEach(Map::clear);
+    }
+
+    /**
+     * Возвращает множества, похожие на заданное.
+     * Рассматриваются только множества, совпавшие с заданным хотя бы в одной полосе.
+     * @param id идентификатор множества
+     * @param limit максимальное количество результатов
+     * @return похожие множества в порядке убывания сходства; пустой список, если множества нет в индексе
+     */
+    public synchronized List<Match> similar(Long id, int limit) {
+        long[] signature = signatures.get(id);
+        if (signature == null || limit <= 0) return List.of();
+        var candidates = new HashSet<Long>();
+        for (int band = 0; band < bands; band++) {
+            candidates.addAll(buckets.get(band).get(bandKey(signature, band)));
+        }
+        candidates.remove(id);
+        return candidates.stream()
+                .map(candidate -> new Match(candidate, similarity(signature, signatures.get(candidate))))
+                .sorted(Comparator.comparingDouble(Match::similarity).reversed().thenComparing(Match::id))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Возвращает количество множеств в индексе.
+     * @return количество множеств
+     */
+    public synchronized int size() {
+        return signatures.size();
+    }
+
+    private long[] signature(Collection<Long> elements) {
+        long[] signature = new long[multipliers.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (Long element : elements) {
+            for (int i = 0; i < signature.length; i++) {
+                signature[i] = Math.min(signature[i], mix(element * multipliers[i] + increments[i]));
+            }
+        }
+        return signature;
+    }
+
+    private long bandKey(long[] signature, int band) {
+        long key = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            key = mix(key * 31 + signature[i]);
+        }
+        return key;
+    }
+
+    private static double similarity(long[] a, long[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) equal++;
+        }
+        return (double) equal / a.length;
+    }
+
+    /**
+     * Перемешивание битов из SplitMix64.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
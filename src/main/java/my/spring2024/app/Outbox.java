@@ -0,0 +1,51 @@
+package my.spring2024.app;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import my.spring2024.domain.OutboxEvent;
+import my.spring2024.infrastructure.OutboxRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Запись событий изменения сущностей в таблицу outbox.
+ * Событие сохраняется в транзакции вызывающего метода записи, поэтому оно появляется тогда и только тогда,
+ * когда фиксируется само изменение. Доставкой подписчикам занимается {@link OutboxDispatcher}.
+ */
+@Component
+public class Outbox {
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    public Outbox(OutboxRepository outboxRepository, ObjectProvider<ObjectMapper> objectMapper) {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper.getIfAvailable(ObjectMapper::new);
+    }
+
+    /**
+     * Записывает событие.
+     * @param aggregateType тип сущности
+     * @param aggregateId идентификатор сущности
+     * @param type тип события
+     * @param payload данные события, сериализуемые в JSON
+     */
+    @Transactional
+    public void append(String aggregateType, Long aggregateId, String type, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Данные события " + type + " не сериализуются в JSON", e);
+        }
+        outboxRepository.save(OutboxEvent.builder()
+                .aggregateType(aggregateType)
+                .aggregateId(aggregateId)
+                .type(type)
+                .payload(json)
+                .createdAt(Instant.now())
+                .build());
+    }
+}
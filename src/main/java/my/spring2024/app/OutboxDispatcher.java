@@ -0,0 +1,142 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.domain.OutboxEvent;
+import my.spring2024.infrastructure.OutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Фоновая доставка событий из outbox подписчикам.
+ * События читаются пачками в порядке записи и публикуются как {@link DomainEvent} слушателям приложения:
+ * журналу отзывов, ленте популярных постов и индексам похожих проектов и пользователей.
+ * Событие отмечается доставленным только после успешной обработки всеми слушателями,
+ * а при ошибке остальные события той же сущности в пачке откладываются до следующего прохода,
+ * так что порядок событий одной сущности сохраняется. Событие, не доставленное за maxAttempts попыток,
+ * отмечается доставленным с записью в журнал, чтобы не блокировать сущность навсегда.
+ * Доставленные события удаляются по истечении срока хранения.
+ */
+@Slf4j
+@Component
+public class OutboxDispatcher {
+    private final OutboxRepository outboxRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transaction;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retention;
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public OutboxDispatcher(OutboxRepository outboxRepository, ApplicationEventPublisher eventPublisher,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${outbox.batch-size:500}") int batchSize,
+                            @Value("${outbox.max-attempts:10}") int maxAttempts,
+                            @Value("${outbox.retention:P1D}") Duration retention) {
+        this.outboxRepository = outboxRepository;
+        this.eventPublisher = eventPublisher;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retention = retention;
+    }
+
+    /**
+     * Доставляет накопившиеся события, пока очередная пачка доставляется целиком.
+     * Если в пачке есть отложенные из-за ошибки события, проход завершается, и повтор ждет следующего запуска,
+     * а не расходует попытки доставки подряд.
+     * Вызывается по расписанию.
+     */
+    @Scheduled(fixedDelayString = "${outbox.dispatch-delay:PT1S}")
+    public void dispatchPending() {
+        int count;
+        do {
+            count = dispatch();
+        } while (count == batchSize);
+        transaction.executeWithoutResult(status -> outboxRepository.deleteDispatchedBefore(Instant.now().minus(retention)));
+    }
+
+    /**
+     * Доставляет одну пачку событий в отдельной транзакции.
+     * @return количество событий, отмеченных доставленными, включая пропущенные после maxAttempts попыток
+     */
+    public synchronized int dispatch() {
+        Integer count = transaction.execute(status -> {
+            List<OutboxEvent> events = outboxRepository.findByDispatchedAtIsNullOrderByIdAsc(PageRequest.of(0, batchSize));
+            var blocked = new HashSet<List<Object>>();
+            int completed = 0;
+            for (OutboxEvent event : events) {
+                var aggregate = List.<Object>of(event.getAggregateType(), event.getAggregateId());
+                if (blocked.contains(aggregate)) continue;
+                try {
+                    eventPublisher.publishEvent(new DomainEvent(event.getId(), event.getAggregateType(),
+                            event.getAggregateId(), event.getType(), event.getPayload(), event.getCreatedAt()));
+                    event.markDispatched(Instant.now());
+                    dispatched.increment();
+                    completed++;
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    if (event.markFailed() >= maxAttempts) {
+                        log.error("Событие {} {} не доставлено за {} попыток и пропущено", event.getId(), event.getType(), maxAttempts, e);
+                        event.markDispatched(Instant.now());
+                        completed++;
+                    } else {
+                        log.warn("Не удалось доставить событие {} {}, повтор при следующем проходе", event.getId(), event.getType(), e);
+                        blocked.add(aggregate);
+                    }
+                }
+            }
+            return completed;
+        });
+        if (count != null && count > 0) {
+            log.debug("Обработано {} событий outbox", count);
+        }
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Возвращает количество недоставленных событий.
+     * @return количество событий
+     */
+    public long getPending() {
+        return outboxRepository.countByDispatchedAtIsNull();
+    }
+
+    /**
+     * Возвращает отставание доставки: возраст самого старого недоставленного события.
+     * @return отставание; ноль, если недоставленных событий нет
+     */
+    public Duration getLag() {
+        return outboxRepository.findOldestPendingCreatedAt()
+                .map(oldest -> Duration.between(oldest, Instant.now()))
+                .orElse(Duration.ZERO);
+    }
+
+    /**
+     * Возвращает количество доставленных событий с момента запуска.
+     * @return количество событий
+     */
+    public long getDispatched() {
+        return dispatched.sum();
+    }
+
+    /**
+     * Возвращает количество неудачных попыток доставки с момента запуска.
+     * @return количество попыток
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+}
@@ -0,0 +1,18 @@
+package my.spring2024.app;
+
+import my.spring2024.domain.TeamRoleTag;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Событие создания поста.
+ * @param postId идентификатор поста
+ * @param authorId идентификатор автора
+ * @param title заголовок поста
+ * @param teamRoleTags роли, требуемые постом
+ * @param createdAt время создания поста
+ */
+public record PostCreatedEvent(Long postId, Long authorId, String title, List<TeamRoleTag> teamRoleTags,
+                               Instant createdAt) {
+}
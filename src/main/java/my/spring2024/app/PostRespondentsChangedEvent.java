@@ -0,0 +1,13 @@
+package my.spring2024.app;
+
+/**
+ * Событие изменения списка откликнувшихся на пост.
+ * @param postId идентификатор поста
+ * @param authorId идентификатор автора поста
+ * @param respondentId идентификатор откликнувшегося пользователя
+ * @param added true, если отклик добавлен; false, если удален
+ * @param respondents количество откликнувшихся после изменения
+ */
+public record PostRespondentsChangedEvent(Long postId, Long authorId, Long respondentId, boolean added,
+                                          int respondents) {
+}
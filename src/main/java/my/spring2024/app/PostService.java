@@ -4,13 +4,18 @@ import lombok.extern.slf4j.Slf4j;
 import my.spring2024.domain.Post;
 import my.spring2024.domain.User;
 import my.spring2024.infrastructure.PostRepository;
+import my.spring2024.infrastructure.SparseFieldsQuery;
 import my.spring2024.infrastructure.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -21,28 +26,49 @@ import java.util.Optional;
 public class PostService {
     private final PostRepository postRepository;
     private final UserRepository userRepository;
+    private final SerializedResponseCache responseCache;
+    private final SparseFieldsQuery sparseFieldsQuery;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Outbox outbox;
 
-    public PostService(PostRepository postRepository, UserRepository userRepository) {
+    public PostService(PostRepository postRepository, UserRepository userRepository, SerializedResponseCache responseCache,
+                       SparseFieldsQuery sparseFieldsQuery, ApplicationEventPublisher eventPublisher, Outbox outbox) {
         this.postRepository = postRepository;
         this.userRepository = userRepository;
+        this.responseCache = responseCache;
+        this.sparseFieldsQuery = sparseFieldsQuery;
+        this.eventPublisher = eventPublisher;
+        this.outbox = outbox;
     }
 
     /**
      * Сохраняет пост в базе данных.
+     * О создании нового поста публикуется {@link PostCreatedEvent}.
+     * Лента популярных постов обновляется по событию outbox в фоновом потоке доставки.
      * @param post пост
      * @return сохраненный пост
      */
+    @Transactional
     public Post savePost(Post post) {
+        boolean created = post.getId() == null;
         var savedPost = postRepository.save(post);
+        responseCache.evict(SerializedResponseCache.POST, savedPost.getId());
+        outbox.append("Post", savedPost.getId(), created ? "PostCreated" : "PostSaved", Map.of("id", savedPost.getId()));
+        if (created) {
+            eventPublisher.publishEvent(new PostCreatedEvent(savedPost.getId(), authorId(savedPost), savedPost.getTitle(),
+                    savedPost.getTeamRoleTags() == null ? List.of() : List.copyOf(savedPost.getTeamRoleTags()),
+                    savedPost.getCreatedAt()));
+        }
         log.info("Сохранен пост {}", post.getId());
         return savedPost;
     }
 
     /**
-     * Возвращает пост с заданным идентификатором
+     * Возвращает пост с заданным идентификатором.
      * @param id Идентификатор поста
      * @return пост; если пост не найден, то null
      */
+    @Transactional(readOnly = true)
     public Post getPostById(Long id) {
         var post = postRepository.findById(id);
         if (post.isEmpty()) {
@@ -54,24 +80,55 @@ public class PostService {
         }
     }
 
+    /**
+     * Возвращает посты по списку идентификаторов.
+     * Идентификаторы загружаются частями по {@value BatchLoader#CHUNK_SIZE}, одним запросом на часть.
+     * @param ids Идентификаторы постов
+     * @return найденные посты в порядке запрошенных идентификаторов; ненайденные пропускаются
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Post> getPostsByIds(List<Long> ids) {
+        var posts = BatchLoader.loadInOrder(ids, postRepository::findAllById, Post::getId);
+        log.info("Найдено {} из {} запрошенных постов", posts.size(), ids.size());
+        return posts;
+    }
+
     /**
      * Возвращает все посты с возможностью пагинации и фильтрации.
      * @param spec спецификация для фильтрации
      * @param pageable объект для пагинации
      * @return страница постов
      */
+    @Transactional(readOnly = true)
     public Page<Post> getAllPosts(Specification<Post> spec, Pageable pageable) {
         var posts = postRepository.findAll(spec, pageable);
         log.info("Найдено {} постов", posts.getTotalElements());
         return posts;
     }
 
+    /**
+     * Возвращает все посты с возможностью пагинации и фильтрации, выбирая из базы только заданные поля.
+     * Связанные сущности возвращаются идентификаторами.
+     * @param fields имена полей ответа и соответствующие им поля сущности
+     * @param spec спецификация для фильтрации
+     * @param pageable объект для пагинации
+     * @return страница строк "поле - значение"
+     * @throws IllegalArgumentException если у сущности нет какого-либо из полей
+     */
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> getAllPosts(Map<String, String> fields, Specification<Post> spec, Pageable pageable) {
+        var rows = sparseFieldsQuery.findAll(Post.class, fields, spec, pageable);
+        log.info("Найдено {} постов с полями {}", rows.getTotalElements(), fields.keySet());
+        return rows;
+    }
+
     /**
      * Обновляет текст поста.
      * @param id Идентификатор поста.
      * @param newText Новый текст поста.
      * @return обновленный пост; если пост не найден, то null.
      */
+    @Transactional
     public Post updatePostText(Long id, String newText) {
         var post = postRepository.findById(id);
         if (post.isEmpty()) {
@@ -82,6 +139,8 @@ public class PostService {
         Post existingPost = post.get();
         existingPost.setText(newText);
         postRepository.save(existingPost);
+        responseCache.evict(SerializedResponseCache.POST, id);
+        outbox.append("Post", id, "PostSaved", Map.of("id", id));
         log.info("Обновлен текст поста с id {}", id);
         return existingPost;
     }
@@ -90,8 +149,11 @@ public class PostService {
      * Удаляет пост из базы данных по идентификатору.
      * @param id Идентификатор поста.
      */
+    @Transactional
     public void deletePost(Long id) {
         postRepository.deleteById(id);
+        responseCache.evict(SerializedResponseCache.POST, id);
+        outbox.append("Post", id, "PostDeleted", Map.of("id", id));
         log.info("Удален пост с id {}", id);
     }
 
@@ -102,14 +164,21 @@ public class PostService {
      * @return обновленный пост; если пост или пользователь не найдены, то null.
      * @throws IllegalArgumentException если пост или пользователь не найдены.
      */
+    @Transactional
     public Post addRespondentToPost(Long postId, Long userId) {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new IllegalArgumentException("Не удалось добавить респондента: пост с id " + postId + " не найден"));
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("Не удалось добавить респондента: пользователь с id " + userId + " не найден"));
 
+        var respondedAt = Instant.now();
         post.getRespondents().add(user);
+        post.setLastRespondedAt(respondedAt);
         postRepository.save(post);
+        responseCache.evict(SerializedResponseCache.POST, postId);
+        eventPublisher.publishEvent(new PostRespondentsChangedEvent(postId, authorId(post), userId, true,
+                post.getRespondents().size()));
+        outbox.append("Post", postId, "PostRespondentAdded", Map.of("id", postId, "userId", userId));
         log.info("Пользователь с id {} добавлен как респондент к посту с id {}", userId, postId);
         return post;
     }
@@ -121,6 +190,7 @@ public class PostService {
      * @return обновленный пост; если пост или пользователь не найдены, то null.
      * @throws IllegalArgumentException если пост или пользователь не найдены.
      */
+    @Transactional
     public Post removeRespondentFromPost(Long postId, Long userId) {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new IllegalArgumentException("Не удалось добавить респондента: пост с id " + postId + " не найден"));
@@ -133,6 +203,10 @@ public class PostService {
         }
 
         postRepository.save(post);
+        responseCache.evict(SerializedResponseCache.POST, postId);
+        eventPublisher.publishEvent(new PostRespondentsChangedEvent(postId, authorId(post), userId, false,
+                post.getRespondents().size()));
+        outbox.append("Post", postId, "PostRespondentRemoved", Map.of("id", postId, "userId", userId));
         log.info("Пользователь с id {} удален из респондентов поста с id {}", userId, postId);
         return post;
     }
@@ -144,6 +218,7 @@ public class PostService {
      * @return страница постов, содержащих ключевое слово.
      * @throws IllegalArgumentException если ключевое слово пустое или null
      */
+    @Transactional(readOnly = true)
     public Page<Post> searchPostsByKeyword(String keyword, Pageable pageable) {
         if(keyword == null || keyword.isEmpty()) throw new IllegalArgumentException();
         var posts = postRepository.findByTitleContainingOrTextContaining(keyword, keyword, pageable);
@@ -157,6 +232,7 @@ public class PostService {
      * @param pageable объект для пагинации.
      * @return страница постов, созданных пользователем.
      */
+    @Transactional(readOnly = true)
     public Page<Post> getPostsByAuthor(Long authorId, Pageable pageable) {
         var author = userRepository.findById(authorId)
                 .orElseThrow(() -> new IllegalArgumentException("Пользователь с id " + authorId + " не найден"));
@@ -164,4 +240,8 @@ public class PostService {
         log.info("Найдено {} постов, созданных пользователем с id {}", posts.getTotalElements(), authorId);
         return posts;
     }
+
+    private static Long authorId(Post post) {
+        return post.getAuthor() == null ? null : post.getAuthor().getId();
+    }
 }
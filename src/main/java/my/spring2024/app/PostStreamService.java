@@ -0,0 +1,145 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.domain.TeamRoleTag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сервис рассылки событий постов подписчикам.
+ * Каждый подписчик получает события через собственный ограниченный буфер, который вычитывает
+ * отдельный поток отправки. Публикация только кладет событие в буферы и не ждет отправки,
+ * а подписчик, буфер которого переполнен, отключается, так что медленный клиент не задерживает остальных.
+ * События рассылаются после фиксации транзакции, в которой они опубликованы.
+ */
+@Slf4j
+@Service
+public class PostStreamService {
+    /**
+     * Подписка на события постов.
+     */
+    public static final class Subscription {
+        private final Set<TeamRoleTag> roles;
+        private final Long authorId;
+        private final BlockingQueue<Object> buffer;
+        private volatile boolean closed;
+
+        private Subscription(Set<TeamRoleTag> roles, Long authorId, int capacity) {
+            this.roles = roles;
+            this.authorId = authorId;
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Ждет следующее событие.
+         * @param timeout максимальное время ожидания
+         * @return {@link PostCreatedEvent} или {@link PostRespondentsChangedEvent}; null, если событий не было
+         * @throws InterruptedException если ожидание прервано
+         */
+        public Object next(Duration timeout) throws InterruptedException {
+            return buffer.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Возвращает признак закрытия подписки, в том числе из-за переполнения буфера.
+         * @return true, если подписка закрыта
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        private boolean accepts(PostCreatedEvent event) {
+            return roles.isEmpty() || event.teamRoleTags().stream().anyMatch(roles::contains);
+        }
+
+        private boolean accepts(PostRespondentsChangedEvent event) {
+            return authorId != null && authorId.equals(event.authorId());
+        }
+    }
+
+    private final int bufferSize;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final LongAdder dropped = new LongAdder();
+
+    public PostStreamService(@Value("${posts.stream.buffer-size:256}") int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Создает подписку.
+     * @param roles роли, посты с которыми нужно получать; если пусто, то все новые посты
+     * @param authorId идентификатор пользователя, изменения откликов на посты которого нужно получать;
+     *                 если null, то изменения откликов не рассылаются
+     * @return подписка
+     */
+    public Subscription subscribe(Set<TeamRoleTag> roles, Long authorId) {
+        var subscription = new Subscription(roles == null ? Set.of() : Set.copyOf(roles), authorId, bufferSize);
+        subscriptions.add(subscription);
+        log.debug("Новая подписка на события постов, подписчиков: {}", subscriptions.size());
+        return subscription;
+    }
+
+    /**
+     * Закрывает подписку.
+     * @param subscription подписка
+     */
+    public void unsubscribe(Subscription subscription) {
+        subscription.closed = true;
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Рассылает событие создания поста подписчикам на его роли.
+     * @param event событие создания поста
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostCreated(PostCreatedEvent event) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.accepts(event)) deliver(subscription, event);
+        }
+    }
+
+    /**
+     * Рассылает событие изменения откликов автору поста.
+     * @param event событие изменения откликов
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRespondentsChanged(PostRespondentsChangedEvent event) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.accepts(event)) deliver(subscription, event);
+        }
+    }
+
+    /**
+     * Возвращает количество активных подписок.
+     * @return количество подписок
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Возвращает количество подписок, отключенных из-за переполнения буфера.
+     * @return количество отключенных подписок
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void deliver(Subscription subscription, Object event) {
+        if (!subscription.buffer.offer(event) && subscriptions.remove(subscription)) {
+            subscription.closed = true;
+            dropped.increment();
+            log.warn("Подписчик на события постов отключен: буфер из {} событий переполнен", bufferSize);
+        }
+    }
+}
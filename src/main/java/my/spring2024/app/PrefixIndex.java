@@ -0,0 +1,157 @@
+package my.spring2024.app;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Префиксный индекс имен сущностей для автодополнения.
+ * Ключи хранятся в отсортированной структуре, поэтому поиск по префиксу сводится
+ * к выборке диапазона ключей, а не к полному просмотру таблицы.
+ * Каждое слово имени индексируется отдельно, так что "Doe" находит "John Doe".
+ */
+public class PrefixIndex {
+    private static final char ID_SEPARATOR = '\u0000';
+
+    private final NavigableMap<String, Long> keys = new ConcurrentSkipListMap<>();
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Запись индекса.
+     * @param id идентификатор сущности
+     * @param name отображаемое имя
+     * @param popularity популярность, по которой упорядочиваются подсказки
+     */
+    public record Entry(Long id, String name, double popularity) {
+    }
+
+    /**
+     * Добавляет или обновляет имя сущности в индексе, сохраняя ее популярность.
+     * @param id идентификатор сущности
+     * @param name имя; если пустое, то сущность удаляется из индекса
+     */
+    public synchronized void putName(Long id, String name) {
+        var existing = entries.get(id);
+        put(id, name, existing == null ? 0 : existing.popularity());
+    }
+
+    /**
+     * Добавляет или обновляет сущность в индексе.
+     * @param id идентификатор сущности
+     * @param name имя; если пустое, то сущность удаляется из индекса
+     * @param popularity популярность сущности
+     */
+    public synchronized void put(Long id, String name, double popularity) {
+        if (id == null) return;
+        if (name == null || name.isBlank()) {
+            remove(id);
+            return;
+        }
+        var existing = entries.get(id);
+        var entry = new Entry(id, name.trim(), popularity);
+        if (existing != null && !existing.name().equals(entry.name())) {
+            removeKeys(existing);
+        }
+        entries.put(id, entry);
+        for (String token : tokens(entry.name())) {
+            keys.put(token + ID_SEPARATOR + id, id);
+        }
+    }
+
+    /**
+     * Обновляет популярность сущности, если она есть в индексе.
+     * @param id идентификатор сущности
+     * @param popularity новая популярность
+     */
+    public synchronized void updatePopularity(Long id, double popularity) {
+        var existing = entries.get(id);
+        if (existing != null) {
+            entries.put(id, new Entry(id, existing.name(), popularity));
+        }
+    }
+
+    /**
+     * Удаляет сущность из индекса.
+     * @param id идентификатор сущности
+     */
+    public synchronized void remove(Long id) {
+        if (id == null) return;
+        var existing = entries.remove(id);
+        if (existing != null) {
+            removeKeys(existing);
+        }
+    }
+
+    /**
+     * Удаляет все записи индекса.
+     */
+    public synchronized void clear() {
+        keys.clear();
+        entries.clear();
+    }
+
+    /**
+     * Возвращает количество сущностей в индексе.
+     * @return количество сущностей
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Возвращает не более limit самых популярных сущностей, одно из слов имени которых начинается с префикса.
+     * @param prefix префикс имени
+     * @param limit максимальное количество подсказок
+     * @return подсказки в порядке убывания популярности
+     */
+    public List<Entry> search(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank() || limit <= 0) return List.of();
+        var from = normalize(prefix);
+        var range = keys.subMap(from, true, from + Character.MAX_VALUE, false);
+
+        Comparator<Entry> byPopularity = Comparator.comparingDouble(Entry::popularity)
+                .thenComparing(Entry::id, Comparator.reverseOrder());
+        var top = new PriorityQueue<>(limit + 1, byPopularity);
+        var seen = new HashSet<Long>();
+        for (Long id : range.values()) {
+            if (!seen.add(id)) continue;
+            var entry = entries.get(id);
+            if (entry == null) continue;
+            top.offer(entry);
+            if (top.size() > limit) top.poll();
+        }
+
+        var result = new ArrayList<>(top);
+        result.sort(byPopularity.reversed());
+        return result;
+    }
+
+    private void removeKeys(Entry entry) {
+        for (String token : tokens(entry.name())) {
+            keys.remove(token + ID_SEPARATOR + entry.id());
+        }
+    }
+
+    private static List<String> tokens(String name) {
+        var normalized = normalize(name);
+        var result = new ArrayList<String>();
+        result.add(normalized);
+        for (int i = 0; i < normalized.length(); i++) {
+            if (normalized.charAt(i) == ' ' && i + 1 < normalized.length()) {
+                result.add(normalized.substring(i + 1));
+            }
+        }
+        return result;
+    }
+
+    private static String normalize(String value) {
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
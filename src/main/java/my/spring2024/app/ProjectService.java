@@ -6,6 +6,7 @@ import my.spring2024.domain.Review;
 import my.spring2024.domain.User;
 import my.spring2024.app.UserService;
 import my.spring2024.infrastructure.ProjectRepository;
+import my.spring2024.infrastructure.SparseFieldsQuery;
 import my.spring2024.infrastructure.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -14,7 +15,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.parameters.P;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 
@@ -25,33 +30,85 @@ import java.util.Optional;
 @Slf4j
 public class ProjectService {
     private final ProjectRepository projectRepository;
+    private final UserRepository userRepository;
     private final UserService userService;
 
     private final ReviewService reviewService;
 
-    public ProjectService(ProjectRepository projectRepository, UserService userService, ReviewService reviewService) {
+    private final AutocompleteService autocompleteService;
+
+    private final SerializedResponseCache responseCache;
+
+    private final SparseFieldsQuery sparseFieldsQuery;
+    private final Outbox outbox;
+
+    public ProjectService(ProjectRepository projectRepository, UserRepository userRepository, UserService userService,
+                          ReviewService reviewService, AutocompleteService autocompleteService,
+                          SerializedResponseCache responseCache,
+                          SparseFieldsQuery sparseFieldsQuery, Outbox outbox) {
         this.projectRepository = projectRepository;
+        this.userRepository = userRepository;
         this.userService = userService;
         this.reviewService = reviewService;
+        this.autocompleteService = autocompleteService;
+        this.responseCache = responseCache;
+        this.sparseFieldsQuery = sparseFieldsQuery;
+        this.outbox = outbox;
     }
 
     /**
      * Сохраняет проект в базе данных.
+     * Индекс автодополнения обновляется после фиксации транзакции, индексы похожих - по событию outbox.
      * @param project проект
      * @return сохраненный проект
      */
+    @Transactional
     public Project saveProject(Project project) {
+        if (project.getId() == null) {
+            resolveUsers(project);
+        }
         var savedProject = projectRepository.save(project);
+        AfterCommit.run(() -> autocompleteService.indexProject(savedProject));
+        outbox.append("Project", savedProject.getId(), "ProjectSaved", Map.of("id", savedProject.getId()));
+        responseCache.evict(SerializedResponseCache.PROJECT, savedProject.getId());
         log.info("Сохранен проект {}", project.getId());
         return savedProject;
     }
 
     /**
-     * Возвращает проект с заданым идентификатором
+     * Заменяет участников и лидера нового проекта, заданных идентификаторами, ссылками текущего контекста
+     * персистентности. Для уже загруженного пользователя ссылка совпадает с ним самим, для остальных создается
+     * прокси без запроса к базе данных, поэтому пользователи из DTO не считаются несохраненными сущностями.
+     * @param project новый проект
+     */
+    private void resolveUsers(Project project) {
+        if (project.getUsers() != null) {
+            project.getUsers().replaceAll(this::reference);
+        }
+        project.setLeader(reference(project.getLeader()));
+    }
+
+    private User reference(User user) {
+        return user == null || user.getId() == null ? user : userRepository.getReferenceById(user.getId());
+    }
+
+    /**
+     * Возвращает проект с заданым идентификатором.
      * @param id Идентификатор проекта
      * @return проект; если проект не найден, то null
      */
+    @Transactional(readOnly = true)
     public Optional<Project> getProjectById(Long id) {
+        return loadProject(id);
+    }
+
+    /**
+     * Загружает проект в транзакции вызывающего.
+     * Используется методами записи, которые изменяют полученный проект.
+     * @param id Идентификатор проекта
+     * @return проект; пустой, если проект не найден
+     */
+    private Optional<Project> loadProject(Long id) {
         var project = projectRepository.findById(id);
         if (project.isEmpty()){
             log.info("Не удалось найти проект с id {}", id);
@@ -61,12 +118,30 @@ public class ProjectService {
         return project;
     }
 
+    /**
+     * Возвращает проекты по списку идентификаторов.
+     * Идентификаторы загружаются частями по {@value BatchLoader#CHUNK_SIZE}, одним запросом на часть.
+     * @param ids Идентификаторы проектов
+     * @return найденные проекты в порядке запрошенных идентификаторов; ненайденные пропускаются
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Project> getProjectsByIds(List<Long> ids) {
+        var projects = BatchLoader.loadInOrder(ids, projectRepository::findAllById, Project::getId);
+        log.info("Найдено {} из {} запрошенных проектов", projects.size(), ids.size());
+        return projects;
+    }
+
     /**
      * Удаляет проект из базы данных по идентификатору.
+     * Проект удаляется из индекса автодополнения после фиксации транзакции, из индексов похожих - по событию outbox.
      * @param id Идентификатор отзыва.
      */
+    @Transactional
     public void deleteProject(Long id) {
         projectRepository.deleteById(id);
+        AfterCommit.run(() -> autocompleteService.removeProject(id));
+        outbox.append("Project", id, "ProjectDeleted", Map.of("id", id));
+        responseCache.evict(SerializedResponseCache.PROJECT, id);
         log.info("Удален проект с id {}", id);
     }
 
@@ -77,8 +152,9 @@ public class ProjectService {
      * @param user Пользователь, которого нужно добавить.
      * @return Обновленный проект с добавленным пользователем.
      */
+    @Transactional
     public Project addUserToProject(Long projectId, User user) {
-        Optional<Project> projectOptional = getProjectById(projectId);
+        Optional<Project> projectOptional = loadProject(projectId);
         if (projectOptional.isEmpty()) {
             log.info("Не удалось добавить пользователя {} к проекту с id {}: проект не найден", user.getId(), projectId);
             return null;
@@ -95,6 +171,20 @@ public class ProjectService {
         return project;
     }
 
+    /**
+     * Добавляет пользователя в проект по идентификатору пользователя.
+     *
+     * @param projectId Идентификатор проекта.
+     * @param userId Идентификатор пользователя, которого нужно добавить.
+     * @return Обновленный проект, или null, если проект или пользователь не найден.
+     */
+    @Transactional
+    public Project addUserToProject(Long projectId, Long userId) {
+        return userService.loadUser(userId)
+                .map(user -> addUserToProject(projectId, user))
+                .orElse(null);
+    }
+
     /**
      * Удаляет пользователя из проекта.
      * Требуется, чтобы вызывающий пользователь был лидером проекта.
@@ -104,8 +194,9 @@ public class ProjectService {
      * @param initiator Пользователь, запрашивающий операцию удаления.
      * @return Обновленный проект без удаленного пользователя, или null, если проект не найден.
      */
+    @Transactional
     public Project removeUserFromProject(Long projectId, User user, User initiator) {
-        Optional<Project> projectOptional = getProjectById(projectId);
+        Optional<Project> projectOptional = loadProject(projectId);
         if (projectOptional.isEmpty()) return null;
 
         Project project = projectOptional.get();
@@ -132,9 +223,10 @@ public class ProjectService {
      * @param projectId Идентификатор проекта.
      * @param review Отзыв, который нужно добавить.
      */
+    @Transactional
     public void addReviewToProject(Long senderId, Long projectId, Review review) {
-        Optional<User> optionalSender = userService.getUserById(senderId);
-        Optional<Project> projectOptional = getProjectById(projectId);
+        Optional<User> optionalSender = userService.loadUser(senderId);
+        Optional<Project> projectOptional = loadProject(projectId);
         if (optionalSender.isEmpty() || projectOptional.isEmpty()) {
             log.warn("Не удалось добавить отзыв {}: сущность с id {} не найдена", review.getId(), optionalSender.isEmpty() ? senderId : projectId);
             return;
@@ -159,9 +251,10 @@ public class ProjectService {
      * @param projectId Идентификатор проекта, получившго отзыв.
      * @param review Отзыв, который нужно удалить.
      */
+    @Transactional
     public void removeReviewFromProject(Long senderId, Long projectId, Review review) {
-        Optional<User> optionalSender = userService.getUserById(senderId);
-        Optional<Project> projectOptional = getProjectById(projectId);
+        Optional<User> optionalSender = userService.loadUser(senderId);
+        Optional<Project> projectOptional = loadProject(projectId);
         if (optionalSender.isEmpty() || projectOptional.isEmpty()) {
             log.warn("Не удалось удалить отзыв {}: сущность с id {} не найдена", review.getId(), optionalSender.isEmpty() ? senderId : projectId);
             return;
@@ -185,12 +278,29 @@ public class ProjectService {
      * @param pageable объект для пагинации
      * @return страница проектов
      */
+    @Transactional(readOnly = true)
     public Page<Project> getAllProjects(Specification<Project> spec, Pageable pageable) {
         var projects = projectRepository.findAll(spec, pageable);
         log.info("Найдено {} проектов", projects.getTotalElements());
         return projects;
     }
 
+    /**
+     * Возвращает все проекты с возможностью пагинации и фильтрации, выбирая из базы только заданные поля.
+     * Связанные сущности возвращаются идентификаторами.
+     * @param fields имена полей ответа и соответствующие им поля сущности
+     * @param spec спецификация для фильтрации
+     * @param pageable объект для пагинации
+     * @return страница строк "поле - значение"
+     * @throws IllegalArgumentException если у сущности нет какого-либо из полей
+     */
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> getAllProjects(Map<String, String> fields, Specification<Project> spec, Pageable pageable) {
+        var rows = sparseFieldsQuery.findAll(Project.class, fields, spec, pageable);
+        log.info("Найдено {} проектов с полями {}", rows.getTotalElements(), fields.keySet());
+        return rows;
+    }
+
     /**
      * Ищет проекты по ключевым словам в тексте или заголовке.
      * @param keyword ключевое слово для поиска.
@@ -198,6 +308,7 @@ public class ProjectService {
      * @return страница проектов, содержащих ключевое слово.
      * @throws IllegalArgumentException если ключевое слово пустое или null
      */
+    @Transactional(readOnly = true)
     public Page<Project> searchProjectsByKeyword(String keyword, Pageable pageable) {
         if(keyword == null || keyword.isEmpty()) throw new IllegalArgumentException();
         var projects = projectRepository.findByNameContainingOrDescriptionContaining(keyword, keyword, pageable);
@@ -0,0 +1,99 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сервис распределений оценок по проектам, получателям отзывов и по всей системе.
+ * Гистограммы обновляются по событиям изменения отзывов из ReviewService,
+ * поэтому медиана и процентили оценок вычисляются без обращения к таблице отзывов.
+ */
+@Slf4j
+@Service
+public class RatingDistributionService {
+    private final Map<Long, RatingHistogram> projects = new ConcurrentHashMap<>();
+    private final Map<Long, RatingHistogram> receivers = new ConcurrentHashMap<>();
+    private volatile RatingHistogram overall = new RatingHistogram();
+
+    /**
+     * Перестраивает гистограммы по всем отзывам.
+     * @param event событие загрузки отзывов
+     */
+    @EventListener
+    public synchronized void onReviewsLoaded(ReviewsLoadedEvent event) {
+        projects.clear();
+        receivers.clear();
+        overall = new RatingHistogram();
+        event.reviews().forEach(review -> apply(review, 1));
+        log.info("Распределения оценок построены: {} проектов, {} пользователей", projects.size(), receivers.size());
+    }
+
+    /**
+     * Обновляет гистограммы при изменении отзыва.
+     * @param event событие изменения отзыва
+     */
+    @EventListener
+    public synchronized void onReviewChanged(ReviewChangedEvent event) {
+        if (event.before() != null) apply(event.before(), -1);
+        if (event.after() != null) apply(event.after(), 1);
+    }
+
+    /**
+     * Возвращает распределение оценок проекта.
+     * @param projectId идентификатор проекта
+     * @return копия гистограммы; пустая, если у проекта нет отзывов
+     */
+    public RatingHistogram getProjectDistribution(Long projectId) {
+        return copy(projects.get(projectId));
+    }
+
+    /**
+     * Возвращает распределение оценок, полученных пользователем.
+     * @param userId идентификатор пользователя
+     * @return копия гистограммы; пустая, если у пользователя нет отзывов
+     */
+    public RatingHistogram getUserDistribution(Long userId) {
+        return copy(receivers.get(userId));
+    }
+
+    /**
+     * Возвращает общее распределение оценок нескольких проектов.
+     * @param projectIds идентификаторы проектов
+     * @return сумма гистограмм проектов
+     */
+    public RatingHistogram getProjectsDistribution(Collection<Long> projectIds) {
+        var result = new RatingHistogram();
+        projectIds.stream().distinct().map(projects::get).forEach(histogram -> {
+            if (histogram != null) result.merge(histogram);
+        });
+        return result;
+    }
+
+    /**
+     * Возвращает распределение всех оценок в системе.
+     * @return копия гистограммы
+     */
+    public RatingHistogram getOverallDistribution() {
+        return copy(overall);
+    }
+
+    private void apply(ReviewSnapshot review, int sign) {
+        overall.add(review.rating(), sign);
+        if (review.projectId() != null) {
+            projects.computeIfAbsent(review.projectId(), id -> new RatingHistogram()).add(review.rating(), sign);
+        }
+        if (review.receiverId() != null) {
+            receivers.computeIfAbsent(review.receiverId(), id -> new RatingHistogram()).add(review.rating(), sign);
+        }
+    }
+
+    private static RatingHistogram copy(RatingHistogram histogram) {
+        var result = new RatingHistogram();
+        return histogram == null ? result : result.merge(histogram);
+    }
+}
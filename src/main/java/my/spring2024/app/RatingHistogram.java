@@ -0,0 +1,90 @@
+package my.spring2024.app;
+
+import java.util.Arrays;
+
+/**
+ * Точное распределение оценок от 1 до 5.
+ * Оценки принимают всего пять значений, поэтому распределение хранится как пять счетчиков:
+ * оно точное, занимает постоянную память, а гистограммы разных проектов или пользователей
+ * складываются поэлементно.
+ */
+public class RatingHistogram {
+    public static final int MIN_RATING = 1;
+    public static final int MAX_RATING = 5;
+
+    private final long[] counts = new long[MAX_RATING - MIN_RATING + 1];
+
+    /**
+     * Добавляет оценку или убирает ее.
+     * @param rating оценка от 1 до 5; остальные значения игнорируются
+     * @param sign 1, чтобы добавить оценку, -1, чтобы убрать
+     */
+    public synchronized void add(int rating, int sign) {
+        if (rating < MIN_RATING || rating > MAX_RATING) return;
+        int index = rating - MIN_RATING;
+        counts[index] = Math.max(counts[index] + sign, 0);
+    }
+
+    /**
+     * Прибавляет к этой гистограмме другую.
+     * @param other гистограмма
+     * @return эта гистограмма
+     */
+    public RatingHistogram merge(RatingHistogram other) {
+        long[] otherCounts = other.counts();
+        synchronized (this) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += otherCounts[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Возвращает количество оценок каждого значения.
+     * @return копия счетчиков; элемент i соответствует оценке i + 1
+     */
+    public synchronized long[] counts() {
+        return Arrays.copyOf(counts, counts.length);
+    }
+
+    /**
+     * Возвращает общее количество оценок.
+     * @return количество оценок
+     */
+    public synchronized long total() {
+        return Arrays.stream(counts).sum();
+    }
+
+    /**
+     * Возвращает среднюю оценку.
+     * @return средняя оценка; 0, если оценок нет
+     */
+    public synchronized double mean() {
+        long total = 0;
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i];
+            sum += counts[i] * (i + MIN_RATING);
+        }
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * Возвращает квантиль оценок: наименьшую оценку, не меньше которой доля q всех оценок.
+     * @param q уровень квантиля от 0 до 1
+     * @return квантиль; 0, если оценок нет
+     */
+    public synchronized int quantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("Уровень квантиля должен быть от 0 до 1: " + q);
+        long total = Arrays.stream(counts).sum();
+        if (total == 0) return 0;
+        long rank = Math.max((long) Math.ceil(q * total), 1);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) return i + MIN_RATING;
+        }
+        return MAX_RATING;
+    }
+}
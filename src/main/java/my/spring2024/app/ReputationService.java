@@ -0,0 +1,238 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.stream.IntStream;
+
+/**
+ * Сервис репутации пользователей.
+ * Отзывы образуют ориентированный граф "отправитель -> получатель" с весом, равным превышению оценки
+ * над нейтральной {@value #NEUTRAL_RATING}: отзыв с оценкой 5 весит 2, с оценкой 4 - 1, а отзывы с оценкой
+ * не выше нейтральной ребер не образуют и репутацию получателя не повышают.
+ * Репутация вычисляется как PageRank по этому графу: отзыв от пользователя с высокой репутацией
+ * весит больше, а накрутка отзывами от новых аккаунтов дает мало.
+ * Граф хранится в памяти в виде массивов CSR (смещения и списки входящих ребер), на больших графах
+ * итерации выполняются параллельно по вершинам. Граф обновляется по событиям изменения отзывов, а пересчет выполняется
+ * при следующем чтении, начиная с предыдущего результата, поэтому сходится за несколько итераций.
+ */
+@Slf4j
+@Service
+public class ReputationService {
+    private static final int MAX_ITERATIONS = 100;
+    private static final double TOLERANCE = 1e-9;
+    private static final int PARALLEL_THRESHOLD = 10_000;
+    private static final int NEUTRAL_RATING = 3;
+
+    /**
+     * Репутация пользователя.
+     * @param userId идентификатор пользователя
+     * @param score репутация; средняя репутация по всем пользователям графа равна 1
+     */
+    public record Score(Long userId, double score) {
+    }
+
+    /**
+     * Граф в формате CSR по входящим ребрам и вычисленные по нему оценки.
+     */
+    private record Graph(long[] userIds, Map<Long, Integer> indexes, int[] offsets, int[] sources,
+                         double[] weights, double[] outWeights, double[] ranks, List<Score> leaderboard) {
+        static final Graph EMPTY = new Graph(new long[0], Map.of(), new int[1], new int[0],
+                new double[0], new double[0], new double[0], List.of());
+    }
+
+    private final double damping;
+
+    /**
+     * Суммарный вес отзывов по парам "отправитель -> получатель".
+     */
+    private final Map<Long, Map<Long, Double>> edges = new HashMap<>();
+    private volatile boolean dirty;
+    private volatile Graph graph = Graph.EMPTY;
+
+    public ReputationService(@Value("${users.reputation.damping:0.85}") double damping) {
+        this.damping = damping;
+    }
+
+    /**
+     * Перестраивает граф по всем отзывам.
+     * @param event событие загрузки отзывов
+     */
+    @EventListener
+    public synchronized void onReviewsLoaded(ReviewsLoadedEvent event) {
+        edges.clear();
+        event.reviews().forEach(review -> addEdge(review, 1));
+        dirty = true;
+        recompute();
+        log.info("Репутация вычислена для {} пользователей", graph.userIds().length);
+    }
+
+    /**
+     * Обновляет граф при изменении отзыва.
+     * @param event событие изменения отзыва
+     */
+    @EventListener
+    public synchronized void onReviewChanged(ReviewChangedEvent event) {
+        if (event.before() != null) addEdge(event.before(), -1);
+        if (event.after() != null) addEdge(event.after(), 1);
+        dirty = true;
+    }
+
+    /**
+     * Возвращает репутацию пользователя.
+     * @param userId идентификатор пользователя
+     * @return репутация; пустой, если пользователь не участвует ни в одном отзыве с оценкой выше нейтральной
+     */
+    public OptionalDouble getReputation(Long userId) {
+        var current = current();
+        Integer index = current.indexes().get(userId);
+        return index == null ? OptionalDouble.empty() : OptionalDouble.of(current.ranks()[index] * current.userIds().length);
+    }
+
+    /**
+     * Возвращает пользователей с наибольшей репутацией.
+     * @param limit максимальное количество пользователей
+     * @return пользователи в порядке убывания репутации
+     */
+    public List<Score> getLeaderboard(int limit) {
+        var leaderboard = current().leaderboard();
+        return leaderboard.subList(0, Math.min(Math.max(limit, 0), leaderboard.size()));
+    }
+
+    private Graph current() {
+        if (dirty) {
+            synchronized (this) {
+                if (dirty) recompute();
+            }
+        }
+        return graph;
+    }
+
+    private void addEdge(ReviewSnapshot review, int sign) {
+        if (review.senderId() == null || review.receiverId() == null || review.senderId().equals(review.receiverId())) {
+            return;
+        }
+        var targets = edges.computeIfAbsent(review.senderId(), id -> new HashMap<>());
+        double weight = targets.getOrDefault(review.receiverId(), 0.0) + sign * Math.max(review.rating() - NEUTRAL_RATING, 0);
+        if (weight <= 0) {
+            targets.remove(review.receiverId());
+            if (targets.isEmpty()) edges.remove(review.senderId());
+        } else {
+            targets.put(review.receiverId(), weight);
+        }
+    }
+
+    private void recompute() {
+        var previous = graph;
+        var next = buildGraph();
+        int n = next.userIds().length;
+        double[] ranks = next.ranks();
+        for (int i = 0; i < n; i++) {
+            Integer old = previous.indexes().get(next.userIds()[i]);
+            ranks[i] = old == null ? 1.0 / n : previous.ranks()[old];
+        }
+        normalize(ranks);
+
+        int iterations = 0;
+        double[] nextRanks = new double[n];
+        while (n > 0 && iterations < MAX_ITERATIONS) {
+            iterations++;
+            double delta = iterate(next, ranks, nextRanks);
+            System.arraycopy(nextRanks, 0, ranks, 0, n);
+            if (delta < TOLERANCE) break;
+        }
+
+        var leaderboard = new ArrayList<Score>(n);
+        for (int i = 0; i < n; i++) {
+            leaderboard.add(new Score(next.userIds()[i], ranks[i] * n));
+        }
+        leaderboard.sort((a, b) -> Double.compare(b.score(), a.score()));
+        graph = new Graph(next.userIds(), next.indexes(), next.offsets(), next.sources(), next.weights(),
+                next.outWeights(), ranks, List.copyOf(leaderboard));
+        dirty = false;
+        log.debug("Репутация пересчитана за {} итераций", iterations);
+    }
+
+    /**
+     * Выполняет одну итерацию PageRank, собирая для каждой вершины вклад входящих ребер.
+     * @return сумма изменений оценок
+     */
+    private double iterate(Graph g, double[] ranks, double[] nextRanks) {
+        int n = ranks.length;
+        double dangling = 0;
+        for (int i = 0; i < n; i++) {
+            if (g.outWeights()[i] == 0) dangling += ranks[i];
+        }
+        double base = (1 - damping) / n + damping * dangling / n;
+        var vertices = IntStream.range(0, n);
+        if (g.sources().length >= PARALLEL_THRESHOLD) vertices = vertices.parallel();
+        vertices.forEach(v -> {
+            double sum = 0;
+            for (int e = g.offsets()[v]; e < g.offsets()[v + 1]; e++) {
+                int u = g.sources()[e];
+                sum += ranks[u] * g.weights()[e] / g.outWeights()[u];
+            }
+            nextRanks[v] = base + damping * sum;
+        });
+        double delta = 0;
+        for (int i = 0; i < n; i++) {
+            delta += Math.abs(nextRanks[i] - ranks[i]);
+        }
+        return delta;
+    }
+
+    private Graph buildGraph() {
+        var indexes = new HashMap<Long, Integer>();
+        var userIds = new ArrayList<Long>();
+        int edgeCount = 0;
+        for (var entry : edges.entrySet()) {
+            indexes.computeIfAbsent(entry.getKey(), id -> { userIds.add(id); return userIds.size() - 1; });
+            for (Long target : entry.getValue().keySet()) {
+                indexes.computeIfAbsent(target, id -> { userIds.add(id); return userIds.size() - 1; });
+                edgeCount++;
+            }
+        }
+        int n = userIds.size();
+        int[] offsets = new int[n + 1];
+        double[] outWeights = new double[n];
+        for (var entry : edges.entrySet()) {
+            int source = indexes.get(entry.getKey());
+            for (var target : entry.getValue().entrySet()) {
+                offsets[indexes.get(target.getKey()) + 1]++;
+                outWeights[source] += target.getValue();
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] fill = Arrays.copyOf(offsets, n);
+        int[] sources = new int[edgeCount];
+        double[] weights = new double[edgeCount];
+        for (var entry : edges.entrySet()) {
+            int source = indexes.get(entry.getKey());
+            for (var target : entry.getValue().entrySet()) {
+                int position = fill[indexes.get(target.getKey())]++;
+                sources[position] = source;
+                weights[position] = target.getValue();
+            }
+        }
+        return new Graph(userIds.stream().mapToLong(Long::longValue).toArray(), Map.copyOf(indexes), offsets, sources,
+                weights, outWeights, new double[n], List.of());
+    }
+
+    private static void normalize(double[] ranks) {
+        double sum = Arrays.stream(ranks).sum();
+        if (sum == 0) return;
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] /= sum;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одновременных одинаковых запросов на чтение.
+ * Пока запрос с некоторым ключом выполняется, остальные вызовы с тем же ключом не обращаются
+ * к базе данных, а ждут и получают его результат - тот же объект, который передается в другие потоки.
+ * Поэтому объединять можно только запросы, возвращающие неизменяемые значения без связи с сессией Hibernate
+ * (версии, идентификаторы, сериализованные представления); сущности принадлежат контексту персистентности запроса,
+ * который их загрузил, и их ленивые коллекции нельзя загружать из других потоков.
+ * Так объединяется построение карточек сущностей при промахе кэша сериализованных ответов: сущность загружается,
+ * преобразуется и сериализуется один раз, а все ожидающие запросы получают готовые байты.
+ * Внутри активной транзакции запросы не объединяются, поэтому методы, использующие объединение, не открывают
+ * транзакцию сами, а запросы выполняются в read-only транзакциях репозиториев и при наличии реплики читают с нее.
+ */
+@Slf4j
+@Component
+public class RequestCoalescer {
+    private record Counters(LongAdder executed, LongAdder coalesced) {
+    }
+
+    private final Map<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Выполняет запрос или присоединяется к уже выполняющемуся запросу с тем же ключом.
+     * @param operation название операции, например "project"
+     * @param key параметры запроса
+     * @param loader выполнение запроса
+     * @return результат запроса
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String operation, Object key, Supplier<V> loader) {
+        var operationCounters = counters.computeIfAbsent(operation, o -> new Counters(new LongAdder(), new LongAdder()));
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            operationCounters.executed().increment();
+            return loader.get();
+        }
+
+        List<Object> flightKey = List.of(operation, key);
+        var own = new CompletableFuture<Object>();
+        var existing = inFlight.putIfAbsent(flightKey, own);
+        if (existing != null) {
+            operationCounters.coalesced().increment();
+            log.debug("Запрос {} {} объединен с выполняющимся", operation, key);
+            return (V) await(existing);
+        }
+
+        operationCounters.executed().increment();
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, own);
+        }
+    }
+
+    /**
+     * Возвращает количество запросов операции, выполненных в базе данных.
+     * @param operation название операции
+     * @return количество выполненных запросов
+     */
+    public long getExecuted(String operation) {
+        var operationCounters = counters.get(operation);
+        return operationCounters == null ? 0 : operationCounters.executed().sum();
+    }
+
+    /**
+     * Возвращает количество запросов операции, получивших результат другого запроса.
+     * @param operation название операции
+     * @return количество объединенных запросов
+     */
+    public long getCoalesced(String operation) {
+        var operationCounters = counters.get(operation);
+        return operationCounters == null ? 0 : operationCounters.coalesced().sum();
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+}
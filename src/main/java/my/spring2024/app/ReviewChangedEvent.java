@@ -0,0 +1,10 @@
+package my.spring2024.app;
+
+/**
+ * Событие создания, изменения или удаления отзыва.
+ * Публикуется после фиксации транзакции, так что откаченные изменения в метрики не попадают.
+ * @param before отзыв до изменения; null, если отзыв создан
+ * @param after отзыв после изменения; null, если отзыв удален
+ */
+public record ReviewChangedEvent(ReviewSnapshot before, ReviewSnapshot after) {
+}
@@ -5,15 +5,23 @@ import my.spring2024.domain.Project;
 import my.spring2024.domain.Review;
 import my.spring2024.domain.User;
 import my.spring2024.infrastructure.ReviewRepository;
+import my.spring2024.infrastructure.SparseFieldsQuery;
 import my.spring2024.infrastructure.UserRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Сервис для управления отзывами в приложении.
@@ -23,9 +31,41 @@ import java.util.Optional;
 public class ReviewService {
 
     private final ReviewRepository reviewRepository;
+    private final SparseFieldsQuery sparseFieldsQuery;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Outbox outbox;
+    private final JournalService journalService;
+    private final Map<Long, ReviewSnapshot> snapshots = new ConcurrentHashMap<>();
 
-    public ReviewService(ReviewRepository reviewRepository) {
+    public ReviewService(ReviewRepository reviewRepository, SparseFieldsQuery sparseFieldsQuery,
+                         ApplicationEventPublisher eventPublisher, Outbox outbox, JournalService journalService) {
         this.reviewRepository = reviewRepository;
+        this.sparseFieldsQuery = sparseFieldsQuery;
+        this.eventPublisher = eventPublisher;
+        this.outbox = outbox;
+        this.journalService = journalService;
+    }
+
+    /**
+     * Загружает снимки всех отзывов и сообщает о них построенным в памяти метрикам.
+     * Снимки восстанавливаются из журнала изменений, а если это невозможно, загружаются из базы данных.
+     * Вызывается при старте приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSnapshots() {
+        snapshots.clear();
+        var recovered = journalService.recoverReviews();
+        if (recovered.isPresent()) {
+            recovered.get().forEach(snapshot -> snapshots.put(snapshot.id(), snapshot));
+        } else {
+            for (Object[] row : reviewRepository.findAllSnapshots()) {
+                var snapshot = new ReviewSnapshot((Long) row[0], (Long) row[1], (Long) row[2], (Long) row[3], ((Number) row[4]).intValue());
+                snapshots.put(snapshot.id(), snapshot);
+            }
+            journalService.seed(snapshots.values());
+        }
+        eventPublisher.publishEvent(new ReviewsLoadedEvent(List.copyOf(snapshots.values())));
+        log.info("Загружено {} отзывов для построения метрик", snapshots.size());
     }
 
     /**
@@ -35,21 +75,24 @@ public class ReviewService {
      * @param review Отзыв, который нужно сохранить.
      * @return Сохраненный отзыв, или null, если оценка отзыва невалидна.
      */
+    @Transactional
     public Review saveReview(Review review) {
         if (!review.isValidRating(review.getRating())) {
             log.error("Некорректная оценка {} отзыва: {}", review.getRating(), review.getId());
             return null;
         }
         var savedReview = reviewRepository.save(review);
+        publishChange(savedReview);
         log.info("Сохранен отзыв {}", review.getId());
         return savedReview;
     }
 
     /**
-     * Возвращает отзыв с заданым идентификатором
+     * Возвращает отзыв с заданым идентификатором.
      * @param id Идентификатор отзыва
      * @return отзыв; если отзыв не найден, то null
      */
+    @Transactional(readOnly = true)
     public Review getReviewById(Long id) {
         var review = reviewRepository.findById(id);
         if (review.isEmpty()) {
@@ -61,12 +104,29 @@ public class ReviewService {
         }
     }
 
+    /**
+     * Возвращает отзывы по списку идентификаторов.
+     * Идентификаторы загружаются частями по {@value BatchLoader#CHUNK_SIZE}, одним запросом на часть.
+     * @param ids Идентификаторы отзывов
+     * @return найденные отзывы в порядке запрошенных идентификаторов; ненайденные пропускаются
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Review> getReviewsByIds(List<Long> ids) {
+        var reviews = BatchLoader.loadInOrder(ids, reviewRepository::findAllById, Review::getId);
+        log.info("Найдено {} из {} запрошенных отзывов", reviews.size(), ids.size());
+        return reviews;
+    }
+
     /**
      * Удаляет отзыв из базы данных по идентификатору.
+     * Метрики узнают об удалении после фиксации транзакции.
      * @param id Идентификатор отзыва.
      */
+    @Transactional
     public void deleteReview(Long id) {
         reviewRepository.deleteById(id);
+        outbox.append("Review", id, "ReviewDeleted", Map.of("id", id));
+        AfterCommit.run(() -> applyChange(id, null));
         log.info("Удален отзыв с id {}", id);
     }
 
@@ -78,6 +138,7 @@ public class ReviewService {
      * @param review Обновленные данные отзыва.
      * @return Обновленный отзыв, или null, если отзыв не найден или оценка отзыва невалидна.
      */
+    @Transactional
     public Review updateReview(Long id, Review review) {
         Optional<Review> existingReview = reviewRepository.findById(id);
         if (existingReview.isPresent()) {
@@ -85,6 +146,7 @@ public class ReviewService {
             updatedReview.setRating(review.getRating());
             updatedReview.setText(review.getText());
             reviewRepository.save(updatedReview);
+            publishChange(updatedReview);
             log.info("Обновлен отзыв с id {}", id);
             return updatedReview;
         } else {
@@ -99,6 +161,7 @@ public class ReviewService {
      * @param user пользователь, отзывы на которого нужно получить.
      * @return Список отзывов, или пустой список, если отзывов нет.
      */
+    @Transactional(readOnly = true)
     public List<Review> getReviewsByReceiver(User user) {
         if(user == null)
         {
@@ -115,6 +178,7 @@ public class ReviewService {
      * @param project проект, отзывы на который нужно получить.
      * @return Список отзывов, или пустой список, если отзывов нет.
      */
+    @Transactional(readOnly = true)
     public List<Review> getReviewsByProject(Project project) {
         if(project == null)
         {
@@ -131,6 +195,7 @@ public class ReviewService {
      * @param sender Пользователь, отзывы которого нужно получить.
      * @return Список отзывов, или пустой список, если отзывов нет.
      */
+    @Transactional(readOnly = true)
     public List<Review> getReviewsBySender(User sender) {
         return reviewRepository.findAllBySender(sender);
     }
@@ -141,6 +206,7 @@ public class ReviewService {
      * @param user Пользователь, среднюю оценку которого нужно вычислить.
      * @return Средняя оценка, или 0, если отзывов нет.
      */
+    @Transactional(readOnly = true)
     public double getAverageRating(User user) {
         List<Review> reviews = getReviewsByReceiver(user);
         return reviews.stream()
@@ -199,14 +265,51 @@ public class ReviewService {
     }
 
     /**
-     * Возвращает всех отзывов с возможностью пагинации и фильтрации.
+     * Возвращает все отзывы с возможностью пагинации и фильтрации.
      * @param spec спецификация для фильтрации
      * @param pageable объект для пагинации
      * @return страница отзывов
      */
+    @Transactional(readOnly = true)
     public Page<Review> getAllReviews(Specification<Review> spec, Pageable pageable) {
         var reviews = reviewRepository.findAll(spec, pageable);
         log.info("Найдено {} отзывов", reviews.getTotalElements());
         return reviews;
     }
-}
+
+    /**
+     * Возвращает все отзывы с возможностью пагинации и фильтрации, выбирая из базы только заданные поля.
+     * Связанные сущности возвращаются идентификаторами.
+     * @param fields имена полей ответа и соответствующие им поля сущности
+     * @param spec спецификация для фильтрации
+     * @param pageable объект для пагинации
+     * @return страница строк "поле - значение"
+     * @throws IllegalArgumentException если у сущности нет какого-либо из полей
+     */
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> getAllReviews(Map<String, String> fields, Specification<Review> spec, Pageable pageable) {
+        var rows = sparseFieldsQuery.findAll(Review.class, fields, spec, pageable);
+        log.info("Найдено {} отзывов с полями {}", rows.getTotalElements(), fields.keySet());
+        return rows;
+    }
+
+    private void publishChange(Review review) {
+        var after = ReviewSnapshot.of(review);
+        if (!after.equals(snapshots.get(after.id()))) {
+            outbox.append("Review", after.id(), "ReviewSaved", after);
+            AfterCommit.run(() -> applyChange(after.id(), after));
+        }
+    }
+
+    /**
+     * Применяет зафиксированное изменение отзыва к снимкам и сообщает о нем метрикам.
+     * @param id идентификатор отзыва
+     * @param after отзыв после изменения; null, если отзыв удален
+     */
+    private void applyChange(Long id, ReviewSnapshot after) {
+        var before = after == null ? snapshots.remove(id) : snapshots.put(id, after);
+        if (!Objects.equals(before, after)) {
+            eventPublisher.publishEvent(new ReviewChangedEvent(before, after));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package my.spring2024.app;
+
+import my.spring2024.domain.Review;
+
+/**
+ * Неизменяемый снимок отзыва, по которому обновляются построенные в памяти метрики.
+ * @param id идентификатор отзыва
+ * @param senderId идентификатор отправителя; null, если не задан
+ * @param receiverId идентификатор получателя; null, если не задан
+ * @param projectId идентификатор проекта; null, если не задан
+ * @param rating оценка
+ */
+public record ReviewSnapshot(Long id, Long senderId, Long receiverId, Long projectId, int rating) {
+    /**
+     * Создает снимок отзыва.
+     * @param review отзыв
+     * @return снимок
+     */
+    public static ReviewSnapshot of(Review review) {
+        return new ReviewSnapshot(review.getId(),
+                review.getSender() == null ? null : review.getSender().getId(),
+                review.getReceiver() == null ? null : review.getReceiver().getId(),
+                review.getProject() == null ? null : review.getProject().getId(),
+                review.getRating());
+    }
+}
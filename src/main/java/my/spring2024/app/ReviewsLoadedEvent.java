@@ -0,0 +1,11 @@
+package my.spring2024.app;
+
+import java.util.Collection;
+
+/**
+ * Событие загрузки всех отзывов из базы данных при старте приложения.
+ * По нему построенные в памяти метрики перестраиваются с нуля.
+ * @param reviews снимки всех отзывов
+ */
+public record ReviewsLoadedEvent(Collection<ReviewSnapshot> reviews) {
+}
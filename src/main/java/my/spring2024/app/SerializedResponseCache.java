@@ -0,0 +1,134 @@
+package my.spring2024.app;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кэш сериализованных представлений сущностей для часто запрашиваемых карточек.
+ * Хранит готовые байты ответа в каждом запрошенном формате (JSON, CBOR, ...) и сжатую gzip-копию
+ * для больших ответов, поэтому попадание в кэш не требует ни загрузки сущности,
+ * ни преобразования в DTO, ни кодирования.
+ * Записи удаляются методами записи сервисов после фиксации транзакции; время жизни записи ограничивает устаревание
+ * карточек из-за изменений связанных сущностей.
+ */
+@Component
+public class SerializedResponseCache {
+    public static final String PROJECT = "project";
+    public static final String USER = "user";
+    public static final String POST = "post";
+
+    /**
+     * Запись кэша.
+     * @param version версия сущности
+     * @param body сериализованное представление
+     * @param gzip сжатое представление; null, если ответ слишком мал для сжатия
+     * @param digest MD5 представления в шестнадцатеричном виде
+     * @param expiresAt момент устаревания записи, мс
+     */
+    public record Entry(Long version, byte[] body, byte[] gzip, String digest, long expiresAt) {
+    }
+
+    private final LruCache<String, Entry> entries;
+    private final Set<String> formats = ConcurrentHashMap.newKeySet();
+    private final long ttlMillis;
+    private final int gzipMinSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SerializedResponseCache(@Value("${response-cache.max-size:10000}") int maxSize,
+                                   @Value("${response-cache.ttl:PT30S}") Duration ttl,
+                                   @Value("${response-cache.gzip-min-size:1024}") int gzipMinSize) {
+        this.entries = new LruCache<>(maxSize);
+        this.ttlMillis = ttl.toMillis();
+        this.gzipMinSize = gzipMinSize;
+    }
+
+    /**
+     * Возвращает сохраненное представление сущности.
+     * @param type тип сущности
+     * @param id идентификатор сущности
+     * @param format формат представления
+     * @return запись кэша; null, если записи нет или она устарела
+     */
+    public Entry get(String type, Long id, String format) {
+        var entry = entries.get(key(type, id, format));
+        if (entry == null || entry.expiresAt() <= System.currentTimeMillis()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Сохраняет представление сущности.
+     * @param type тип сущности
+     * @param id идентификатор сущности
+     * @param format формат представления
+     * @param version версия сущности
+     * @param body сериализованное представление
+     * @return сохраненная запись
+     */
+    public Entry put(String type, Long id, String format, Long version, byte[] body) {
+        var entry = new Entry(version, body, body.length >= gzipMinSize ? gzip(body) : null,
+                DigestUtils.md5DigestAsHex(body), System.currentTimeMillis() + ttlMillis);
+        formats.add(format);
+        entries.put(key(type, id, format), entry);
+        return entry;
+    }
+
+    /**
+     * Удаляет представления сущности во всех форматах из кэша после фиксации текущей транзакции.
+     * Если удалить их раньше, параллельный запрос успеет снова закэшировать еще не измененную сущность.
+     * @param type тип сущности
+     * @param id идентификатор сущности
+     */
+    public void evict(String type, Long id) {
+        if (id == null) return;
+        AfterCommit.run(() -> {
+            for (String format : formats) {
+                entries.remove(key(type, id, format));
+            }
+        });
+    }
+
+    /**
+     * Возвращает количество попаданий в кэш.
+     * @return количество попаданий
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Возвращает количество промахов кэша.
+     * @return количество промахов
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static String key(String type, Long id, String format) {
+        return type + ':' + id + ':' + format;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        var buffer = new ByteArrayOutputStream(body.length / 2);
+        try (var out = new GZIPOutputStream(buffer)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,185 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.domain.Project;
+import my.spring2024.domain.User;
+import my.spring2024.infrastructure.ProjectRepository;
+import my.spring2024.infrastructure.UserRepository;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сервис похожих проектов и пользователей.
+ * Проект описывается множеством участников (текущих и прошлых), пользователь - множеством проектов,
+ * в которых он участвовал. Похожими считаются множества с большим коэффициентом Жаккара,
+ * который оценивается по сигнатурам MinHash без попарного сравнения всех множеств.
+ * Множества хранятся в памяти и обновляются по событиям outbox ({@link DomainEvent}) в фоновом потоке доставки,
+ * а не в потоке запроса; все обновления идемпотентны, поэтому повторная доставка события ничего не меняет.
+ * Пользователь, удаленный из проекта, остается в его множестве, так как проект переходит в его прошлые проекты.
+ */
+@Slf4j
+@Service
+public class SimilarityService {
+    private static final long SEED = 42;
+
+    private final ProjectRepository projectRepository;
+    private final UserRepository userRepository;
+
+    private final Map<Long, Set<Long>> projectMembers = new HashMap<>();
+    private final Map<Long, Set<Long>> userProjects = new HashMap<>();
+    private final MinHashIndex projectIndex;
+    private final MinHashIndex userIndex;
+
+    public SimilarityService(ProjectRepository projectRepository, UserRepository userRepository,
+                             @Value("${similarity.hashes:128}") int hashes,
+                             @Value("${similarity.bands:32}") int bands) {
+        this.projectRepository = projectRepository;
+        this.userRepository = userRepository;
+        this.projectIndex = new MinHashIndex(hashes, bands, SEED);
+        this.userIndex = new MinHashIndex(hashes, bands, SEED);
+    }
+
+    /**
+     * Перестраивает индексы по данным из базы данных.
+     * Вызывается при старте приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        projectMembers.clear();
+        userProjects.clear();
+        projectIndex.clear();
+        userIndex.clear();
+        for (Object[] row : projectRepository.findAllMembers()) {
+            link((Long) row[0], (Long) row[1]);
+        }
+        for (Object[] row : userRepository.findAllPastMembers()) {
+            link((Long) row[0], (Long) row[1]);
+        }
+        projectMembers.forEach(projectIndex::put);
+        userProjects.forEach(userIndex::put);
+        log.info("Индексы похожих построены: {} проектов, {} пользователей", projectIndex.size(), userIndex.size());
+    }
+
+    /**
+     * Возвращает проекты с похожим составом участников.
+     * @param projectId идентификатор проекта
+     * @param limit максимальное количество проектов
+     * @return похожие проекты в порядке убывания сходства
+     */
+    public List<MinHashIndex.Match> getSimilarProjects(Long projectId, int limit) {
+        return projectIndex.similar(projectId, limit);
+    }
+
+    /**
+     * Возвращает пользователей, участвовавших в похожих наборах проектов.
+     * @param userId идентификатор пользователя
+     * @param limit максимальное количество пользователей
+     * @return похожие пользователи в порядке убывания сходства
+     */
+    public List<MinHashIndex.Match> getSimilarUsers(Long userId, int limit) {
+        return userIndex.similar(userId, limit);
+    }
+
+    /**
+     * Возвращает проекты, в которых участвовали пользователи.
+     * @param userIds идентификаторы пользователей
+     * @return копии множеств проектов; пользователи без проектов пропускаются
+     */
+    public synchronized Map<Long, Set<Long>> getProjectsOfUsers(Collection<Long> userIds) {
+        var projects = new HashMap<Long, Set<Long>>();
+        for (Long userId : userIds) {
+            var userProjectIds = userProjects.get(userId);
+            if (userProjectIds != null) projects.put(userId, Set.copyOf(userProjectIds));
+        }
+        return projects;
+    }
+
+    /**
+     * Добавляет текущих участников проекта в индекс.
+     * Участники учитываются, только если список участников уже загружен.
+     * @param project проект
+     */
+    public synchronized void indexProject(Project project) {
+        var users = project.getUsers();
+        if (project.getId() == null || users == null || !Hibernate.isInitialized(users)) return;
+        var changedUsers = new HashSet<Long>();
+        for (User user : users) {
+            if (user.getId() != null && link(project.getId(), user.getId())) {
+                changedUsers.add(user.getId());
+            }
+        }
+        if (changedUsers.isEmpty()) return;
+        projectIndex.put(project.getId(), projectMembers.get(project.getId()));
+        changedUsers.forEach(userId -> userIndex.put(userId, userProjects.get(userId)));
+    }
+
+    /**
+     * Обновляет индексы по событию сохранения или удаления проекта или удаления пользователя.
+     * Участники сохраненного проекта загружаются в транзакции доставки.
+     * @param event событие изменения сущности
+     */
+    @EventListener
+    public void onDomainEvent(DomainEvent event) {
+        switch (event.aggregateType() + '.' + event.type()) {
+            case "Project.ProjectSaved" -> projectRepository.findById(event.aggregateId()).ifPresent(project -> {
+                Hibernate.initialize(project.getUsers());
+                indexProject(project);
+            });
+            case "Project.ProjectDeleted" -> removeProject(event.aggregateId());
+            case "User.UserDeleted" -> removeUser(event.aggregateId());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Удаляет проект из индексов.
+     * @param projectId идентификатор проекта
+     */
+    public synchronized void removeProject(Long projectId) {
+        var members = projectMembers.remove(projectId);
+        projectIndex.remove(projectId);
+        if (members == null) return;
+        for (Long userId : members) {
+            userIndex.put(userId, unlink(userProjects, userId, projectId));
+        }
+    }
+
+    /**
+     * Удаляет пользователя из индексов.
+     * @param userId идентификатор пользователя
+     */
+    public synchronized void removeUser(Long userId) {
+        var projects = userProjects.remove(userId);
+        userIndex.remove(userId);
+        if (projects == null) return;
+        for (Long projectId : projects) {
+            projectIndex.put(projectId, unlink(projectMembers, projectId, userId));
+        }
+    }
+
+    private boolean link(Long projectId, Long userId) {
+        userProjects.computeIfAbsent(userId, id -> new HashSet<>()).add(projectId);
+        return projectMembers.computeIfAbsent(projectId, id -> new HashSet<>()).add(userId);
+    }
+
+    private static Set<Long> unlink(Map<Long, Set<Long>> sets, Long key, Long element) {
+        var set = sets.get(key);
+        if (set == null) return Set.of();
+        set.remove(element);
+        if (set.isEmpty()) sets.remove(key);
+        return set;
+    }
+}
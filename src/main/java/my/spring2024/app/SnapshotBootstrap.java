@@ -0,0 +1,65 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.infrastructure.BinarySnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Загрузка и выгрузка двоичного снимка базы данных при старте приложения.
+ * Свойство snapshot.import задает файл, загружаемый вместо тестовых данных; свойство snapshot.export -
+ * файл, в который выгружается база данных после загрузки. Файлы с расширением .gz сжимаются.
+ * Выполняется до события готовности приложения, поэтому индексы в памяти строятся уже по загруженным данным.
+ */
+@Slf4j
+@Component
+public class SnapshotBootstrap implements ApplicationRunner {
+    private final BinarySnapshot binarySnapshot;
+    private final String importPath;
+    private final String exportPath;
+
+    public SnapshotBootstrap(BinarySnapshot binarySnapshot,
+                             @Value("${snapshot.import:}") String importPath,
+                             @Value("${snapshot.export:}") String exportPath) {
+        this.binarySnapshot = binarySnapshot;
+        this.importPath = importPath;
+        this.exportPath = exportPath;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!importPath.isBlank()) {
+            long start = System.nanoTime();
+            try (InputStream input = open(Path.of(importPath))) {
+                var stats = binarySnapshot.load(input);
+                log.info("Снимок {} загружен за {} мс: {} строк", importPath, (System.nanoTime() - start) / 1_000_000, stats.rows());
+            }
+        }
+        if (!exportPath.isBlank()) {
+            try (OutputStream output = create(Path.of(exportPath))) {
+                var stats = binarySnapshot.export(output);
+                log.info("База данных выгружена в {}: {} строк", exportPath, stats.rows());
+            }
+        }
+    }
+
+    private static InputStream open(Path path) throws IOException {
+        var input = Files.newInputStream(path);
+        return path.toString().endsWith(".gz") ? new GZIPInputStream(input, 1 << 16) : input;
+    }
+
+    private static OutputStream create(Path path) throws IOException {
+        var output = Files.newOutputStream(path);
+        return path.toString().endsWith(".gz") ? new GZIPOutputStream(output, 1 << 16) : output;
+    }
+}
@@ -0,0 +1,315 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.domain.Post;
+import my.spring2024.domain.TeamRoleTag;
+import my.spring2024.domain.User;
+import my.spring2024.infrastructure.PostRepository;
+import my.spring2024.infrastructure.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Сервис подбора команды под пост.
+ * Для каждой роли, требуемой постом, подбирается отдельный пользователь с этой ролью в команде.
+ * Команда оценивается по средней оценке участников и по доле пар участников (включая автора поста),
+ * которые уже работали вместе в одном проекте.
+ * Поиск жадный: каждый из лучших кандидатов на самую дефицитную роль становится началом команды,
+ * а остальные роли заполняются по очереди кандидатом с наибольшим приростом оценки.
+ * Начала команд перебираются параллельно. Роли и оценки пользователей хранятся в памяти
+ * и обновляются из методов записи сервисов и по событиям изменения отзывов.
+ */
+@Slf4j
+@Service
+public class TeamFormationService {
+    private static final double MAX_RATING = RatingHistogram.MAX_RATING;
+    /**
+     * Априорная оценка и ее вес: оценка пользователя без отзывов равна средней,
+     * а один отличный отзыв не поднимает пользователя выше пользователей с многими хорошими отзывами.
+     */
+    private static final double PRIOR_RATING = 3;
+    private static final double PRIOR_WEIGHT = 2;
+
+    /**
+     * Участник предложенной команды.
+     * @param userId идентификатор пользователя
+     * @param role роль в команде
+     * @param rating средняя оценка пользователя, сглаженная к априорной
+     */
+    public record Member(Long userId, TeamRoleTag role, double rating) {
+    }
+
+    /**
+     * Предложенная команда.
+     * @param members участники команды
+     * @param missingRoles роли, для которых не нашлось пользователей
+     * @param score оценка команды
+     */
+    public record Proposal(List<Member> members, List<TeamRoleTag> missingRoles, double score) {
+    }
+
+    private record Candidate(Long userId, TeamRoleTag role, double rating, Set<Long> projects) {
+    }
+
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+    private final SimilarityService similarityService;
+    private final int candidatesPerRole;
+    private final double collaborationWeight;
+
+    private final Map<Long, TeamRoleTag> roles = new HashMap<>();
+    private final Map<TeamRoleTag, Set<Long>> usersByRole = new EnumMap<>(TeamRoleTag.class);
+    private final Map<Long, long[]> ratings = new HashMap<>();
+
+    public TeamFormationService(PostRepository postRepository, UserRepository userRepository,
+                                SimilarityService similarityService,
+                                @Value("${teams.candidates-per-role:50}") int candidatesPerRole,
+                                @Value("${teams.collaboration-weight:0.5}") double collaborationWeight) {
+        this.postRepository = postRepository;
+        this.userRepository = userRepository;
+        this.similarityService = similarityService;
+        this.candidatesPerRole = candidatesPerRole;
+        this.collaborationWeight = collaborationWeight;
+    }
+
+    /**
+     * Перестраивает индекс ролей по данным из базы данных.
+     * Вызывается при старте приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        roles.clear();
+        usersByRole.clear();
+        for (Object[] row : userRepository.findAllTeamRoles()) {
+            putRole((Long) row[0], (TeamRoleTag) row[1]);
+        }
+        log.info("Индекс ролей для подбора команд построен: {} пользователей", roles.size());
+    }
+
+    /**
+     * Перестраивает оценки пользователей по всем отзывам.
+     * @param event событие загрузки отзывов
+     */
+    @EventListener
+    public synchronized void onReviewsLoaded(ReviewsLoadedEvent event) {
+        ratings.clear();
+        event.reviews().forEach(review -> addRating(review, 1));
+    }
+
+    /**
+     * Обновляет оценку получателя при изменении отзыва.
+     * @param event событие изменения отзыва
+     */
+    @EventListener
+    public synchronized void onReviewChanged(ReviewChangedEvent event) {
+        if (event.before() != null) addRating(event.before(), -1);
+        if (event.after() != null) addRating(event.after(), 1);
+    }
+
+    /**
+     * Добавляет или обновляет роль пользователя в индексе.
+     * @param user пользователь
+     */
+    public synchronized void indexUser(User user) {
+        removeRole(user.getId());
+        putRole(user.getId(), user.getTeamRole());
+    }
+
+    /**
+     * Удаляет пользователя из индекса.
+     * @param userId идентификатор пользователя
+     */
+    public synchronized void removeUser(Long userId) {
+        removeRole(userId);
+        ratings.remove(userId);
+    }
+
+    /**
+     * Предлагает команды под роли, требуемые постом.
+     * Автор поста в команду не подбирается, но учитывается как ее участник при оценке совместной работы.
+     * @param postId идентификатор поста
+     * @param limit максимальное количество команд
+     * @return команды в порядке убывания оценки; пустой, если пост не найден
+     */
+    @Transactional(readOnly = true)
+    public Optional<List<Proposal>> proposeTeams(Long postId, int limit) {
+        return postRepository.findById(postId).map(post -> proposeTeams(post, limit));
+    }
+
+    private List<Proposal> proposeTeams(Post post, int limit) {
+        if (post.getTeamRoleTags() == null || post.getTeamRoleTags().isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Long authorId = post.getAuthor() == null ? null : post.getAuthor().getId();
+        var required = new EnumMap<TeamRoleTag, Integer>(TeamRoleTag.class);
+        post.getTeamRoleTags().forEach(role -> required.merge(role, 1, Integer::sum));
+        var pools = candidates(required.keySet(), authorId);
+
+        var slots = new ArrayList<TeamRoleTag>();
+        var missingRoles = new ArrayList<TeamRoleTag>();
+        required.forEach((role, count) -> {
+            int available = Math.min(count, pools.get(role).size());
+            for (int i = 0; i < count; i++) {
+                (i < available ? slots : missingRoles).add(role);
+            }
+        });
+        if (slots.isEmpty()) {
+            return List.of(new Proposal(List.of(), missingRoles, 0));
+        }
+        slots.sort(Comparator.comparingInt(role -> pools.get(role).size()));
+
+        var authorProjects = authorId == null ? null
+                : similarityService.getProjectsOfUsers(List.of(authorId)).getOrDefault(authorId, Set.of());
+        var teams = new LinkedHashMap<Set<Long>, Proposal>();
+        pools.get(slots.getFirst()).parallelStream()
+                .map(seed -> buildTeam(seed, slots, pools, authorProjects, missingRoles))
+                .sorted(Comparator.comparingDouble(Proposal::score).reversed())
+                .forEachOrdered(team -> {
+                    var ids = new HashSet<Long>();
+                    team.members().forEach(member -> ids.add(member.userId()));
+                    teams.putIfAbsent(ids, team);
+                });
+        log.info("Для поста {} предложено {} команд", post.getId(), Math.min(teams.size(), limit));
+        return teams.values().stream().limit(limit).toList();
+    }
+
+    /**
+     * Достраивает команду от начального участника, заполняя роли по очереди.
+     */
+    private Proposal buildTeam(Candidate seed, List<TeamRoleTag> slots, Map<TeamRoleTag, List<Candidate>> pools,
+                               Set<Long> authorProjects, List<TeamRoleTag> missingRoles) {
+        var team = new ArrayList<Candidate>(slots.size());
+        var used = new HashSet<Long>();
+        team.add(seed);
+        used.add(seed.userId());
+        for (TeamRoleTag role : slots.subList(1, slots.size())) {
+            Candidate best = null;
+            double bestGain = Double.NEGATIVE_INFINITY;
+            for (Candidate candidate : pools.get(role)) {
+                if (used.contains(candidate.userId())) continue;
+                double gain = gain(candidate, team, authorProjects);
+                if (gain > bestGain) {
+                    best = candidate;
+                    bestGain = gain;
+                }
+            }
+            team.add(best);
+            used.add(best.userId());
+        }
+        var members = team.stream().map(c -> new Member(c.userId(), c.role(), c.rating())).toList();
+        return new Proposal(members, missingRoles, score(team, authorProjects));
+    }
+
+    private double gain(Candidate candidate, List<Candidate> team, Set<Long> authorProjects) {
+        int partners = team.size() + (authorProjects == null ? 0 : 1);
+        int shared = authorProjects != null && worked(candidate.projects(), authorProjects) ? 1 : 0;
+        for (Candidate member : team) {
+            if (worked(candidate.projects(), member.projects())) shared++;
+        }
+        return candidate.rating() / MAX_RATING + collaborationWeight * shared / partners;
+    }
+
+    /**
+     * Оценка команды: средняя оценка участников, приведенная к [0, 1],
+     * плюс доля пар участников, работавших вместе, с весом collaborationWeight.
+     */
+    private double score(List<Candidate> team, Set<Long> authorProjects) {
+        double ratingSum = 0;
+        int pairs = 0;
+        int shared = 0;
+        for (int i = 0; i < team.size(); i++) {
+            var member = team.get(i);
+            ratingSum += member.rating();
+            if (authorProjects != null) {
+                pairs++;
+                if (worked(member.projects(), authorProjects)) shared++;
+            }
+            for (int j = i + 1; j < team.size(); j++) {
+                pairs++;
+                if (worked(member.projects(), team.get(j).projects())) shared++;
+            }
+        }
+        double collaboration = pairs == 0 ? 0 : (double) shared / pairs;
+        return ratingSum / team.size() / MAX_RATING + collaborationWeight * collaboration;
+    }
+
+    /**
+     * Выбирает для каждой роли лучших по оценке кандидатов.
+     * Выборка делается под блокировкой, а сам поиск работает с ней без блокировок.
+     */
+    private Map<TeamRoleTag, List<Candidate>> candidates(Set<TeamRoleTag> requiredRoles, Long authorId) {
+        var pools = new EnumMap<TeamRoleTag, List<Candidate>>(TeamRoleTag.class);
+        var candidateIds = new HashSet<Long>();
+        synchronized (this) {
+            for (TeamRoleTag role : requiredRoles) {
+                var top = new PriorityQueue<Long>(Comparator.comparingDouble(this::rating));
+                for (Long userId : usersByRole.getOrDefault(role, Set.of())) {
+                    if (userId.equals(authorId)) continue;
+                    top.add(userId);
+                    if (top.size() > candidatesPerRole) top.poll();
+                }
+                var pool = new ArrayList<Candidate>(top.size());
+                top.forEach(userId -> pool.add(new Candidate(userId, role, rating(userId), Set.of())));
+                candidateIds.addAll(top);
+                pools.put(role, pool);
+            }
+        }
+        var projects = similarityService.getProjectsOfUsers(candidateIds);
+        pools.replaceAll((role, pool) -> pool.stream()
+                .map(c -> new Candidate(c.userId(), role, c.rating(), projects.getOrDefault(c.userId(), Set.of())))
+                .sorted(Comparator.comparingDouble(Candidate::rating).reversed().thenComparing(Candidate::userId))
+                .toList());
+        return pools;
+    }
+
+    private double rating(Long userId) {
+        long[] rating = ratings.get(userId);
+        long count = rating == null ? 0 : rating[0];
+        long sum = rating == null ? 0 : rating[1];
+        return (sum + PRIOR_RATING * PRIOR_WEIGHT) / (count + PRIOR_WEIGHT);
+    }
+
+    private void addRating(ReviewSnapshot review, int sign) {
+        if (review.receiverId() == null) return;
+        long[] rating = ratings.computeIfAbsent(review.receiverId(), id -> new long[2]);
+        rating[0] += sign;
+        rating[1] += (long) sign * review.rating();
+        if (rating[0] <= 0) ratings.remove(review.receiverId());
+    }
+
+    private void putRole(Long userId, TeamRoleTag role) {
+        if (userId == null || role == null) return;
+        roles.put(userId, role);
+        usersByRole.computeIfAbsent(role, r -> new HashSet<>()).add(userId);
+    }
+
+    private void removeRole(Long userId) {
+        var role = roles.remove(userId);
+        if (role != null) usersByRole.get(role).remove(userId);
+    }
+
+    private static boolean worked(Set<Long> a, Set<Long> b) {
+        var smaller = a.size() <= b.size() ? a : b;
+        var larger = smaller == a ? b : a;
+        for (Long project : smaller) {
+            if (larger.contains(project)) return true;
+        }
+        return false;
+    }
+}
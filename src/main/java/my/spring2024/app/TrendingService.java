@@ -0,0 +1,272 @@
+package my.spring2024.app;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.domain.Post;
+import my.spring2024.infrastructure.PostRepository;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Сервис ленты популярных постов.
+ * Каждый отклик на пост добавляет к его оценке вес, затухающий экспоненциально со временем,
+ * поэтому выше оказываются посты, на которые откликаются часто и недавно.
+ * Все веса отсчитываются от одного момента времени, так что оценки постов не меняются со временем
+ * и растут только при новых откликах. Это позволяет хранить оценки всех постов в упорядоченном множестве
+ * и отдавать ленту без обращения к таблице постов. Множество обновляется по событиям постов из outbox
+ * ({@link DomainEvent}) в фоновом потоке доставки, поэтому загрузка постов для ленты не выполняется в потоке запроса.
+ * Заголовок, текст и остальные поля записи ленты хранятся только для K лучших постов; когда пост попадает
+ * в ленту без них (например, вместо удаленного), они загружаются из базы данных.
+ */
+@Slf4j
+@Service
+public class TrendingService {
+    private static final Instant EPOCH = Instant.parse("2024-01-01T00:00:00Z");
+    private static final String POST = "Post";
+
+    /**
+     * Запись ленты.
+     * @param id идентификатор поста
+     * @param title заголовок поста
+     * @param text текст поста
+     * @param authorId идентификатор автора
+     * @param respondents количество откликнувшихся
+     * @param createdAt время создания поста
+     * @param lastRespondedAt время последнего отклика
+     * @param score логарифм суммы весов откликов
+     */
+    public record Entry(Long id, String title, String text, Long authorId, int respondents,
+                        Instant createdAt, Instant lastRespondedAt, double score) {
+    }
+
+    /**
+     * Оценка поста, хранящаяся для всех постов.
+     */
+    private record Ranked(Long id, double score, int respondents) {
+    }
+
+    private static final Comparator<Ranked> BY_SCORE = Comparator.comparingDouble(Ranked::score)
+            .thenComparing(Ranked::id);
+
+    private final PostRepository postRepository;
+    private final int capacity;
+    private final double decayPerSecond;
+
+    private final Map<Long, Ranked> scores = new HashMap<>();
+    private final TreeSet<Ranked> ranking = new TreeSet<>(BY_SCORE);
+    private final Map<Long, Entry> top = new HashMap<>();
+    private final Map<Long, Long> applied = new HashMap<>();
+    private volatile List<Entry> feed = List.of();
+
+    public TrendingService(PostRepository postRepository,
+                           @Value("${posts.trending.size:100}") int capacity,
+                           @Value("${posts.trending.half-life:PT6H}") Duration halfLife) {
+        this.postRepository = postRepository;
+        this.capacity = capacity;
+        this.decayPerSecond = Math.log(2) / halfLife.toSeconds();
+    }
+
+    /**
+     * Перестраивает ленту по данным из базы данных.
+     * Время каждого отклика не хранится, поэтому все отклики поста считаются сделанными
+     * в момент последнего отклика.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        scores.clear();
+        ranking.clear();
+        top.clear();
+        Map<Long, Integer> respondentCounts = new HashMap<>();
+        for (Object[] row : postRepository.countRespondentsByPost()) {
+            respondentCounts.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        for (Post post : postRepository.findAll()) {
+            var created = createdAt(post);
+            var score = weight(created);
+            int respondents = respondentCounts.getOrDefault(post.getId(), 0);
+            if (respondents > 0) {
+                var respondedAt = post.getLastRespondedAt() == null ? created : post.getLastRespondedAt();
+                score = logSum(score, weight(respondedAt) + Math.log(respondents));
+            }
+            rank(post.getId(), respondents, score);
+        }
+        refill(null);
+        log.info("Лента популярных постов построена: {} постов", scores.size());
+    }
+
+    /**
+     * Возвращает самые популярные посты.
+     * @param limit максимальное количество постов
+     * @return посты в порядке убывания популярности
+     */
+    public List<Entry> getTrending(int limit) {
+        var current = feed;
+        return limit >= current.size() ? current : current.subList(0, Math.max(limit, 0));
+    }
+
+    /**
+     * Обновляет ленту по событию поста.
+     * Пост загружается в транзакции доставки вместе с откликнувшимися. События одного поста доставляются по порядку,
+     * поэтому событие, не новее уже примененного, считается повтором и пропускается.
+     * @param event событие изменения сущности
+     */
+    @EventListener
+    public synchronized void onDomainEvent(DomainEvent event) {
+        if (!POST.equals(event.aggregateType())) return;
+        Long postId = event.aggregateId();
+        if (event.id() <= applied.getOrDefault(postId, 0L)) return;
+        switch (event.type()) {
+            case "PostCreated", "PostSaved" -> load(postId).ifPresent(this::indexPost);
+            case "PostRespondentAdded" -> load(postId).ifPresent(post -> addResponse(post, event.createdAt()));
+            case "PostRespondentRemoved" -> load(postId).ifPresent(this::removeResponse);
+            case "PostDeleted" -> {
+                removePost(postId);
+                applied.remove(postId);
+                return;
+            }
+            default -> {
+                return;
+            }
+        }
+        applied.put(postId, event.id());
+    }
+
+    private Optional<Post> load(Long postId) {
+        var post = postRepository.findById(postId);
+        post.ifPresent(found -> Hibernate.initialize(found.getRespondents()));
+        return post;
+    }
+
+    /**
+     * Добавляет пост в ленту или обновляет его текст и заголовок, сохраняя оценку.
+     * @param post пост
+     */
+    public synchronized void indexPost(Post post) {
+        var existing = scores.get(post.getId());
+        if (existing == null) {
+            update(post, respondents(post, 0), weight(createdAt(post)));
+        } else {
+            update(post, respondents(post, existing.respondents()), existing.score());
+        }
+    }
+
+    /**
+     * Учитывает новый отклик на пост.
+     * @param post пост
+     * @param respondedAt время отклика
+     */
+    public synchronized void addResponse(Post post, Instant respondedAt) {
+        var existing = scores.get(post.getId());
+        var base = existing == null ? weight(createdAt(post)) : existing.score();
+        update(post, respondents(post, existing == null ? 1 : existing.respondents() + 1), logSum(base, weight(respondedAt)));
+    }
+
+    /**
+     * Учитывает удаление отклика на пост. Оценка поста не уменьшается.
+     * @param post пост
+     */
+    public synchronized void removeResponse(Post post) {
+        var existing = scores.get(post.getId());
+        if (existing != null) {
+            update(post, respondents(post, Math.max(existing.respondents() - 1, 0)), existing.score());
+        }
+    }
+
+    /**
+     * Удаляет пост из ленты.
+     * Если пост был в ленте, его место занимает следующий по оценке пост.
+     * @param postId идентификатор поста
+     */
+    public synchronized void removePost(Long postId) {
+        var existing = scores.remove(postId);
+        if (existing != null) {
+            ranking.remove(existing);
+            if (top.remove(postId) != null) {
+                refill(null);
+            }
+        }
+    }
+
+    private void update(Post post, int respondents, double score) {
+        rank(post.getId(), respondents, score);
+        top.remove(post.getId());
+        refill(post);
+    }
+
+    private void rank(Long id, int respondents, double score) {
+        var ranked = new Ranked(id, score, respondents);
+        var previous = scores.put(id, ranked);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+        ranking.add(ranked);
+    }
+
+    /**
+     * Приводит записи ленты к K лучшим по оценке постам и публикует ленту.
+     * Запись измененного поста строится по нему, недостающие записи остальных постов загружаются одним запросом.
+     * @param changed измененный пост или null
+     */
+    private void refill(Post changed) {
+        var ids = new ArrayList<Long>(capacity);
+        for (Ranked ranked : ranking.descendingSet()) {
+            if (ids.size() == capacity) break;
+            ids.add(ranked.id());
+        }
+        top.keySet().retainAll(new HashSet<>(ids));
+        if (changed != null && ids.contains(changed.getId())) {
+            top.put(changed.getId(), entry(changed, scores.get(changed.getId())));
+        }
+        var missing = ids.stream().filter(id -> !top.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (Post post : postRepository.findAllById(missing)) {
+                top.put(post.getId(), entry(post, scores.get(post.getId())));
+            }
+        }
+        feed = ids.stream().map(top::get).filter(Objects::nonNull).toList();
+    }
+
+    private Entry entry(Post post, Ranked ranked) {
+        Long authorId = post.getAuthor() == null ? null : post.getAuthor().getId();
+        return new Entry(post.getId(), post.getTitle(), post.getText(), authorId, ranked.respondents(),
+                createdAt(post), post.getLastRespondedAt(), ranked.score());
+    }
+
+    private static int respondents(Post post, int fallback) {
+        var respondents = post.getRespondents();
+        return respondents != null && Hibernate.isInitialized(respondents) ? respondents.size() : fallback;
+    }
+
+    private static Instant createdAt(Post post) {
+        return post.getCreatedAt() == null ? EPOCH : post.getCreatedAt();
+    }
+
+    /**
+     * Логарифм веса события: вес растет в 2 раза за каждый период полураспада после EPOCH,
+     * что равносильно затуханию всех более ранних событий.
+     */
+    private double weight(Instant at) {
+        return decayPerSecond * Duration.between(EPOCH, at).toSeconds();
+    }
+
+    private static double logSum(double a, double b) {
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+}
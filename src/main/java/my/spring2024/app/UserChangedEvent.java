@@ -0,0 +1,9 @@
+package my.spring2024.app;
+
+/**
+ * Событие изменения или удаления пользователя.
+ * Публикуется после фиксации транзакции, чтобы слушатели не увидели изменения, которые будут отменены откатом.
+ * @param userId идентификатор пользователя
+ */
+public record UserChangedEvent(Long userId) {
+}
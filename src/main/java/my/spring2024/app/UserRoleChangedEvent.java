@@ -0,0 +1,12 @@
+package my.spring2024.app;
+
+import my.spring2024.domain.Role;
+
+/**
+ * Событие изменения роли пользователя в системе.
+ * Публикуется после фиксации транзакции, чтобы слушатели не увидели роль, которая будет отменена откатом.
+ * @param userId идентификатор пользователя
+ * @param role новая роль
+ */
+public record UserRoleChangedEvent(Long userId, Role role) {
+}
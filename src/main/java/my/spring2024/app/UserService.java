@@ -2,13 +2,17 @@ package my.spring2024.app;
 
 import lombok.extern.slf4j.Slf4j;
 import my.spring2024.domain.*;
+import my.spring2024.infrastructure.SparseFieldsQuery;
 import my.spring2024.infrastructure.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -20,27 +24,64 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final ReviewService reviewService;
-    public UserService(UserRepository userRepository, ReviewService reviewService) {
+    private final AutocompleteService autocompleteService;
+    private final EmailIndex emailIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SerializedResponseCache responseCache;
+    private final SparseFieldsQuery sparseFieldsQuery;
+    private final TeamFormationService teamFormationService;
+    private final Outbox outbox;
+    public UserService(UserRepository userRepository, ReviewService reviewService, AutocompleteService autocompleteService,
+                       EmailIndex emailIndex, ApplicationEventPublisher eventPublisher, SerializedResponseCache responseCache,
+                       SparseFieldsQuery sparseFieldsQuery, TeamFormationService teamFormationService, Outbox outbox) {
         this.userRepository = userRepository;
         this.reviewService = reviewService;
+        this.autocompleteService = autocompleteService;
+        this.emailIndex = emailIndex;
+        this.eventPublisher = eventPublisher;
+        this.responseCache = responseCache;
+        this.sparseFieldsQuery = sparseFieldsQuery;
+        this.teamFormationService = teamFormationService;
+        this.outbox = outbox;
     }
 
     /**
      * Сохраняет пользователя в базе данных.
+     * Индексы автодополнения, подбора команд и email обновляются, а {@link UserChangedEvent} публикуется после фиксации транзакции.
      * @return сохраненный пользователь
      */
+    @Transactional
     public User saveUser(User user){
         var savedUser = userRepository.save(user);
+        AfterCommit.run(() -> {
+            autocompleteService.indexUser(savedUser);
+            teamFormationService.indexUser(savedUser);
+            emailIndex.add(savedUser.getEmail());
+            eventPublisher.publishEvent(new UserChangedEvent(savedUser.getId()));
+        });
+        responseCache.evict(SerializedResponseCache.USER, savedUser.getId());
+        outbox.append("User", savedUser.getId(), "UserSaved", Map.of("id", savedUser.getId()));
         log.info("Сохранен пользователь {}", user.getId());
         return savedUser;
     }
 
     /**
-     * Возвращает пользователя с заданым идентификатором
+     * Возвращает пользователя с заданым идентификатором.
      * @param id Идентификатор пользователя
      * @return пользователя; если пользователь не найден, то null
      */
+    @Transactional(readOnly = true)
     public Optional<User> getUserById(Long id) {
+        return loadUser(id);
+    }
+
+    /**
+     * Загружает пользователя в транзакции вызывающего.
+     * Используется методами записи, которые изменяют полученного пользователя.
+     * @param id Идентификатор пользователя
+     * @return пользователя; пустой, если пользователь не найден
+     */
+    Optional<User> loadUser(Long id) {
         var user = userRepository.findById(id);
         if (user.isEmpty()) {
             log.warn("Не удалось найти пользователя с id {}", id);
@@ -50,22 +91,51 @@ public class UserService {
         return user;
     }
 
+    /**
+     * Возвращает пользователей по списку идентификаторов.
+     * Идентификаторы загружаются частями по {@value BatchLoader#CHUNK_SIZE}, одним запросом на часть.
+     * @param ids Идентификаторы пользователей
+     * @return найденные пользователи в порядке запрошенных идентификаторов; ненайденные пропускаются
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, User> getUsersByIds(List<Long> ids) {
+        var users = BatchLoader.loadInOrder(ids, userRepository::findAllById, User::getId);
+        log.info("Найдено {} из {} запрошенных пользователей", users.size(), ids.size());
+        return users;
+    }
+
     /**
      * Удаляет пользователя из базы данных по идентификатору.
+     * Пользователь удаляется из индексов автодополнения и подбора команд, а {@link UserChangedEvent} публикуется
+     * после фиксации транзакции; из индексов похожих пользователь удаляется по событию outbox.
      * @param id Идентификатор пользователя.
      */
+    @Transactional
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        AfterCommit.run(() -> {
+            autocompleteService.removeUser(id);
+            teamFormationService.removeUser(id);
+            eventPublisher.publishEvent(new UserChangedEvent(id));
+        });
+        outbox.append("User", id, "UserDeleted", Map.of("id", id));
+        responseCache.evict(SerializedResponseCache.USER, id);
         log.info("Удален пользователь с id {}", id);
     }
 
     /**
-     * Ищет пользователей по email
+     * Ищет пользователей по email.
+     * Email нормализуется; если фильтр email отвечает, что адрес не зарегистрирован, база данных не запрашивается.
      * @param email email пользователя.
      * @return Пользователь, с соответствующим email.
      */
+    @Transactional(readOnly = true)
     public User getUserByEmail(String email) {
-        var user = userRepository.findByEmail(email);
+        if (!emailIndex.mightBeRegistered(email)) {
+            log.warn("Не удалось найти пользователя с email {}", email);
+            return null;
+        }
+        var user = userRepository.findByEmail(User.normalizeEmail(email));
         if (user != null){
             log.info("Найден пользователь с email {}", email);
             return user;
@@ -75,11 +145,25 @@ public class UserService {
         }
     }
 
+    /**
+     * Проверяет, зарегистрирован ли пользователь с заданным email.
+     * @param email email пользователя.
+     * @return true, если пользователь с таким email уже существует.
+     */
+    @Transactional(readOnly = true)
+    public boolean isEmailRegistered(String email) {
+        if (!emailIndex.mightBeRegistered(email)) {
+            return false;
+        }
+        return userRepository.existsByEmail(User.normalizeEmail(email));
+    }
+
     /**
      * Возвращает список пользователей с заданной ролью в команде.
      * @param teamRole Роль в команде.
      * @return Список пользователей с заданной ролью.
      */
+    @Transactional(readOnly = true)
     public List<User> getUsersByTeamRole(TeamRoleTag teamRole) {
         var users = userRepository.findAllByTeamRole(teamRole);
         log.info("Найдено {} пользователей с ролью {}", users.size(), teamRole);
@@ -91,6 +175,7 @@ public class UserService {
      * @param projectId Идентификатор проекта.
      * @return Список пользователей.
      */
+    @Transactional(readOnly = true)
     public List<User> getUsersByCurrentProject(Long projectId) {
         var users = userRepository.findAllByCurrentProjects_Id(projectId);
         log.info("Найдено {} пользователей, участвующих в проекте с id {}", users.size(), projectId);
@@ -102,6 +187,7 @@ public class UserService {
      * @param projectId Идентификатор проекта.
      * @return Список пользователей.
      */
+    @Transactional(readOnly = true)
     public List<User> getUsersByPastProject(Long projectId) {
         var users = userRepository.findAllByPastProjects_Id(projectId);
         log.info("Найдено {} пользователей, участвовавших в проекте с id {}", users.size(), projectId);
@@ -116,9 +202,10 @@ public class UserService {
      * @param receiverId Идентификатор получателя отзыва.
      * @param review Отзыв, который нужно добавить.
      */
+    @Transactional
     public void addReviewToUsers(Long senderId, Long receiverId, Review review) {
-        Optional<User> optionalSender = getUserById(senderId);
-        Optional<User> optionalReceiver = getUserById(receiverId);
+        Optional<User> optionalSender = loadUser(senderId);
+        Optional<User> optionalReceiver = loadUser(receiverId);
 
         if (optionalSender.isEmpty() || optionalReceiver.isEmpty()) {
             log.warn("Не удалось добавить отзыв {} к пользователям: пользователь с id {} не найден", review.getId(), optionalSender.isEmpty() ? senderId : receiverId);
@@ -136,6 +223,8 @@ public class UserService {
         log.info("Добавление отзыва {} к отправителю с id {} и получателю с id {}", review.getId(), senderId, receiverId);
         saveUser(sender);
         saveUser(receiver);
+        double averageRating = reviewService.getAverageRating(receiver);
+        AfterCommit.run(() -> autocompleteService.updateUserRating(receiverId, averageRating));
     }
 
     /**
@@ -145,9 +234,10 @@ public class UserService {
      * @param receiverId Идентификатор получателя отзыва.
      * @param review Отзыв, который нужно удалить.
      */
+    @Transactional
     public void removeReviewFromUsers(Long senderId, Long receiverId, Review review) {
-        Optional<User> optionalSender = getUserById(senderId);
-        Optional<User> optionalReceiver = getUserById(receiverId);
+        Optional<User> optionalSender = loadUser(senderId);
+        Optional<User> optionalReceiver = loadUser(receiverId);
 
         if (optionalSender.isEmpty() || optionalReceiver.isEmpty()) {
             log.warn("Не удалось удалить отзыв {}: пользователь с id {} не найден", review.getId(), optionalSender.isEmpty() ? senderId : receiverId);
@@ -165,6 +255,8 @@ public class UserService {
         sender.getSentReviews().remove(review);
         receiver.getReceivedReviews().remove(review);
         reviewService.deleteReview(review.getId());
+        double averageRating = reviewService.getAverageRating(receiver);
+        AfterCommit.run(() -> autocompleteService.updateUserRating(receiverId, averageRating));
         log.info("Удаление отзыва {} у отправителя с id {} и получателя с id {}", review.getId(), senderId, receiverId);
     }
 
@@ -175,6 +267,7 @@ public class UserService {
      * @param user    Пользователь, для которого нужно обновить проекты.
      * @param project Проект, который нужно переместить.
      */
+    @Transactional
     public void moveProjectToPast(User user, Project project) {
         user.getCurrentProjects().remove(project);
         user.getPastProjects().add(project);
@@ -185,8 +278,9 @@ public class UserService {
      * Дает пользователю права администратора
      * @param userId идентификатор пользователя
      */
+    @Transactional
     public void setAdminRole(long userId) {
-        Optional<User> optionalUser = getUserById(userId);
+        Optional<User> optionalUser = loadUser(userId);
         if (optionalUser.isEmpty())
             return;
 
@@ -198,6 +292,9 @@ public class UserService {
 
         user.setRole(Role.ADMIN);
         userRepository.save(user);
+        responseCache.evict(SerializedResponseCache.USER, userId);
+        AfterCommit.run(() -> eventPublisher.publishEvent(new UserRoleChangedEvent(userId, Role.ADMIN)));
+        outbox.append("User", userId, "UserRoleChanged", Map.of("id", userId, "role", Role.ADMIN));
         log.info("Пользователь с id {} получил права администратора", userId);
         }
 
@@ -205,8 +302,9 @@ public class UserService {
      * Отнимает у пользователя права администратора.
      * @param userId идентификатор пользователя
      */
+    @Transactional
     public void removeAdminRole(long userId) {
-        Optional<User> optionalUser = getUserById(userId);
+        Optional<User> optionalUser = loadUser(userId);
         if (optionalUser.isEmpty())
             return;
 
@@ -218,6 +316,9 @@ public class UserService {
 
         user.setRole(Role.USER);
         userRepository.save(user);
+        responseCache.evict(SerializedResponseCache.USER, userId);
+        AfterCommit.run(() -> eventPublisher.publishEvent(new UserRoleChangedEvent(userId, Role.USER)));
+        outbox.append("User", userId, "UserRoleChanged", Map.of("id", userId, "role", Role.USER));
         log.info("У пользователя с id {} отнята роль администратора", userId);
     }
 
@@ -227,9 +328,26 @@ public class UserService {
      * @param pageable объект для пагинации
      * @return страница пользователей
      */
+    @Transactional(readOnly = true)
     public Page<User> getAllUsers(Specification<User> spec, Pageable pageable) {
         var users = userRepository.findAll(spec, pageable);
         log.info("Найдено {} пользователей", users.getTotalElements());
         return users;
     }
+
+    /**
+     * Возвращает всех пользователей с возможностью пагинации и фильтрации, выбирая из базы только заданные поля.
+     * Связанные сущности возвращаются идентификаторами.
+     * @param fields имена полей ответа и соответствующие им поля сущности
+     * @param spec спецификация для фильтрации
+     * @param pageable объект для пагинации
+     * @return страница строк "поле - значение"
+     * @throws IllegalArgumentException если у сущности нет какого-либо из полей
+     */
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> getAllUsers(Map<String, String> fields, Specification<User> spec, Pageable pageable) {
+        var rows = sparseFieldsQuery.findAll(User.class, fields, spec, pageable);
+        log.info("Найдено {} пользователей с полями {}", rows.getTotalElements(), fields.keySet());
+        return rows;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package my.spring2024.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Класс OutboxEvent представляет запись исходящего события об изменении сущности.
+ * Запись сохраняется в той же транзакции, что и изменение, и позже доставляется подписчикам.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(indexes = @Index(name = "ix_outbox_event_pending", columnList = "dispatchedAt, id"))
+public class OutboxEvent {
+    /**
+     * Идентификатор события, задает порядок событий.
+     * Идентификаторы не резервируются блоками, чтобы события разных экземпляров приложения
+     * нумеровались в порядке создания.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 1)
+    private Long id;
+
+    /**
+     * Тип измененной сущности, например "User".
+     */
+    private String aggregateType;
+
+    /**
+     * Идентификатор измененной сущности.
+     */
+    private Long aggregateId;
+
+    /**
+     * Тип события, например "UserSaved".
+     */
+    private String type;
+
+    /**
+     * Данные события в формате JSON.
+     */
+    @Column(length = 4000)
+    private String payload;
+
+    /**
+     * Время создания события.
+     */
+    private Instant createdAt;
+
+    /**
+     * Время доставки события подписчикам; null, если событие еще не доставлено.
+     */
+    private Instant dispatchedAt;
+
+    /**
+     * Количество неудачных попыток доставки.
+     */
+    private int attempts;
+
+    /**
+     * Отмечает событие доставленным.
+     *
+     * @param dispatchedAt время доставки
+     */
+    public void markDispatched(Instant dispatchedAt) {
+        this.dispatchedAt = dispatchedAt;
+    }
+
+    /**
+     * Учитывает неудачную попытку доставки.
+     *
+     * @return количество неудачных попыток с учетом этой
+     */
+    public int markFailed() {
+        return ++attempts;
+    }
+}
@@ -3,6 +3,7 @@ package my.spring2024.domain;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,9 +21,17 @@ public class Post {
      * Идентификатор поста.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "post_seq")
+    @SequenceGenerator(name = "post_seq", sequenceName = "post_seq", allocationSize = 50)
     private Long id;
 
+    /**
+     * Версия поста, увеличивается при каждом изменении.
+     * Используется для оптимистичной блокировки.
+     */
+    @Version
+    private Long version;
+
     /**
      * Автор поста
      */
@@ -52,6 +61,33 @@ public class Post {
     @ManyToMany
     private List<User> respondents = new ArrayList<User>();
 
+    /**
+     * Время создания поста.
+     */
+    private Instant createdAt;
+
+    /**
+     * Время последнего отклика на пост.
+     */
+    private Instant lastRespondedAt;
+
+    /**
+     * Устанавливает время создания поста, если оно не задано.
+     */
+    @PrePersist
+    private void setCreatedAtIfAbsent() {
+        if (createdAt == null) createdAt = Instant.now();
+    }
+
+    /**
+     * Устанавливает время последнего отклика на пост.
+     *
+     * @param lastRespondedAt время отклика
+     */
+    public void setLastRespondedAt(Instant lastRespondedAt) {
+        this.lastRespondedAt = lastRespondedAt;
+    }
+
     /**
      * Устанавливает текст.
      *
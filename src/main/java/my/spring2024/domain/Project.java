@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 import java.net.URL;
 import java.util.ArrayList;
@@ -24,8 +25,16 @@ public class Project {
      * Идентификатор проекта.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "project_seq")
+    @SequenceGenerator(name = "project_seq", sequenceName = "project_seq", allocationSize = 50)
     private Long id;
+
+    /**
+     * Версия проекта, увеличивается при каждом изменении.
+     * Используется для оптимистичной блокировки.
+     */
+    @Version
+    private Long version;
     /**
      * Название проекта
      */
@@ -46,6 +55,7 @@ public class Project {
     /**
      * Лидер проекта
      */
+    @Setter
     @ManyToOne
     private User leader;
     /**
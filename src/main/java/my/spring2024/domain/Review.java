@@ -17,9 +17,17 @@ public class Review {
      * Идентификатор отзыва
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "review_seq")
+    @SequenceGenerator(name = "review_seq", sequenceName = "review_seq", allocationSize = 50)
     private Long id;
 
+    /**
+     * Версия отзыва, увеличивается при каждом изменении.
+     * Используется для оптимистичной блокировки.
+     */
+    @Version
+    private Long version;
+
     /**
      * Оценка от 1 до 5
      */
@@ -48,6 +56,20 @@ public class Review {
     @ManyToOne
     private Project project;
 
+    /**
+     * Создает отзыв без версии.
+     *
+     * @param id идентификатор отзыва
+     * @param rating оценка
+     * @param text текст отзыва
+     * @param sender отправитель
+     * @param receiver получатель
+     * @param project проект
+     */
+    public Review(Long id, int rating, String text, User sender, User receiver, Project project) {
+        this(id, null, rating, text, sender, receiver, project);
+    }
+
     /**
      * Устанавливает рейтинг.
      *
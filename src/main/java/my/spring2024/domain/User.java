@@ -4,6 +4,7 @@ import lombok.*;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Класс User представляет сущность пользователя.
@@ -20,9 +21,17 @@ public class User {
      * Идентификатор пользователя.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     private Long id;
 
+    /**
+     * Версия пользователя, увеличивается при каждом изменении.
+     * Используется для оптимистичной блокировки.
+     */
+    @Version
+    private Long version;
+
     /**
      * Имя пользователя.
      */
@@ -35,7 +44,9 @@ public class User {
 
     /**
      * Электронная почта пользователя.
+     * Хранится в нормализованном виде, уникальна.
      */
+    @Column(unique = true)
     private String email;
 
     /**
@@ -46,6 +57,7 @@ public class User {
     /**
      * Роль в команде
      */
+    @Setter
     @Enumerated
     private TeamRoleTag teamRole;
     /**
@@ -105,4 +117,19 @@ public class User {
         if(role == null) throw new IllegalArgumentException();
         this.role = role;
     }
+
+    /**
+     * Приводит email к каноническому виду: без пробелов по краям и в нижнем регистре.
+     * @param email email
+     * @return нормализованный email; null, если email равен null
+     */
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    private void normalizeEmail() {
+        this.email = normalizeEmail(email);
+    }
 }
\ No newline at end of file
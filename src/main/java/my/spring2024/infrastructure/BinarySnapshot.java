@@ -0,0 +1,373 @@
+package my.spring2024.infrastructure;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Двоичный снимок всех таблиц базы данных.
+ * Формат: признак формата, затем для каждой таблицы ее имя, имена столбцов и строки, в конце маркер конца снимка.
+ * Значения пишутся с однобайтовым тегом типа, целые числа - в виде varint, поэтому снимок компактен
+ * и читается потоково, без загрузки в память целиком.
+ * Таблицы выгружаются и загружаются в порядке внешних ключей, а строки вставляются пачками
+ * по {@value #BATCH_SIZE} в одной транзакции. Перед загрузкой существующие строки удаляются, после загрузки
+ * последовательности идентификаторов переводятся за максимальный загруженный идентификатор.
+ * История миграций Flyway описывает схему, а не данные, поэтому не выгружается и не очищается.
+ * Таблица outbox не выгружается, а при загрузке очищается: ее события относятся к замененным данным,
+ * а индексы в памяти строятся по загруженным таблицам при старте.
+ */
+@Slf4j
+@Component
+public class BinarySnapshot {
+    private static final int MAGIC = 0x53503234;
+    private static final int BATCH_SIZE = 1000;
+    private static final String SCHEMA_HISTORY = "flyway_schema_history";
+    private static final String OUTBOX = "outbox_event";
+
+    private static final byte END = 0;
+    private static final byte TABLE = 1;
+    private static final byte ROW = 2;
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte STRING = 4;
+    private static final byte TIMESTAMP = 5;
+    private static final byte BYTES = 6;
+
+    /**
+     * Результат выгрузки или загрузки.
+     * @param tables количество таблиц
+     * @param rows количество строк
+     */
+    public record Stats(int tables, long rows) {
+    }
+
+    private final DataSource dataSource;
+    private final PlatformTransactionManager transactionManager;
+
+    public BinarySnapshot(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.dataSource = dataSource;
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * Выгружает все таблицы в поток.
+     * @param output поток снимка; не закрывается
+     * @return количество выгруженных таблиц и строк
+     * @throws IOException если не удалось записать снимок
+     * @throws SQLException если не удалось прочитать таблицы
+     */
+    public Stats export(OutputStream output) throws IOException, SQLException {
+        return inTransaction(true, connection -> export(connection, output));
+    }
+
+    /**
+     * Загружает снимок, заменяя содержимое таблиц.
+     * Таблицы снимка, которых нет в базе данных, пропускаются.
+     * Загрузка выполняется в текущей транзакции или в новой, если ее нет.
+     * @param input поток снимка
+     * @return количество загруженных таблиц и строк
+     * @throws IOException если снимок поврежден или имеет неизвестный формат
+     * @throws SQLException если не удалось записать строки; в этом случае изменения откатываются
+     */
+    public Stats load(InputStream input) throws IOException, SQLException {
+        var in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Неизвестный формат снимка");
+        }
+        var stats = inTransaction(false, connection -> load(connection, in));
+        log.info("Загружен снимок: {} таблиц, {} строк", stats.tables(), stats.rows());
+        return stats;
+    }
+
+    private Stats export(Connection connection, OutputStream output) throws IOException, SQLException {
+        var out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        out.writeInt(MAGIC);
+        int tables = 0;
+        long rows = 0;
+        var quote = connection.getMetaData().getIdentifierQuoteString().trim();
+        for (String table : tablesInDependencyOrder(connection)) {
+            if (OUTBOX.equals(table)) continue;
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("select * from " + quote(quote, table))) {
+                var meta = resultSet.getMetaData();
+                int columns = meta.getColumnCount();
+                out.writeByte(TABLE);
+                writeString(out, table);
+                writeVarLong(out, columns);
+                for (int i = 1; i <= columns; i++) {
+                    writeString(out, meta.getColumnName(i));
+                }
+                while (resultSet.next()) {
+                    out.writeByte(ROW);
+                    for (int i = 1; i <= columns; i++) {
+                        writeValue(out, resultSet.getObject(i));
+                    }
+                    rows++;
+                }
+            }
+            tables++;
+        }
+        out.writeByte(END);
+        out.flush();
+        log.info("Выгружен снимок: {} таблиц, {} строк", tables, rows);
+        return new Stats(tables, rows);
+    }
+
+    private Stats load(Connection connection, DataInputStream in) throws IOException, SQLException {
+        var quote = connection.getMetaData().getIdentifierQuoteString().trim();
+        var existing = tablesInDependencyOrder(connection);
+        try (Statement statement = connection.createStatement()) {
+            for (String table : existing.reversed()) {
+                statement.executeUpdate("delete from " + quote(quote, table));
+            }
+        }
+        int tables = 0;
+        long rows = 0;
+        byte marker = in.readByte();
+        while (marker == TABLE) {
+            String table = readString(in);
+            int columns = (int) readVarLong(in);
+            var names = new ArrayList<String>(columns);
+            for (int i = 0; i < columns; i++) {
+                names.add(quote(quote, readString(in)));
+            }
+            boolean known = existing.contains(table) && !OUTBOX.equals(table);
+            var sql = "insert into " + quote(quote, table) + " (" + String.join(", ", names) + ") values ("
+                    + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+            try (PreparedStatement insert = known ? connection.prepareStatement(sql) : null) {
+                int batched = 0;
+                marker = in.readByte();
+                while (marker == ROW) {
+                    for (int i = 1; i <= columns; i++) {
+                        Object value = readValue(in);
+                        if (insert != null) insert.setObject(i, value);
+                    }
+                    if (insert != null) {
+                        insert.addBatch();
+                        if (++batched == BATCH_SIZE) {
+                            insert.executeBatch();
+                            batched = 0;
+                        }
+                        rows++;
+                    }
+                    marker = in.readByte();
+                }
+                if (insert != null && batched > 0) insert.executeBatch();
+            }
+            if (known) {
+                restartSequence(connection, quote, table);
+                tables++;
+            } else if (OUTBOX.equals(table) || SCHEMA_HISTORY.equals(table)) {
+                log.info("Таблица {} из снимка пропущена", table);
+            } else {
+                log.warn("Таблица {} из снимка отсутствует в базе данных и пропущена", table);
+            }
+        }
+        if (marker != END) {
+            throw new IOException("Снимок поврежден: неожиданный маркер " + marker);
+        }
+        return new Stats(tables, rows);
+    }
+
+    @FunctionalInterface
+    private interface JdbcWork<T> {
+        T run(Connection connection) throws IOException, SQLException;
+    }
+
+    /**
+     * Выполняет работу на соединении текущей транзакции Spring или новой транзакции,
+     * чтобы снимок видел и менял те же данные, что и JPA.
+     */
+    private <T> T inTransaction(boolean readOnly, JdbcWork<T> work) throws IOException, SQLException {
+        var template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        try {
+            return template.execute(status -> {
+                Connection connection = DataSourceUtils.getConnection(dataSource);
+                try {
+                    return work.run(connection);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (SQLException e) {
+                    throw new WrappedSqlException(e);
+                } finally {
+                    DataSourceUtils.releaseConnection(connection, dataSource);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (WrappedSqlException e) {
+            throw e.cause;
+        }
+    }
+
+    private static final class WrappedSqlException extends RuntimeException {
+        private final SQLException cause;
+
+        private WrappedSqlException(SQLException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * Переводит последовательность идентификаторов таблицы за максимальное загруженное значение.
+     * Hibernate резервирует по значению последовательности блок из шага идентификаторов, заканчивающийся этим значением,
+     * поэтому следующее значение выбирается так, чтобы весь блок лежал за загруженными идентификаторами.
+     */
+    private static void restartSequence(Connection connection, String quote, String table) throws SQLException {
+        String sequence = table + "_seq";
+        long increment;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select increment from information_schema.sequences where sequence_schema = ? and sequence_name = ?")) {
+            statement.setString(1, connection.getSchema());
+            statement.setString(2, sequence);
+            try (ResultSet found = statement.executeQuery()) {
+                if (!found.next()) return;
+                increment = found.getLong(1);
+            }
+        }
+        long max;
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("select coalesce(max(" + quote(quote, "id") + "), 0) from "
+                     + quote(quote, table))) {
+            result.next();
+            max = result.getLong(1);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("alter sequence " + quote(quote, sequence) + " restart with " + (max + increment));
+        }
+    }
+
+    /**
+     * Возвращает таблицы текущей схемы, кроме истории миграций, так, что таблица идет после таблиц,
+     * на которые она ссылается. При циклических ссылках оставшиеся таблицы идут в алфавитном порядке.
+     */
+    private static List<String> tablesInDependencyOrder(Connection connection) throws SQLException {
+        var meta = connection.getMetaData();
+        var schema = connection.getSchema();
+        var dependencies = new TreeMap<String, Set<String>>();
+        try (ResultSet tables = meta.getTables(null, schema, "%", new String[]{"TABLE"})) {
+            while (tables.next()) {
+                var table = tables.getString("TABLE_NAME");
+                if (!SCHEMA_HISTORY.equals(table)) dependencies.put(table, new HashSet<>());
+            }
+        }
+        for (var entry : dependencies.entrySet()) {
+            try (ResultSet keys = meta.getImportedKeys(null, schema, entry.getKey())) {
+                while (keys.next()) {
+                    var referenced = keys.getString("PKTABLE_NAME");
+                    if (!referenced.equals(entry.getKey()) && dependencies.containsKey(referenced)) {
+                        entry.getValue().add(referenced);
+                    }
+                }
+            }
+        }
+        var ordered = new ArrayList<String>(dependencies.size());
+        var remaining = new LinkedHashSet<>(dependencies.keySet());
+        while (!remaining.isEmpty()) {
+            var ready = remaining.stream().filter(table -> !containsAny(remaining, dependencies.get(table))).toList();
+            var next = ready.isEmpty() ? List.of(remaining.iterator().next()) : ready;
+            ordered.addAll(next);
+            next.forEach(remaining::remove);
+        }
+        return ordered;
+    }
+
+    private static boolean containsAny(Set<String> set, Set<String> values) {
+        for (String value : values) {
+            if (set.contains(value)) return true;
+        }
+        return false;
+    }
+
+    private static String quote(String quote, String identifier) {
+        return quote + identifier.replace(quote, quote + quote) + quote;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException, SQLException {
+        switch (value) {
+            case null -> out.writeByte(NULL);
+            case Long v -> { out.writeByte(LONG); writeVarLong(out, v); }
+            case Integer v -> { out.writeByte(LONG); writeVarLong(out, v); }
+            case Short v -> { out.writeByte(LONG); writeVarLong(out, v); }
+            case Byte v -> { out.writeByte(LONG); writeVarLong(out, v); }
+            case Double v -> { out.writeByte(DOUBLE); out.writeDouble(v); }
+            case Float v -> { out.writeByte(DOUBLE); out.writeDouble(v); }
+            case Boolean v -> { out.writeByte(BOOLEAN); out.writeBoolean(v); }
+            case Timestamp v -> {
+                out.writeByte(TIMESTAMP);
+                var instant = v.toInstant();
+                writeVarLong(out, instant.getEpochSecond());
+                writeVarLong(out, instant.getNano());
+            }
+            case java.time.OffsetDateTime v -> {
+                out.writeByte(TIMESTAMP);
+                writeVarLong(out, v.toInstant().getEpochSecond());
+                writeVarLong(out, v.toInstant().getNano());
+            }
+            case byte[] v -> { out.writeByte(BYTES); writeVarLong(out, v.length); out.write(v); }
+            case Clob v -> { out.writeByte(STRING); writeString(out, v.getSubString(1, (int) v.length())); }
+            default -> { out.writeByte(STRING); writeString(out, value.toString()); }
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case LONG -> readVarLong(in);
+            case DOUBLE -> in.readDouble();
+            case BOOLEAN -> in.readBoolean();
+            case STRING -> readString(in);
+            case TIMESTAMP -> Timestamp.from(java.time.Instant.ofEpochSecond(readVarLong(in), readVarLong(in)));
+            case BYTES -> in.readNBytes((int) readVarLong(in));
+            default -> throw new IOException("Снимок поврежден: неизвестный тип значения " + tag);
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes((int) readVarLong(in)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Записывает число в формате zigzag varint: малые по модулю числа занимают 1-2 байта.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Снимок поврежден: слишком длинное число");
+    }
+}
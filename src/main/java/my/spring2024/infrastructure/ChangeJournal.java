@@ -0,0 +1,204 @@
+package my.spring2024.infrastructure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал изменений только на добавление, хранящийся в отображаемых в память файлах-сегментах.
+ * Запись журнала: длина данных, контрольная сумма CRC32C, номер записи и сами данные.
+ * Номера записей идут подряд с 1; имя сегмента - номер его первой записи.
+ * Новый сегмент заполнен нулями, поэтому нулевая длина означает конец записей.
+ * При открытии журнал дочитывается до первой поврежденной записи, и запись продолжается с нее,
+ * так что недописанная при сбое запись отбрасывается.
+ */
+public class ChangeJournal implements Closeable {
+    private static final String SUFFIX = ".journal";
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    /**
+     * Запись журнала.
+     * @param sequence номер записи
+     * @param data данные записи
+     */
+    public record Entry(long sequence, byte[] data) {
+    }
+
+    private record ScanResult(int end, long nextSequence) {
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long nextSequence;
+
+    /**
+     * Открывает журнал в каталоге, создавая каталог и первый сегмент при необходимости.
+     * @param directory каталог сегментов
+     * @param segmentSize размер сегмента в байтах
+     * @throws IOException если не удалось открыть сегмент
+     */
+    public ChangeJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        var segments = segmentStarts();
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            long start = segments.getLast();
+            openSegment(start);
+            var scan = scan(segment.duplicate(), start, null);
+            segment.position(scan.end());
+            nextSequence = scan.nextSequence();
+        }
+    }
+
+    /**
+     * Добавляет запись в конец журнала, переходя к новому сегменту, если в текущем нет места.
+     * @param data данные записи, не пустые
+     * @return номер записи
+     * @throws IOException если не удалось создать новый сегмент
+     * @throws IllegalArgumentException если данные пустые или не помещаются в сегмент
+     */
+    public synchronized long append(byte[] data) throws IOException {
+        if (data.length == 0 || HEADER_SIZE + data.length + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("Размер записи журнала должен быть от 1 до "
+                    + (segmentSize - HEADER_SIZE - Integer.BYTES) + " байт");
+        }
+        if (segment.remaining() < HEADER_SIZE + data.length + Integer.BYTES) {
+            segment.force();
+            channel.close();
+            openSegment(nextSequence);
+        }
+        long sequence = nextSequence++;
+        int position = segment.position();
+        segment.position(position + Integer.BYTES);
+        segment.putInt(checksum(sequence, data));
+        segment.putLong(sequence);
+        segment.put(data);
+        segment.putInt(position, data.length);
+        return sequence;
+    }
+
+    /**
+     * Читает записи журнала, начиная с заданного номера.
+     * @param fromSequence номер первой нужной записи
+     * @param consumer обработчик записей, вызывается в порядке номеров
+     * @throws IOException если не удалось прочитать сегмент
+     */
+    public synchronized void read(long fromSequence, Consumer<Entry> consumer) throws IOException {
+        var starts = segmentStarts();
+        for (int i = 0; i < starts.size(); i++) {
+            if (i + 1 < starts.size() && starts.get(i + 1) <= fromSequence) continue;
+            try (var readChannel = FileChannel.open(segmentPath(starts.get(i)), StandardOpenOption.READ)) {
+                var buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                scan(buffer, starts.get(i), entry -> {
+                    if (entry.sequence() >= fromSequence) consumer.accept(entry);
+                });
+            }
+        }
+    }
+
+    /**
+     * Удаляет сегменты, все записи которых имеют номера меньше заданного.
+     * Текущий сегмент не удаляется.
+     * @param sequence номер первой записи, которую нужно сохранить
+     * @return количество удаленных сегментов
+     * @throws IOException если не удалось удалить сегмент
+     */
+    public synchronized int deleteBefore(long sequence) throws IOException {
+        var starts = segmentStarts();
+        int deleted = 0;
+        for (int i = 0; i + 1 < starts.size() && starts.get(i + 1) <= sequence; i++) {
+            Files.deleteIfExists(segmentPath(starts.get(i)));
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Возвращает номер, который получит следующая запись.
+     * @return номер следующей записи
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Сбрасывает изменения текущего сегмента на диск.
+     */
+    public synchronized void flush() {
+        segment.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segment.force();
+        channel.close();
+    }
+
+    private void openSegment(long start) throws IOException {
+        channel = FileChannel.open(segmentPath(start),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        nextSequence = start;
+    }
+
+    /**
+     * Читает записи сегмента до конца или до первой поврежденной записи.
+     */
+    private static ScanResult scan(ByteBuffer buffer, long start, Consumer<Entry> consumer) {
+        long expected = start;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int position = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - HEADER_SIZE + Integer.BYTES) {
+                return new ScanResult(position, expected);
+            }
+            int checksum = buffer.getInt();
+            long sequence = buffer.getLong();
+            byte[] data = new byte[length];
+            buffer.get(data);
+            if (sequence != expected || checksum != checksum(sequence, data)) {
+                return new ScanResult(position, expected);
+            }
+            if (consumer != null) consumer.accept(new Entry(sequence, data));
+            expected++;
+        }
+        return new ScanResult(buffer.position(), expected);
+    }
+
+    private static int checksum(long sequence, byte[] data) {
+        var crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence));
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private List<Long> segmentStarts() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            var starts = new ArrayList<Long>();
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .forEach(name -> starts.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length()))));
+            starts.sort(null);
+            return starts;
+        }
+    }
+
+    private Path segmentPath(long start) {
+        return directory.resolve(String.format("%020d%s", start, SUFFIX));
+    }
+}
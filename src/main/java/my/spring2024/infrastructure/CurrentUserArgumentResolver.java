@@ -0,0 +1,59 @@
+package my.spring2024.infrastructure;
+
+import jakarta.servlet.http.HttpServletRequest;
+import my.spring2024.api.CurrentUser;
+import my.spring2024.app.CurrentUserService;
+import my.spring2024.domain.User;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.session.HttpSessionDestroyedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Подставляет текущего пользователя в параметры контроллеров, помеченные {@link CurrentUser}.
+ * Пользователь определяется по имени принципала (для OAuth - email); снимок его полей кэшируется на HTTP-сессию,
+ * и параметр получает отсоединенный объект без связей.
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+    private final CurrentUserService currentUserService;
+
+    public CurrentUserArgumentResolver(CurrentUserService currentUserService) {
+        this.currentUserService = currentUserService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && User.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        var request = webRequest.getNativeRequest(HttpServletRequest.class);
+        var session = request == null ? null : request.getSession(false);
+        var sessionKey = session != null ? session.getId() : authentication.getName();
+        return currentUserService.resolve(sessionKey, authentication.getName()).orElse(null);
+    }
+
+    /**
+     * Удаляет из кэша пользователя завершенной сессии.
+     * @param event событие завершения сессии
+     */
+    @EventListener
+    public void onSessionDestroyed(HttpSessionDestroyedEvent event) {
+        currentUserService.evictSession(event.getId());
+    }
+}
@@ -0,0 +1,212 @@
+package my.spring2024.infrastructure;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.app.LruCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Фильтр идемпотентности для запросов создания сущностей.
+ * Если запрос содержит заголовок Idempotency-Key, успешный ответ сохраняется в ограниченном хранилище
+ * на заданное время, и повторный запрос с тем же ключом получает сохраненный ответ без повторного вызова сервиса.
+ * Вместе с ответом сохраняется хэш метода, пути и тела запроса: повтор ключа с другим запросом
+ * получает 422 Unprocessable Entity, а не ответ на чужой запрос.
+ * Одновременный повтор запроса, который еще выполняется, получает 409 Conflict.
+ * Тело запроса читается в память для вычисления хэша, поэтому его размер ограничен:
+ * запрос с большим телом получает 413 Content Too Large без чтения тела сверх лимита.
+ */
+@Slf4j
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Set<String> IDEMPOTENT_PATHS = Set.of(
+            "/api/posts/create", "/api/projects/create", "/api/reviews/create", "/api/users/register");
+
+    private record StoredResponse(String fingerprint, int status, String contentType, byte[] body, long expiresAt) {
+    }
+
+    private final LruCache<String, StoredResponse> responses;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final long ttlMillis;
+    private final int maxBodySize;
+
+    public IdempotencyFilter(@Value("${idempotency.max-size:10000}") int maxSize,
+                             @Value("${idempotency.ttl:PT10M}") Duration ttl,
+                             @Value("${idempotency.max-body-size:1MB}") DataSize maxBodySize) {
+        this.responses = new LruCache<>(maxSize);
+        this.ttlMillis = ttl.toMillis();
+        this.maxBodySize = Math.toIntExact(maxBodySize.toBytes());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null
+                || !IDEMPOTENT_PATHS.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var key = storeKey(request);
+        if (request.getContentLengthLong() > maxBodySize) {
+            rejectTooLarge(request, response);
+            return;
+        }
+        var body = request.getInputStream().readNBytes(maxBodySize + 1);
+        if (body.length > maxBodySize) {
+            rejectTooLarge(request, response);
+            return;
+        }
+        var cached = new CachedBodyRequest(request, body);
+        var fingerprint = fingerprint(cached);
+        var stored = responses.get(key);
+        if (stored != null && stored.expiresAt() > System.currentTimeMillis()) {
+            if (!stored.fingerprint().equals(fingerprint)) {
+                log.warn("Ключ идемпотентности для {} повторно использован с другим запросом", request.getRequestURI());
+                response.setStatus(HttpStatus.UNPROCESSABLE_ENTITY.value());
+                return;
+            }
+            log.info("Повторный запрос {} с ключом идемпотентности, возвращен сохраненный ответ", request.getRequestURI());
+            replay(stored, response);
+            return;
+        }
+
+        if (!inFlight.add(key)) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            return;
+        }
+        try {
+            var wrapper = new ContentCachingResponseWrapper(response);
+            filterChain.doFilter(cached, wrapper);
+            if (wrapper.getStatus() >= 200 && wrapper.getStatus() < 300) {
+                responses.put(key, new StoredResponse(fingerprint, wrapper.getStatus(), wrapper.getContentType(),
+                        wrapper.getContentAsByteArray(), System.currentTimeMillis() + ttlMillis));
+            }
+            wrapper.copyBodyToResponse();
+        } finally {
+            inFlight.remove(key);
+        }
+    }
+
+    private void rejectTooLarge(HttpServletRequest request, HttpServletResponse response) {
+        log.warn("Тело запроса {} с ключом идемпотентности больше {} байт", request.getRequestURI(), maxBodySize);
+        response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+    }
+
+    private static String storeKey(HttpServletRequest request) {
+        var principal = request.getUserPrincipal();
+        return (principal == null ? "" : principal.getName()) + '|' + request.getRequestURI()
+                + '|' + request.getHeader(IDEMPOTENCY_KEY_HEADER);
+    }
+
+    /**
+     * Возвращает хэш SHA-256 метода, пути с параметрами и тела запроса.
+     */
+    private static String fingerprint(CachedBodyRequest request) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update((request.getMethod() + ' ' + request.getRequestURI() + '?'
+                    + Objects.toString(request.getQueryString(), "") + '\n').getBytes(StandardCharsets.UTF_8));
+            digest.update(request.body);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void replay(StoredResponse stored, HttpServletResponse response) throws IOException {
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    /**
+     * Запрос с прочитанным заранее телом, которое можно прочитать повторно.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            var input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                /**
+                 * Тело уже в памяти, поэтому слушатель сразу получает сигналы о доступных и полностью прочитанных данных.
+                 */
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws UnsupportedEncodingException {
+            var encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8.name() : encoding));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package my.spring2024.infrastructure;
+
+import my.spring2024.api.DTO.UserDTO;
+import my.spring2024.domain.User;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.config.Configuration.AccessLevel;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация преобразования сущностей в DTO.
+ * Сущности без сеттеров (например, Project) заполняются напрямую через поля.
+ * Роль в команде передается в UserDTO как role, а в User хранится в teamRole; одноименное поле User.role -
+ * роль в системе, и при преобразовании из DTO не заполняется, чтобы клиент не мог назначить себе права.
+ */
+@Configuration
+public class MapperConfig {
+    @Bean
+    public ModelMapper modelMapper() {
+        var modelMapper = new ModelMapper();
+        modelMapper.getConfiguration()
+                .setFieldMatchingEnabled(true)
+                .setFieldAccessLevel(AccessLevel.PRIVATE);
+        modelMapper.emptyTypeMap(UserDTO.class, User.class)
+                .addMappings(mapping -> {
+                    mapping.skip(User::setRole);
+                    mapping.map(UserDTO::getRole, User::setTeamRole);
+                })
+                .implicitMappings();
+        modelMapper.emptyTypeMap(User.class, UserDTO.class)
+                .addMappings(mapping -> mapping.map(User::getTeamRole, UserDTO::setRole))
+                .implicitMappings();
+        return modelMapper;
+    }
+}
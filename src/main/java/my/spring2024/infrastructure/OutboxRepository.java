@@ -0,0 +1,23 @@
+package my.spring2024.infrastructure;
+
+import my.spring2024.domain.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+    List<OutboxEvent> findByDispatchedAtIsNullOrderByIdAsc(Pageable pageable);
+    long countByDispatchedAtIsNull();
+    @Query("select min(e.createdAt) from OutboxEvent e where e.dispatchedAt is null")
+    Optional<Instant> findOldestPendingCreatedAt();
+    @Modifying
+    @Query("delete from OutboxEvent e where e.dispatchedAt < :before")
+    int deleteDispatchedBefore(Instant before);
+}
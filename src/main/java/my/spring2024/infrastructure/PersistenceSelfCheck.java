@@ -0,0 +1,166 @@
+package my.spring2024.infrastructure;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Проверка настроек хранения данных при старте приложения.
+ * Выводит в журнал параметры пулов соединений, кэша подготовленных выражений и пакетной записи Hibernate
+ * и предупреждает о настройках, при которых они не работают.
+ */
+@Slf4j
+@Component
+public class PersistenceSelfCheck implements ApplicationRunner {
+    private static final String BATCH_SIZE = "hibernate.jdbc.batch_size";
+    private static final String ORDER_INSERTS = "hibernate.order_inserts";
+    private static final String ORDER_UPDATES = "hibernate.order_updates";
+
+    /**
+     * Параметры пула соединений.
+     * @param name имя пула
+     * @param url адрес базы данных
+     * @param database название и версия СУБД; пустая строка, если соединение не получено
+     * @param maximumPoolSize максимальный размер пула
+     * @param minimumIdle минимальное количество простаивающих соединений
+     * @param connectionTimeout время ожидания соединения, мс
+     * @param maxLifetime время жизни соединения, мс
+     * @param properties свойства драйвера
+     */
+    public record Pool(String name, String url, String database, int maximumPoolSize, int minimumIdle,
+                       long connectionTimeout, long maxLifetime, Map<String, String> properties) {
+    }
+
+    /**
+     * Результат проверки.
+     * @param pools пулы соединений
+     * @param batchSize размер пакета JDBC; 0, если пакетная запись отключена
+     * @param orderInserts упорядочиваются ли вставки по сущностям
+     * @param orderUpdates упорядочиваются ли обновления по сущностям
+     * @param identityEntities сущности с идентификаторами IDENTITY, вставки которых Hibernate не объединяет в пакеты
+     * @param warnings предупреждения
+     */
+    public record Report(List<Pool> pools, int batchSize, boolean orderInserts, boolean orderUpdates,
+                         List<String> identityEntities, List<String> warnings) {
+    }
+
+    private final DataSource dataSource;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public PersistenceSelfCheck(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.dataSource = dataSource;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        var report = check();
+        for (Pool pool : report.pools()) {
+            log.info("Пул {}: {} ({}), размер {}..{}, ожидание {} мс, время жизни {} мс, свойства {}",
+                    pool.name(), pool.url(), pool.database(), pool.minimumIdle(), pool.maximumPoolSize(),
+                    pool.connectionTimeout(), pool.maxLifetime(), pool.properties());
+        }
+        log.info("Пакетная запись Hibernate: размер пакета {}, упорядочивание вставок {}, обновлений {}",
+                report.batchSize(), report.orderInserts(), report.orderUpdates());
+        if (!report.identityEntities().isEmpty()) {
+            log.info("Вставки сущностей {} не объединяются в пакеты из-за идентификаторов IDENTITY", report.identityEntities());
+        }
+        report.warnings().forEach(warning -> log.warn("Проверка хранения данных: {}", warning));
+    }
+
+    /**
+     * Собирает текущие настройки хранения данных.
+     * @return результат проверки
+     */
+    public Report check() {
+        var warnings = new ArrayList<String>();
+        var pools = new ArrayList<Pool>();
+        for (HikariDataSource hikari : hikariPools()) {
+            var pool = describe(hikari, warnings);
+            pools.add(pool);
+            if (pool.url() != null && pool.url().startsWith("jdbc:postgresql:")
+                    && Integer.parseInt(pool.properties().getOrDefault("prepareThreshold", "5")) <= 0) {
+                warnings.add("в пуле " + pool.name() + " отключен кэш подготовленных выражений на сервере");
+            }
+        }
+        if (pools.isEmpty()) {
+            warnings.add("пул HikariCP не найден, параметры пула не проверены");
+        }
+
+        var properties = entityManagerFactory.getProperties();
+        int batchSize = Integer.parseInt(Objects.toString(properties.get(BATCH_SIZE), "0").trim());
+        boolean orderInserts = Boolean.parseBoolean(Objects.toString(properties.get(ORDER_INSERTS), "false").trim());
+        boolean orderUpdates = Boolean.parseBoolean(Objects.toString(properties.get(ORDER_UPDATES), "false").trim());
+        if (batchSize <= 1) {
+            warnings.add("пакетная запись отключена (" + BATCH_SIZE + " = " + batchSize + ")");
+        } else if (!orderInserts || !orderUpdates) {
+            warnings.add("вставки и обновления не упорядочиваются, пакеты будут короче " + batchSize);
+        }
+        return new Report(List.copyOf(pools), batchSize, orderInserts, orderUpdates, identityEntities(), List.copyOf(warnings));
+    }
+
+    /**
+     * Возвращает пулы источника данных; при маршрутизации на реплику - пулы всех баз данных.
+     */
+    private List<HikariDataSource> hikariPools() {
+        DataSource target = dataSource instanceof DelegatingDataSource delegating ? delegating.getTargetDataSource() : dataSource;
+        if (target instanceof AbstractRoutingDataSource routing) {
+            return routing.getResolvedDataSources().values().stream()
+                    .filter(HikariDataSource.class::isInstance)
+                    .map(HikariDataSource.class::cast)
+                    .toList();
+        }
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return List.of(dataSource.unwrap(HikariDataSource.class));
+            }
+        } catch (SQLException e) {
+            log.debug("Источник данных не является пулом HikariCP", e);
+        }
+        return List.of();
+    }
+
+    private static Pool describe(HikariDataSource hikari, List<String> warnings) {
+        String database = "";
+        try (var connection = hikari.getConnection()) {
+            var metaData = connection.getMetaData();
+            database = metaData.getDatabaseProductName() + " " + metaData.getDatabaseProductVersion();
+        } catch (SQLException e) {
+            warnings.add("не удалось получить соединение из пула " + hikari.getPoolName() + ": " + e.getMessage());
+        }
+        var properties = new TreeMap<String, String>();
+        hikari.getDataSourceProperties().forEach((key, value) -> properties.put(key.toString(), value.toString()));
+        return new Pool(hikari.getPoolName(), hikari.getJdbcUrl(), database, hikari.getMaximumPoolSize(),
+                hikari.getMinimumIdle(), hikari.getConnectionTimeout(), hikari.getMaxLifetime(), properties);
+    }
+
+    private List<String> identityEntities() {
+        var entities = new ArrayList<String>();
+        for (var entity : entityManagerFactory.getMetamodel().getEntities()) {
+            for (var field : entity.getJavaType().getDeclaredFields()) {
+                var generated = field.getAnnotation(GeneratedValue.class);
+                if (field.isAnnotationPresent(Id.class) && generated != null && generated.strategy() == GenerationType.IDENTITY) {
+                    entities.add(entity.getName());
+                }
+            }
+        }
+        entities.sort(null);
+        return List.copyOf(entities);
+    }
+}
@@ -6,12 +6,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 @Repository
+@Transactional(readOnly = true)
 public interface PostRepository extends JpaRepository<Post, Long>, JpaSpecificationExecutor<Post> {
     public Page<Post> findByTitleContainingOrTextContaining(String keyable, String keyable2, Pageable pageable);
     public Page<Post> findByAuthor(User author, Pageable pageable);
+    @Query("select p.id, size(p.respondents) from Post p")
+    public List<Object[]> countRespondentsByPost();
 }
@@ -7,12 +7,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 @Repository
+@Transactional(readOnly = true)
 public interface ProjectRepository extends JpaRepository<Project, Long>, JpaSpecificationExecutor<Project> {
     public List<Project> findProjectsByName(String name);
     public Page<Project> findByNameContainingOrDescriptionContaining(String keyable, String keyable2, Pageable pageable);
+    @Query("select p.id, size(p.users) from Project p")
+    public List<Object[]> countUsersByProject();
+    @Query("select p.id, u.id from Project p join p.users u")
+    public List<Object[]> findAllMembers();
 }
@@ -0,0 +1,97 @@
+package my.spring2024.infrastructure;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Источник данных, направляющий read-only транзакции на реплику, а остальные запросы - на основную базу данных.
+ * Чтобы клиент видел свои изменения несмотря на отставание реплики, после фиксации пишущей транзакции
+ * чтения текущего запроса и HTTP-сессии (если она есть) направляются на основную базу данных
+ * в течение допустимого отставания реплики.
+ * Должен использоваться через LazyConnectionDataSourceProxy, чтобы соединение выбиралось
+ * после того, как транзакция помечена read-only.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    /**
+     * Источник данных, выбранный для соединения.
+     */
+    public enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    static final String LAST_WRITE_ATTRIBUTE = ReadWriteRoutingDataSource.class.getName() + ".lastWrite";
+    private static final Object WRITE_REGISTERED = new Object();
+
+    private final long maxLagMillis;
+
+    /**
+     * @param primary основная база данных
+     * @param replica реплика
+     * @param maxLag допустимое отставание реплики
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag) {
+        this.maxLagMillis = maxLag.toMillis();
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Target determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Target.PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            registerWrite();
+            return Target.PRIMARY;
+        }
+        return wroteRecently() ? Target.PRIMARY : Target.REPLICA;
+    }
+
+    /**
+     * Запоминает время фиксации пишущей транзакции в текущем запросе и сессии.
+     */
+    private void registerWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(WRITE_REGISTERED)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(WRITE_REGISTERED, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                var attributes = RequestContextHolder.getRequestAttributes();
+                if (attributes == null) return;
+                long now = System.currentTimeMillis();
+                attributes.setAttribute(LAST_WRITE_ATTRIBUTE, now, RequestAttributes.SCOPE_REQUEST);
+                if (attributes instanceof ServletRequestAttributes servlet && servlet.getRequest().getSession(false) != null) {
+                    attributes.setAttribute(LAST_WRITE_ATTRIBUTE, now, RequestAttributes.SCOPE_SESSION);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_REGISTERED);
+            }
+        });
+    }
+
+    private boolean wroteRecently() {
+        var attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return false;
+        var lastWrite = attributes.getAttribute(LAST_WRITE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (lastWrite == null) {
+            lastWrite = attributes.getAttribute(LAST_WRITE_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+        }
+        return lastWrite instanceof Long at && System.currentTimeMillis() - at < maxLagMillis;
+    }
+}
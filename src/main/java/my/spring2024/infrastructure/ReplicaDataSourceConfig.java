@@ -0,0 +1,58 @@
+package my.spring2024.infrastructure;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Конфигурация реплики для чтения.
+ * Включается свойством datasource.replica.url; основная база данных настраивается как обычно через spring.datasource.
+ * Пулы обеих баз настраиваются свойствами spring.datasource.hikari, а для реплики их можно переопределить
+ * в datasource.replica.hikari.
+ * Hibernate возвращает соединение в пул после каждой транзакции: иначе сессия, открытая на весь запрос (open-in-view),
+ * удерживает первое полученное соединение, и запись после чтения в том же запросе выполнялась бы на реплике.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.url")
+public class ReplicaDataSourceConfig {
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 @Value("${datasource.replica.url}") String replicaUrl,
+                                 @Value("${datasource.replica.username:${spring.datasource.username:}}") String replicaUsername,
+                                 @Value("${datasource.replica.password:${spring.datasource.password:}}") String replicaPassword,
+                                 @Value("${datasource.replica.max-lag:PT5S}") Duration maxLag) {
+        var binder = Binder.get(environment);
+
+        var primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+
+        var replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                .url(replicaUrl).username(replicaUsername).password(replicaPassword).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+        binder.bind("datasource.replica.hikari", Bindable.ofInstance(replica));
+        replica.setPoolName("replica");
+        replica.setReadOnly(true);
+
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica, maxLag));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
@@ -5,13 +5,20 @@ import my.spring2024.domain.Review;
 import my.spring2024.domain.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 @Repository
+@Transactional(readOnly = true)
 public interface ReviewRepository extends JpaRepository<Review, Long>, JpaSpecificationExecutor<Review> {
     List<Review> findAllBySender(User sender);
     List<Review> findAllByReceiver(User receiver);
     List<Review> findAllByProject(Project project);
+    @Query("select r.receiver.id, avg(r.rating) from Review r where r.receiver is not null group by r.receiver.id")
+    List<Object[]> findAverageRatingByReceiver();
+    @Query("select r.id, s.id, rc.id, p.id, r.rating from Review r left join r.sender s left join r.receiver rc left join r.project p")
+    List<Object[]> findAllSnapshots();
 }
\ No newline at end of file
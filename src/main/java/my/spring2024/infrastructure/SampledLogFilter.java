@@ -0,0 +1,109 @@
+package my.spring2024.infrastructure;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Фильтр рутинных сообщений лога для асинхронного аппендера.
+ * Пропускает события уровня ниже WARN (предупреждения и ошибки пишутся синхронным аппендером)
+ * и ограничивает частоту каждого шаблона сообщения: не более permitsPerSecond событий в секунду
+ * на пару логгер + шаблон. Отброшенные события подсчитываются, и раз в reportIntervalSeconds
+ * в лог выводится сводка по ним.
+ */
+public class SampledLogFilter extends Filter<ILoggingEvent> {
+    private static final Logger summaryLog = LoggerFactory.getLogger(SampledLogFilter.class);
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private int permitsPerSecond = 20;
+    private int reportIntervalSeconds = 60;
+    private ScheduledExecutorService reporter;
+
+    private static final class Window {
+        private long second;
+        private int count;
+        private final LongAdder suppressed = new LongAdder();
+
+        synchronized boolean tryAcquire(long now, int permits) {
+            if (now != second) {
+                second = now;
+                count = 0;
+            }
+            return ++count <= permits;
+        }
+    }
+
+    public void setPermitsPerSecond(int permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    public void setReportIntervalSeconds(int reportIntervalSeconds) {
+        this.reportIntervalSeconds = reportIntervalSeconds;
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        if (!isStarted()) return FilterReply.NEUTRAL;
+        if (event.getLevel().isGreaterOrEqual(Level.WARN)) return FilterReply.DENY;
+        if (summaryLog.getName().equals(event.getLoggerName())) return FilterReply.NEUTRAL;
+
+        var key = event.getLoggerName() + '|' + event.getMessage();
+        var window = windows.computeIfAbsent(key, k -> new Window());
+        if (window.tryAcquire(event.getTimeStamp() / 1000, permitsPerSecond)) {
+            return FilterReply.NEUTRAL;
+        }
+        window.suppressed.increment();
+        return FilterReply.DENY;
+    }
+
+    @Override
+    public void start() {
+        if (permitsPerSecond <= 0 || reportIntervalSeconds <= 0) {
+            addError("permitsPerSecond и reportIntervalSeconds должны быть положительными");
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "sampled-log-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        report();
+        super.stop();
+    }
+
+    /**
+     * Возвращает количество отброшенных событий с момента последней сводки.
+     * @return количество отброшенных событий
+     */
+    public long getSuppressedCount() {
+        return windows.values().stream().mapToLong(window -> window.suppressed.sum()).sum();
+    }
+
+    private void report() {
+        windows.forEach((key, window) -> {
+            long suppressed = window.suppressed.sumThenReset();
+            if (suppressed > 0) {
+                summaryLog.info("Пропущено {} сообщений '{}'", suppressed, key);
+            }
+        });
+    }
+}
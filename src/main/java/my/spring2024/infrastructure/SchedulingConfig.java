@@ -0,0 +1,15 @@
+package my.spring2024.infrastructure;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Включает фоновые задачи по расписанию, в том числе доставку событий outbox.
+ * Отключается свойством scheduling.enabled=false, например в тестах, которые вызывают задачи явно.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "scheduling.enabled", matchIfMissing = true)
+public class SchedulingConfig {
+}
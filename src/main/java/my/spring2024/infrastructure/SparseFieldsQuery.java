@@ -0,0 +1,137 @@
+package my.spring2024.infrastructure;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.Type;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запросы, выбирающие только заданные поля сущностей.
+ * Простые поля и идентификаторы связей "к одному" выбираются одним запросом по нужным столбцам;
+ * для каждой запрошенной коллекции выполняется один дополнительный запрос идентификаторов
+ * по всем строкам страницы. Связанные сущности возвращаются идентификаторами.
+ * Поля строк называются так, как их запросил вызывающий код, поэтому имена полей ответа
+ * могут отличаться от имен полей сущности.
+ */
+@Repository
+public class SparseFieldsQuery {
+    private static final String ID = "id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Возвращает страницу сущностей, содержащих только заданные поля.
+     * @param type класс сущности
+     * @param fields имена полей ответа и соответствующие им поля сущности; идентификатор возвращается всегда
+     * @param spec спецификация для фильтрации; может быть null
+     * @param pageable объект для пагинации
+     * @return страница строк "поле - значение"
+     * @throws IllegalArgumentException если у сущности нет какого-либо из полей
+     */
+    public <T> Page<Map<String, Object>> findAll(Class<T> type, Map<String, String> fields, Specification<T> spec,
+                                                 Pageable pageable) {
+        EntityType<T> entity = entityManager.getMetamodel().entity(type);
+        var singular = new LinkedHashMap<String, Attribute<? super T, ?>>();
+        var plural = new LinkedHashMap<String, PluralAttribute<? super T, ?, ?>>();
+        for (var field : fields.entrySet()) {
+            if (ID.equals(field.getKey())) continue;
+            Attribute<? super T, ?> attribute;
+            try {
+                attribute = entity.getAttribute(field.getValue());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Неизвестное поле " + field.getValue() + " у " + entity.getName());
+            }
+            if (attribute instanceof PluralAttribute<? super T, ?, ?> collection) {
+                plural.put(field.getKey(), collection);
+            } else {
+                singular.put(field.getKey(), attribute);
+            }
+        }
+
+        var cb = entityManager.getCriteriaBuilder();
+        var query = cb.createTupleQuery();
+        var root = query.from(type);
+        var selections = new ArrayList<Selection<?>>();
+        selections.add(root.get(ID).alias(ID));
+        singular.forEach((name, attribute) -> selections.add(attribute.isAssociation()
+                ? root.join(attribute.getName(), JoinType.LEFT).get(ID).alias(name)
+                : root.get(attribute.getName()).alias(name)));
+        query.multiselect(selections);
+        if (spec != null) {
+            var predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+
+        var typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+
+        var rows = new ArrayList<Map<String, Object>>();
+        var rowsById = new HashMap<Object, Map<String, Object>>();
+        for (Tuple tuple : typedQuery.getResultList()) {
+            var row = new LinkedHashMap<String, Object>();
+            for (var element : tuple.getElements()) {
+                row.put(element.getAlias(), tuple.get(element));
+            }
+            rows.add(row);
+            rowsById.put(row.get(ID), row);
+        }
+        plural.forEach((name, collection) -> fillCollection(type, name, collection, rowsById));
+
+        long total = pageable.isPaged() ? count(type, spec) : rows.size();
+        return new PageImpl<>(rows, pageable, total);
+    }
+
+    private <T> void fillCollection(Class<T> type, String name, PluralAttribute<? super T, ?, ?> collection,
+                                    Map<Object, Map<String, Object>> rowsById) {
+        rowsById.values().forEach(row -> row.put(name, new ArrayList<>()));
+        if (rowsById.isEmpty()) return;
+
+        var cb = entityManager.getCriteriaBuilder();
+        var query = cb.createTupleQuery();
+        var root = query.from(type);
+        var join = root.join(collection.getName());
+        var element = collection.getElementType().getPersistenceType() == Type.PersistenceType.ENTITY
+                ? join.get(ID) : join;
+        query.multiselect(root.get(ID), element);
+        query.where(root.get(ID).in(rowsById.keySet()));
+        for (Tuple tuple : entityManager.createQuery(query).getResultList()) {
+            @SuppressWarnings("unchecked")
+            var values = (List<Object>) rowsById.get(tuple.get(0)).get(name);
+            values.add(tuple.get(1));
+        }
+    }
+
+    private <T> long count(Class<T> type, Specification<T> spec) {
+        var cb = entityManager.getCriteriaBuilder();
+        var query = cb.createQuery(Long.class);
+        var root = query.from(type);
+        query.select(cb.count(root));
+        if (spec != null) {
+            var predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
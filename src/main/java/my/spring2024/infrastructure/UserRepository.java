@@ -7,13 +7,25 @@ import my.spring2024.domain.Review;
 import my.spring2024.domain.TeamRoleTag;
 import my.spring2024.domain.User;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 @Repository
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
     User findByEmail(String name);
+    boolean existsByEmail(String email);
+    @Query("select u.email from User u where u.email is not null")
+    List<String> findAllEmails();
     List<User> findAllByTeamRole(TeamRoleTag role);
+    @Query("select u.id, u.teamRole from User u where u.teamRole is not null")
+    List<Object[]> findAllTeamRoles();
+    @Query("select u from User u join u.currentProjects p where p.id = :projectId")
     List<User> findAllByCurrentProjects_Id(Long projectId);
+    @Query("select u from User u join u.pastProjects p where p.id = :projectId")
     List<User> findAllByPastProjects_Id(Long projectId);
+    @Query("select p.id, u.id from User u join u.pastProjects p")
+    List<Object[]> findAllPastMembers();
 }
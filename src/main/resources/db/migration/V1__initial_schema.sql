@@ -0,0 +1,117 @@
+-- Исходная схема, совпадающая со схемой, которую генерировал Hibernate.
+-- Идентификаторы в кавычках, так как приложение использует globally_quoted_identifiers.
+
+create table "user" (
+    "id" bigint generated by default as identity,
+    "version" bigint,
+    "firstname" varchar(255),
+    "lastname" varchar(255),
+    "email" varchar(255),
+    "git_hub_link" varchar(255),
+    "role" varchar(255) check ("role" in ('USER', 'ADMIN')),
+    "team_role" smallint check ("team_role" between 0 and 8),
+    constraint "pk_user" primary key ("id"),
+    constraint "uk_user_email" unique ("email")
+);
+
+create table "project" (
+    "id" bigint generated by default as identity,
+    "version" bigint,
+    "name" varchar(255),
+    "description" varchar(255),
+    "link" varchar(255),
+    "leader_id" bigint,
+    constraint "pk_project" primary key ("id"),
+    constraint "fk_project_leader" foreign key ("leader_id") references "user"
+);
+
+create table "post" (
+    "id" bigint generated by default as identity,
+    "version" bigint,
+    "title" varchar(255),
+    "text" varchar(255),
+    "author_id" bigint,
+    "created_at" timestamp(6) with time zone,
+    "last_responded_at" timestamp(6) with time zone,
+    constraint "pk_post" primary key ("id"),
+    constraint "fk_post_author" foreign key ("author_id") references "user"
+);
+
+create table "review" (
+    "id" bigint generated by default as identity,
+    "version" bigint,
+    "rating" integer not null,
+    "text" varchar(255),
+    "sender_id" bigint,
+    "receiver_id" bigint,
+    "project_id" bigint,
+    constraint "pk_review" primary key ("id"),
+    constraint "fk_review_sender" foreign key ("sender_id") references "user",
+    constraint "fk_review_receiver" foreign key ("receiver_id") references "user",
+    constraint "fk_review_project" foreign key ("project_id") references "project"
+);
+
+create table "project_users" (
+    "project_id" bigint not null,
+    "users_id" bigint not null,
+    constraint "fk_project_users_project" foreign key ("project_id") references "project",
+    constraint "fk_project_users_user" foreign key ("users_id") references "user"
+);
+
+create table "project_reviews" (
+    "project_id" bigint not null,
+    "reviews_id" bigint not null,
+    constraint "uk_project_reviews_review" unique ("reviews_id"),
+    constraint "fk_project_reviews_project" foreign key ("project_id") references "project",
+    constraint "fk_project_reviews_review" foreign key ("reviews_id") references "review"
+);
+
+create table "user_current_projects" (
+    "user_id" bigint not null,
+    "current_projects_id" bigint not null,
+    constraint "fk_user_current_projects_user" foreign key ("user_id") references "user",
+    constraint "fk_user_current_projects_project" foreign key ("current_projects_id") references "project"
+);
+
+create table "user_past_projects" (
+    "user_id" bigint not null,
+    "past_projects_id" bigint not null,
+    constraint "fk_user_past_projects_user" foreign key ("user_id") references "user",
+    constraint "fk_user_past_projects_project" foreign key ("past_projects_id") references "project"
+);
+
+create table "user_posts" (
+    "user_id" bigint not null,
+    "posts_id" bigint not null,
+    constraint "uk_user_posts_post" unique ("posts_id"),
+    constraint "fk_user_posts_user" foreign key ("user_id") references "user",
+    constraint "fk_user_posts_post" foreign key ("posts_id") references "post"
+);
+
+create table "post_respondents" (
+    "post_id" bigint not null,
+    "respondents_id" bigint not null,
+    constraint "fk_post_respondents_post" foreign key ("post_id") references "post",
+    constraint "fk_post_respondents_user" foreign key ("respondents_id") references "user"
+);
+
+create table "post_team_role_tags" (
+    "post_id" bigint not null,
+    "team_role_tags" varchar(255) check ("team_role_tags" in ('TEAMLEAD', 'DEVELOPER', 'DESIGNER', 'ANALYST',
+        'GAMEDESIGNER', 'FRONTEND', 'BACKEND', 'FULLSTACK', 'OTHER')),
+    constraint "fk_post_team_role_tags_post" foreign key ("post_id") references "post"
+);
+
+create table "outbox_event" (
+    "id" bigint generated by default as identity,
+    "aggregate_type" varchar(255),
+    "aggregate_id" bigint,
+    "type" varchar(255),
+    "payload" varchar(4000),
+    "created_at" timestamp(6) with time zone,
+    "dispatched_at" timestamp(6) with time zone,
+    "attempts" integer not null,
+    constraint "pk_outbox_event" primary key ("id")
+);
+
+create index "ix_outbox_event_pending" on "outbox_event" ("dispatched_at", "id");
@@ -0,0 +1,34 @@
+-- Индексы для внешних ключей и полей, по которым фильтруют методы репозиториев.
+-- Индекс по "user"."email" уже создан ограничением уникальности в V1.
+
+-- ReviewRepository.findAllByReceiver и средняя оценка по получателю читаются только из индекса
+create index "ix_review_receiver_rating" on "review" ("receiver_id", "rating");
+create index "ix_review_sender" on "review" ("sender_id");
+create index "ix_review_project" on "review" ("project_id");
+
+-- PostRepository.findByAuthor: страницы постов автора, новые первыми
+create index "ix_post_author_created" on "post" ("author_id", "created_at");
+
+create index "ix_project_leader" on "project" ("leader_id");
+create index "ix_project_name" on "project" ("name");
+
+create index "ix_user_team_role" on "user" ("team_role", "id");
+
+-- Таблицы связей: прямой индекс для загрузки коллекции владельца, обратный - для поиска по элементу
+create index "ix_project_users_project" on "project_users" ("project_id", "users_id");
+create index "ix_project_users_user" on "project_users" ("users_id", "project_id");
+
+create index "ix_project_reviews_project" on "project_reviews" ("project_id");
+
+create index "ix_user_current_projects_user" on "user_current_projects" ("user_id", "current_projects_id");
+create index "ix_user_current_projects_project" on "user_current_projects" ("current_projects_id", "user_id");
+
+create index "ix_user_past_projects_user" on "user_past_projects" ("user_id", "past_projects_id");
+create index "ix_user_past_projects_project" on "user_past_projects" ("past_projects_id", "user_id");
+
+create index "ix_user_posts_user" on "user_posts" ("user_id");
+
+create index "ix_post_respondents_post" on "post_respondents" ("post_id", "respondents_id");
+create index "ix_post_respondents_user" on "post_respondents" ("respondents_id", "post_id");
+
+create index "ix_post_team_role_tags_post" on "post_team_role_tags" ("post_id", "team_role_tags");
@@ -0,0 +1,15 @@
+-- Идентификаторы выдаются последовательностями, а не столбцами IDENTITY: Hibernate получает идентификатор
+-- до вставки и объединяет вставки в пакеты. Шаг 50 равен размеру пакета JDBC и allocationSize сущностей,
+-- так что оптимизатор pooled резервирует идентификаторы для целого пакета одним обращением к последовательности.
+create sequence "user_seq" start with 1 increment by 50;
+create sequence "project_seq" start with 1 increment by 50;
+create sequence "post_seq" start with 1 increment by 50;
+create sequence "review_seq" start with 1 increment by 50;
+-- События outbox нумеруются по одному, чтобы порядок идентификаторов совпадал с порядком создания
+create sequence "outbox_event_seq" start with 1 increment by 1;
+
+alter table "user" alter column "id" drop identity;
+alter table "project" alter column "id" drop identity;
+alter table "post" alter column "id" drop identity;
+alter table "review" alter column "id" drop identity;
+alter table "outbox_event" alter column "id" drop identity;
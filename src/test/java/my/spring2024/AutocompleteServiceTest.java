@@ -0,0 +1,90 @@
+package my.spring2024;
+
+import my.spring2024.app.AutocompleteService;
+import my.spring2024.app.PrefixIndex;
+import my.spring2024.app.ProjectService;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.Project;
+import my.spring2024.domain.Role;
+import my.spring2024.domain.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class AutocompleteServiceTest {
+    @Autowired
+    private AutocompleteService autocompleteService;
+    @Autowired
+    private ProjectService projectService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void testSuggestProjectsByPrefix() {
+        projectService.saveProject(Project.builder().name("Zebra tracker").users(new ArrayList<>()).build());
+        projectService.saveProject(Project.builder().name("Zeppelin").users(new ArrayList<>()).build());
+        projectService.saveProject(Project.builder().name("Apple").users(new ArrayList<>()).build());
+        commit();
+
+        var names = autocompleteService.suggestProjects("ze", 10).stream().map(PrefixIndex.Entry::name).toList();
+        assertEquals(2, names.size());
+        assertTrue(names.contains("Zebra tracker"));
+        assertTrue(names.contains("Zeppelin"));
+    }
+
+    @Test
+    public void testSuggestProjectsOrderedByMembers() {
+        Project small = projectService.saveProject(Project.builder().name("Quokka small").users(new ArrayList<>()).build());
+        Project big = projectService.saveProject(Project.builder().name("Quokka big").users(new ArrayList<>()).build());
+        projectService.addUserToProject(big.getId(), userService.saveUser(new User()));
+        projectService.addUserToProject(big.getId(), userService.saveUser(new User()));
+        commit();
+
+        var suggestions = autocompleteService.suggestProjects("quokka", 1);
+        assertEquals(1, suggestions.size());
+        assertEquals(big.getId(), suggestions.getFirst().id());
+        assertNotEquals(small.getId(), suggestions.getFirst().id());
+    }
+
+    @Test
+    public void testSuggestUsersByLastname() {
+        User user = userService.saveUser(User.builder().firstname("Ivan").lastname("Xylophonov").role(Role.USER).build());
+        commit();
+
+        var suggestions = autocompleteService.suggestUsers("xylo", 10);
+        assertEquals(1, suggestions.size());
+        assertEquals("Ivan Xylophonov", suggestions.getFirst().name());
+
+        userService.deleteUser(user.getId());
+        commit();
+        assertTrue(autocompleteService.suggestUsers("xylo", 10).isEmpty());
+    }
+
+    @Test
+    public void testRolledBackProjectIsNotSuggested() {
+        projectService.saveProject(Project.builder().name("Walrus").users(new ArrayList<>()).build());
+        assertTrue(autocompleteService.suggestProjects("walrus", 10).isEmpty());
+
+        TestTransaction.end();
+        assertTrue(autocompleteService.suggestProjects("walrus", 10).isEmpty());
+    }
+
+    /**
+     * Фиксирует тестовую транзакцию, чтобы индексы получили изменения, и открывает новую.
+     */
+    private static void commit() {
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+    }
+}
@@ -0,0 +1,137 @@
+package my.spring2024;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.validation.Validator;
+import my.spring2024.api.BatchController;
+import my.spring2024.api.PostController;
+import my.spring2024.api.ProjectController;
+import my.spring2024.api.ReviewController;
+import my.spring2024.api.UserController;
+import my.spring2024.api.DTO.BatchOperationDTO;
+import my.spring2024.api.DTO.BatchRequestDTO;
+import my.spring2024.api.DTO.ProjectDTO;
+import my.spring2024.api.DTO.UserDTO;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.TeamRoleTag;
+import my.spring2024.domain.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class BatchControllerTest {
+    @Autowired
+    private BatchController batchController;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserController userController;
+    @Autowired
+    private ProjectController projectController;
+    @Autowired
+    private PostController postController;
+    @Autowired
+    private ReviewController reviewController;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectProvider<ObjectMapper> objectMappers;
+    @Autowired
+    private ObjectProvider<Validator> validators;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testOperationsReferencePreviousResults() {
+        User leader = userService.saveUser(new User());
+        User member = userService.saveUser(new User());
+        ObjectNode project = objectMapper.createObjectNode().put("name", "Batch project");
+        project.putObject("leader").put("id", leader.getId());
+        project.putArray("users").addObject().put("id", leader.getId());
+
+        var response = batchController.execute(new BatchRequestDTO(List.of(
+                new BatchOperationDTO("POST", "/api/projects/create", project),
+                new BatchOperationDTO("POST", "/api/projects/${0.id}/users/" + member.getId(), null),
+                new BatchOperationDTO("GET", "/api/projects/${0.id}", null)))).getBody();
+
+        assertTrue(response.isCommitted());
+        assertEquals(List.of(200, 200, 200), response.getResults().stream().map(r -> r.getStatus()).toList());
+        var loaded = (ProjectDTO) response.getResults().get(2).getBody();
+        assertEquals("Batch project", loaded.getName());
+        assertEquals(2, loaded.getUsers().size());
+    }
+
+    @Test
+    public void testRegisterUserAndCreateProject() {
+        ObjectNode user = objectMapper.createObjectNode().put("firstname", "Ivan").put("email", "batch@example.com")
+                .put("role", "TEAMLEAD");
+        ObjectNode project = objectMapper.createObjectNode().put("name", "Onboarding");
+        project.putObject("leader").put("id", "${0.id}");
+        project.putArray("users").addObject().put("id", "${0.id}");
+
+        var response = batchController.execute(new BatchRequestDTO(List.of(
+                new BatchOperationDTO("POST", "/api/users/register", user),
+                new BatchOperationDTO("POST", "/api/projects/create", project),
+                new BatchOperationDTO("GET", "/api/users/${0.id}", null)))).getBody();
+
+        assertTrue(response.isCommitted());
+        assertEquals(List.of(200, 200, 200), response.getResults().stream().map(r -> r.getStatus()).toList());
+        var registered = (UserDTO) response.getResults().get(2).getBody();
+        assertEquals("batch@example.com", registered.getEmail());
+        assertEquals(TeamRoleTag.TEAMLEAD, registered.getRole());
+        assertEquals(registered.getId(), ((ProjectDTO) response.getResults().get(1).getBody()).getLeader().getId());
+    }
+
+    @Test
+    public void testFailedOperationSkipsRest() {
+        var response = batchController.execute(new BatchRequestDTO(List.of(
+                new BatchOperationDTO("POST", "/api/projects/create", objectMapper.createObjectNode()),
+                new BatchOperationDTO("DELETE", "/api/projects/1", null)))).getBody();
+
+        assertFalse(response.isCommitted());
+        assertEquals(400, response.getResults().get(0).getStatus());
+        assertEquals(424, response.getResults().get(1).getStatus());
+    }
+
+    @Test
+    public void testCommitFailureReturnsBatchError() {
+        var failingCommit = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return transactionManager.getTransaction(definition);
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                transactionManager.rollback(status);
+                throw new DataIntegrityViolationException("uk_user_email");
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                transactionManager.rollback(status);
+            }
+        };
+        var controller = new BatchController(userController, projectController, postController, reviewController,
+                failingCommit, objectMappers, validators);
+
+        var response = controller.execute(new BatchRequestDTO(List.of(
+                new BatchOperationDTO("POST", "/api/projects/create", objectMapper.createObjectNode().put("name", "Lost")))));
+
+        assertEquals(409, response.getStatusCode().value());
+        assertFalse(response.getBody().isCommitted());
+        assertEquals(List.of(409), response.getBody().getResults().stream().map(r -> r.getStatus()).toList());
+    }
+}
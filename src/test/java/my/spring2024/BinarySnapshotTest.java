@@ -0,0 +1,87 @@
+package my.spring2024;
+
+import my.spring2024.app.ProjectService;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.Project;
+import my.spring2024.domain.Role;
+import my.spring2024.domain.User;
+import my.spring2024.infrastructure.BinarySnapshot;
+import my.spring2024.infrastructure.OutboxRepository;
+import my.spring2024.infrastructure.ProjectRepository;
+import my.spring2024.infrastructure.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class BinarySnapshotTest {
+    @Autowired
+    private BinarySnapshot binarySnapshot;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ProjectService projectService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProjectRepository projectRepository;
+    @Autowired
+    private OutboxRepository outboxRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    public void testExportAndLoadRoundTrip() throws Exception {
+        User first = userService.saveUser(User.builder().firstname("Anna").email("anna@example.com").role(Role.USER).build());
+        User second = userService.saveUser(new User());
+        Project project = projectService.saveProject(Project.builder().name("Snapshot")
+                .users(new ArrayList<>(List.of(first, second))).build());
+        entityManager.flush();
+        long users = userRepository.count();
+
+        var bytes = new ByteArrayOutputStream();
+        var exported = binarySnapshot.export(bytes);
+        entityManager.clear();
+        var loaded = binarySnapshot.load(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(exported, loaded);
+        assertEquals(users, userRepository.count());
+        assertEquals("anna@example.com", userRepository.findById(first.getId()).orElseThrow().getEmail());
+        assertEquals(2, projectRepository.findById(project.getId()).orElseThrow().getUsers().size());
+        assertTrue(userService.saveUser(new User()).getId() > second.getId());
+    }
+
+    @Test
+    public void testSnapshotSkipsSchemaHistoryAndOutbox() throws Exception {
+        userService.saveUser(User.builder().firstname("Olga").role(Role.USER).build());
+        entityManager.flush();
+        int migrations = jdbcTemplate.queryForObject("select count(*) from \"flyway_schema_history\"", Integer.class);
+        assertTrue(outboxRepository.count() > 0);
+
+        var bytes = new ByteArrayOutputStream();
+        binarySnapshot.export(bytes);
+        var content = bytes.toString(StandardCharsets.ISO_8859_1);
+        assertFalse(content.contains("flyway_schema_history"));
+        assertFalse(content.contains("outbox_event"));
+
+        entityManager.clear();
+        binarySnapshot.load(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(migrations, jdbcTemplate.queryForObject("select count(*) from \"flyway_schema_history\"", Integer.class));
+        assertEquals(0, outboxRepository.count());
+    }
+}
@@ -0,0 +1,40 @@
+package my.spring2024;
+
+import my.spring2024.app.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i + "@example.com");
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i + "@example.com");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("stranger" + i + "@example.com")) falsePositives++;
+        }
+        assertTrue(falsePositives < 300);
+    }
+
+    @Test
+    public void testClear() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.put("john.doe@example.com");
+        filter.clear();
+        assertFalse(filter.mightContain("john.doe@example.com"));
+    }
+}
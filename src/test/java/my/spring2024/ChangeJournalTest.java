@@ -0,0 +1,122 @@
+package my.spring2024;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import my.spring2024.app.DomainEvent;
+import my.spring2024.app.JournalService;
+import my.spring2024.app.ReviewSnapshot;
+import my.spring2024.infrastructure.ChangeJournal;
+import my.spring2024.infrastructure.OutboxRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class ChangeJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testAppendRotateAndReopen() throws IOException {
+        try (var journal = new ChangeJournal(directory, 64)) {
+            for (int i = 1; i <= 5; i++) {
+                assertEquals(i, journal.append(("record-" + i).getBytes()));
+            }
+        }
+        try (var segments = Files.list(directory)) {
+            assertTrue(segments.count() > 1);
+        }
+
+        try (var journal = new ChangeJournal(directory, 64)) {
+            assertEquals(6, journal.getNextSequence());
+            var read = new ArrayList<String>();
+            journal.read(3, entry -> read.add(new String(entry.data())));
+            assertEquals(List.of("record-3", "record-4", "record-5"), read);
+        }
+    }
+
+    @Test
+    public void testCorruptedTailIsDiscarded() throws IOException {
+        try (var journal = new ChangeJournal(directory, 1024)) {
+            journal.append("first".getBytes());
+            journal.append("second".getBytes());
+        }
+        var segment = Files.list(directory).findFirst().orElseThrow();
+        try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), 16 + 5 + 16 + 1);
+        }
+
+        try (var journal = new ChangeJournal(directory, 1024)) {
+            assertEquals(2, journal.getNextSequence());
+            assertEquals(2, journal.append("replacement".getBytes()));
+            var read = new ArrayList<String>();
+            journal.read(1, entry -> read.add(new String(entry.data())));
+            assertEquals(List.of("first", "replacement"), read);
+        }
+    }
+
+    @Test
+    public void testReviewsRecoveredFromSnapshotAndJournal() throws IOException {
+        var objectMapper = new StaticListableBeanFactory().getBeanProvider(ObjectMapper.class);
+        var outboxRepository = mock(OutboxRepository.class);
+
+        var journalService = new JournalService(outboxRepository, objectMapper, true, directory, 4096, "");
+        journalService.seed(List.of(new ReviewSnapshot(1L, 10L, 20L, null, 4)));
+        journalService.onDomainEvent(new DomainEvent(1L, "Review", 2L, "ReviewSaved",
+                "{\"id\":2,\"senderId\":10,\"receiverId\":30,\"projectId\":null,\"rating\":5}", Instant.now()));
+        journalService.onDomainEvent(new DomainEvent(2L, "Review", 1L, "ReviewDeleted", "{\"id\":1}", Instant.now()));
+        journalService.close();
+
+        var restarted = new JournalService(outboxRepository, objectMapper, true, directory, 4096, "");
+        var reviews = restarted.recoverReviews().orElseThrow();
+        assertEquals(List.of(new ReviewSnapshot(2L, 10L, 30L, null, 5)), List.copyOf(reviews));
+        restarted.close();
+    }
+
+    @Test
+    public void testJournalFlushedOncePerTransaction() throws IOException {
+        var objectMapper = new StaticListableBeanFactory().getBeanProvider(ObjectMapper.class);
+        var journalService = new JournalService(mock(OutboxRepository.class), objectMapper, true, directory, 4096, "");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            for (long id = 1; id <= 3; id++) {
+                journalService.onDomainEvent(new DomainEvent(id, "Review", id, "ReviewDeleted", "{}", Instant.now()));
+            }
+            var synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            assertEquals(1, synchronizations.size());
+            synchronizations.getFirst().beforeCommit(false);
+            synchronizations.getFirst().afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertTrue(TransactionSynchronizationManager.getResourceMap().isEmpty());
+        journalService.close();
+    }
+
+    @Test
+    public void testJournalIgnoredAfterSnapshotImport() throws IOException {
+        var objectMapper = new StaticListableBeanFactory().getBeanProvider(ObjectMapper.class);
+        var outboxRepository = mock(OutboxRepository.class);
+
+        var journalService = new JournalService(outboxRepository, objectMapper, true, directory, 4096, "");
+        journalService.seed(List.of(new ReviewSnapshot(1L, 10L, 20L, null, 4)));
+        journalService.close();
+
+        var imported = new JournalService(outboxRepository, objectMapper, true, directory, 4096, "snapshot.bin.gz");
+        assertTrue(imported.recoverReviews().isEmpty());
+        imported.close();
+    }
+}
@@ -0,0 +1,146 @@
+package my.spring2024;
+
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.app.CurrentUserService;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.Role;
+import my.spring2024.domain.TeamRoleTag;
+import my.spring2024.domain.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@DataJpaTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class CurrentUserServiceTest {
+    @Autowired
+    private CurrentUserService currentUserService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    public void testResolveIsCachedPerSession() {
+        User user = userService.saveUser(User.builder().email("cached@example.com").role(Role.USER).build());
+        long misses = currentUserService.getMisses();
+        long hits = currentUserService.getHits();
+
+        assertEquals(user.getId(), currentUserService.resolve("session-1", "cached@example.com").get().getId());
+        assertEquals(user.getId(), currentUserService.resolve("session-1", "cached@example.com").get().getId());
+
+        assertEquals(misses + 1, currentUserService.getMisses());
+        assertEquals(hits + 1, currentUserService.getHits());
+    }
+
+    @Test
+    public void testCachedUserIsDetachedSnapshot() {
+        User user = userService.saveUser(User.builder().email("snapshot@example.com").firstname("Anna")
+                .teamRole(TeamRoleTag.BACKEND).role(Role.USER).build());
+        currentUserService.resolve("session-4", "snapshot@example.com");
+        entityManager.flush();
+        entityManager.clear();
+        long statements = statistics().getPrepareStatementCount();
+
+        User first = currentUserService.resolve("session-4", "snapshot@example.com").orElseThrow();
+        User second = currentUserService.resolve("session-4", "snapshot@example.com").orElseThrow();
+
+        assertEquals(statements, statistics().getPrepareStatementCount());
+        assertEquals(user.getId(), first.getId());
+        assertEquals("Anna", first.getFirstname());
+        assertEquals(TeamRoleTag.BACKEND, first.getTeamRole());
+        assertFalse(entityManager.getEntityManager().contains(first));
+        assertNotSame(first, second);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testUserSaveEvictsCachedUser() {
+        User user = userService.saveUser(User.builder().email("renamed@example.com").firstname("Old").role(Role.USER).build());
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+        currentUserService.resolve("session-5", "renamed@example.com");
+
+        Long version = userService.getUserById(user.getId()).orElseThrow().getVersion();
+        userService.saveUser(User.builder().id(user.getId()).version(version).email("renamed@example.com")
+                .firstname("New").role(Role.USER).build());
+        assertEquals("Old", currentUserService.resolve("session-5", "renamed@example.com").orElseThrow().getFirstname());
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+
+        assertEquals("New", currentUserService.resolve("session-5", "renamed@example.com").orElseThrow().getFirstname());
+    }
+
+    @Test
+    public void testAuthenticatedRequestOverheadBenchmark() {
+        userService.saveUser(User.builder().email("bench@example.com").role(Role.USER).build());
+        entityManager.flush();
+        int iterations = 2_000;
+        for (int i = 0; i < iterations; i++) {
+            currentUserService.evictSession("bench");
+            currentUserService.resolve("bench", "bench@example.com");
+            currentUserService.resolve("bench", "bench@example.com");
+        }
+
+        long statements = statistics().getPrepareStatementCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            currentUserService.evictSession("bench");
+            currentUserService.resolve("bench", "bench@example.com");
+        }
+        long missNanos = System.nanoTime() - start;
+        long missStatements = statistics().getPrepareStatementCount() - statements;
+
+        statements = statistics().getPrepareStatementCount();
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            currentUserService.resolve("bench", "bench@example.com");
+        }
+        long hitNanos = System.nanoTime() - start;
+        long hitStatements = statistics().getPrepareStatementCount() - statements;
+
+        log.info("Определение текущего пользователя: по кэшу сессии {} нс, с поиском по email {} нс на запрос",
+                hitNanos / iterations, missNanos / iterations);
+        assertEquals(0, hitStatements);
+        assertTrue(missStatements >= iterations);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testRoleChangeEvictsCachedUser() {
+        User user = userService.saveUser(User.builder().email("admin-to-be@example.com").role(Role.USER).build());
+        currentUserService.resolve("session-2", "admin-to-be@example.com");
+        userService.setAdminRole(user.getId());
+        long misses = currentUserService.getMisses();
+        currentUserService.resolve("session-2", "admin-to-be@example.com");
+        assertEquals(misses, currentUserService.getMisses());
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+
+        currentUserService.resolve("session-2", "admin-to-be@example.com");
+        assertEquals(misses + 1, currentUserService.getMisses());
+    }
+
+    private Statistics statistics() {
+        return entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    public void testResolveUnknownUser() {
+        assertTrue(currentUserService.resolve("session-3", "stranger@example.com").isEmpty());
+    }
+}
@@ -0,0 +1,119 @@
+package my.spring2024;
+
+import my.spring2024.api.ReviewController;
+import my.spring2024.api.UserController;
+import my.spring2024.app.ReviewService;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.Review;
+import my.spring2024.domain.Role;
+import my.spring2024.domain.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "response-cache.gzip-min-size=1")
+public class ETagTest {
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ReviewService reviewService;
+    @Autowired
+    private UserController userController;
+    @Autowired
+    private ReviewController reviewController;
+
+    @Test
+    public void testReviewETagFollowsRelatedEntities() {
+        User sender = userService.saveUser(new User());
+        User receiver = userService.saveUser(new User());
+        Review review = reviewService.saveReview(Review.builder().rating(5).sender(sender).receiver(receiver).build());
+
+        var first = reviewController.getReviewById(review.getId(), request(null));
+        assertEquals(200, first.getStatusCode().value());
+        String eTag = first.getHeaders().getETag();
+        assertEquals(304, reviewController.getReviewById(review.getId(), request(eTag)).getStatusCode().value());
+
+        userService.setAdminRole(sender.getId());
+
+        var changed = reviewController.getReviewById(review.getId(), request(eTag));
+        assertEquals(200, changed.getStatusCode().value());
+        assertNotEquals(eTag, changed.getHeaders().getETag());
+    }
+
+    @Test
+    public void testCachedCardETagIsDigestOfBody() {
+        User user = userService.saveUser(User.builder().firstname("Anna").role(Role.USER).build());
+
+        var response = userController.getUserById(user.getId(), request(null));
+        assertEquals("\"" + DigestUtils.md5DigestAsHex(response.getBody()) + "\"", response.getHeaders().getETag());
+        assertEquals(304, userController.getUserById(user.getId(), request(response.getHeaders().getETag()))
+                .getStatusCode().value());
+    }
+
+    @Test
+    public void testETagDependsOnFormatAndEncoding() {
+        Long id = userService.saveUser(User.builder().firstname("Olga").role(Role.USER).build()).getId();
+
+        var json = userController.getUserById(id, request(null, "application/json", null));
+        var cbor = userController.getUserById(id, request(null, "application/cbor", null));
+        var gzip = userController.getUserById(id, request(null, "application/json", "gzip, deflate"));
+
+        assertEquals("application/cbor", cbor.getHeaders().getContentType().toString());
+        assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNull(json.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(3, Set.of(json.getHeaders().getETag(), cbor.getHeaders().getETag(), gzip.getHeaders().getETag()).size());
+        assertEquals(200, userController.getUserById(id, request(json.getHeaders().getETag(), "application/cbor", null))
+                .getStatusCode().value());
+        assertEquals(304, userController.getUserById(id, request(gzip.getHeaders().getETag(), "application/json", "gzip"))
+                .getStatusCode().value());
+    }
+
+    @Test
+    public void testAcceptQualityValues() {
+        Long id = userService.saveUser(User.builder().firstname("Oleg").role(Role.USER).build()).getId();
+
+        var smile = userController.getUserById(id,
+                request(null, "application/cbor;q=0.5, application/x-jackson-smile;q=0.8", null));
+        assertEquals("application/x-jackson-smile", smile.getHeaders().getContentType().toString());
+        var cbor = userController.getUserById(id, request(null, "*/*, application/json;q=0", null));
+        assertEquals("application/cbor", cbor.getHeaders().getContentType().toString());
+        var identity = userController.getUserById(id, request(null, null, "gzip;q=0, *"));
+        assertNull(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        var error = assertThrows(ResponseStatusException.class,
+                () -> userController.getUserById(id, request(null, "application/xml", null)));
+        assertEquals(406, error.getStatusCode().value());
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch) {
+        return request(ifNoneMatch, null, null);
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch, String accept, String acceptEncoding) {
+        var request = new MockHttpServletRequest("GET", "/api");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        if (accept != null) {
+            request.addHeader(HttpHeaders.ACCEPT, accept);
+        }
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+}
@@ -0,0 +1,149 @@
+package my.spring2024;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import my.spring2024.infrastructure.IdempotencyFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyFilterTest {
+    private final AtomicInteger executions = new AtomicInteger();
+    private final FilterChain chain = (request, response) -> {
+        executions.incrementAndGet();
+        response.setContentType("application/json");
+        response.getWriter().write("{\"id\":" + executions.get() + "}");
+    };
+
+    @Test
+    public void testRetryReturnsStoredResponse() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(100, Duration.ofMinutes(1), DataSize.ofKilobytes(1));
+
+        MockHttpServletResponse first = perform(filter, "/api/posts/create", "key-1");
+        MockHttpServletResponse retry = perform(filter, "/api/posts/create", "key-1");
+
+        assertEquals(1, executions.get());
+        assertEquals("{\"id\":1}", first.getContentAsString());
+        assertEquals("{\"id\":1}", retry.getContentAsString());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    public void testDifferentKeysAreExecuted() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(100, Duration.ofMinutes(1), DataSize.ofKilobytes(1));
+
+        perform(filter, "/api/users/register", "key-1");
+        perform(filter, "/api/users/register", "key-2");
+        perform(filter, "/api/users/register", null);
+
+        assertEquals(3, executions.get());
+    }
+
+    @Test
+    public void testExpiredKeyIsExecutedAgain() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(100, Duration.ZERO, DataSize.ofKilobytes(1));
+
+        perform(filter, "/api/reviews/create", "key-1");
+        perform(filter, "/api/reviews/create", "key-1");
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testKeyReusedWithDifferentBodyIsRejected() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(100, Duration.ofMinutes(1), DataSize.ofKilobytes(1));
+
+        perform(filter, "/api/posts/create", "key-1", "{\"title\":\"first\"}");
+        var body = new StringBuilder();
+        FilterChain echo = (request, response) -> {
+            executions.incrementAndGet();
+            body.append(new String(request.getInputStream().readAllBytes()));
+        };
+        var sameRequest = new MockHttpServletRequest("POST", "/api/posts/create");
+        sameRequest.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-2");
+        sameRequest.setContent("{\"title\":\"second\"}".getBytes());
+        filter.doFilter(sameRequest, new MockHttpServletResponse(), echo);
+        var mismatch = perform(filter, "/api/posts/create", "key-1", "{\"title\":\"other\"}");
+
+        assertEquals("{\"title\":\"second\"}", body.toString());
+        assertEquals(422, mismatch.getStatus());
+        assertEquals(2, executions.get());
+        assertEquals(200, perform(filter, "/api/posts/create", "key-1", "{\"title\":\"first\"}").getStatus());
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testOversizedBodyIsRejected() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(100, Duration.ofMinutes(1), DataSize.ofBytes(16));
+
+        var declared = perform(filter, "/api/posts/create", "key-1", "{\"title\":\"too long\"}");
+        var chunked = new MockHttpServletRequest("POST", "/api/posts/create") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-2");
+        chunked.setContent("{\"title\":\"too long\"}".getBytes());
+        var undeclared = new MockHttpServletResponse();
+        filter.doFilter(chunked, undeclared, chain);
+
+        assertEquals(413, declared.getStatus());
+        assertEquals(413, undeclared.getStatus());
+        assertEquals(0, executions.get());
+        assertEquals(200, perform(filter, "/api/posts/create", "key-3", "{}").getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void testReadListenerIsNotifiedOfBufferedBody() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(100, Duration.ofMinutes(1), DataSize.ofKilobytes(1));
+        var events = new StringBuilder();
+        FilterChain async = (request, response) -> {
+            var input = request.getInputStream();
+            input.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    events.append("data:").append(new String(input.readAllBytes())).append(';');
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    events.append("done");
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    events.append("error");
+                }
+            });
+        };
+        var request = new MockHttpServletRequest("POST", "/api/posts/create");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-1");
+        request.setContent("{}".getBytes());
+
+        filter.doFilter(request, new MockHttpServletResponse(), async);
+
+        assertEquals("data:{};done", events.toString());
+    }
+
+    private MockHttpServletResponse perform(IdempotencyFilter filter, String uri, String key) throws Exception {
+        return perform(filter, uri, key, null);
+    }
+
+    private MockHttpServletResponse perform(IdempotencyFilter filter, String uri, String key, String body) throws Exception {
+        var request = new MockHttpServletRequest("POST", uri);
+        if (key != null) request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        if (body != null) request.setContent(body.getBytes());
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
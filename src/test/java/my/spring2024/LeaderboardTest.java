@@ -0,0 +1,66 @@
+package my.spring2024;
+
+import my.spring2024.app.Leaderboard;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeaderboardTest {
+    @Test
+    public void testRatingOrderRequiresMinimumReviews() {
+        var leaderboard = new Leaderboard(2);
+        leaderboard.add(1L, 5, 1);
+        leaderboard.add(2L, 4, 1);
+        leaderboard.add(2L, 4, 1);
+        leaderboard.add(3L, 3, 1);
+        leaderboard.add(3L, 5, 1);
+        leaderboard.add(3L, 1, 1);
+
+        var byRating = leaderboard.page(Leaderboard.Order.RATING, 0, 10);
+        assertEquals(2, byRating.size());
+        assertEquals(2L, byRating.get(0).id());
+        assertEquals(3L, byRating.get(1).id());
+
+        var byVolume = leaderboard.page(Leaderboard.Order.VOLUME, 0, 10);
+        assertEquals(3L, byVolume.getFirst().id());
+        assertEquals(3, byVolume.size());
+        assertEquals(1L, leaderboard.page(Leaderboard.Order.VOLUME, 2, 10).getFirst().id());
+    }
+
+    @Test
+    public void testRemovingReviewsUpdatesStanding() {
+        var leaderboard = new Leaderboard(1);
+        leaderboard.add(1L, 5, 1);
+        leaderboard.add(1L, 1, 1);
+        leaderboard.add(2L, 4, 1);
+        assertEquals(2L, leaderboard.page(Leaderboard.Order.RATING, 0, 1).getFirst().id());
+
+        leaderboard.add(1L, 1, -1);
+        assertEquals(1L, leaderboard.page(Leaderboard.Order.RATING, 0, 1).getFirst().id());
+        assertEquals(5.0, leaderboard.get(1L).averageRating());
+
+        leaderboard.add(1L, 5, -1);
+        assertNull(leaderboard.get(1L));
+        assertEquals(1, leaderboard.size(Leaderboard.Order.VOLUME));
+    }
+
+    @Test
+    public void testPageReflectsChangesAfterSnapshot() {
+        var leaderboard = new Leaderboard(1);
+        for (long id = 1; id <= 100; id++) {
+            leaderboard.add(id, 3, 1);
+        }
+        var before = leaderboard.page(Leaderboard.Order.VOLUME, 90, 20);
+        assertEquals(10, before.size());
+        assertEquals(91L, before.getFirst().id());
+
+        leaderboard.add(100L, 5, 1);
+        assertEquals(100L, leaderboard.page(Leaderboard.Order.VOLUME, 0, 1).getFirst().id());
+        assertEquals(90L, leaderboard.page(Leaderboard.Order.VOLUME, 90, 20).getFirst().id());
+        assertEquals(91L, before.getFirst().id());
+        assertTrue(leaderboard.page(Leaderboard.Order.VOLUME, 200, 20).isEmpty());
+
+        leaderboard.clear();
+        assertTrue(leaderboard.page(Leaderboard.Order.RATING, 0, 20).isEmpty());
+    }
+}
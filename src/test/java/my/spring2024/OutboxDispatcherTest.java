@@ -0,0 +1,79 @@
+package my.spring2024;
+
+import my.spring2024.app.DomainEvent;
+import my.spring2024.app.Outbox;
+import my.spring2024.app.OutboxDispatcher;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@RecordApplicationEvents
+public class OutboxDispatcherTest {
+    /**
+     * Слушатель, который не может обработать события типа Failing.
+     */
+    @TestConfiguration
+    static class FailingListener {
+        @EventListener
+        public void onDomainEvent(DomainEvent event) {
+            if ("Failing".equals(event.type())) {
+                throw new IllegalStateException("Событие не обработано");
+            }
+        }
+    }
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+    @Autowired
+    private Outbox outbox;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
+    @Test
+    public void testDispatchDeliversEventsInOrder() {
+        outboxDispatcher.dispatch();
+        User user = userService.saveUser(new User());
+        userService.deleteUser(user.getId());
+        assertEquals(2, outboxDispatcher.getPending());
+
+        assertEquals(2, outboxDispatcher.dispatch());
+
+        var events = applicationEvents.stream(DomainEvent.class)
+                .filter(event -> user.getId().equals(event.aggregateId()))
+                .toList();
+        assertEquals(List.of("UserSaved", "UserDeleted"), events.stream().map(DomainEvent::type).toList());
+        assertEquals(0, outboxDispatcher.getPending());
+        assertEquals(Duration.ZERO, outboxDispatcher.getLag());
+    }
+
+    @Test
+    public void testDispatchPendingStopsWhenBatchMakesNoProgress() {
+        outboxDispatcher.dispatch();
+        long failed = outboxDispatcher.getFailed();
+        for (long id = 1; id <= 600; id++) {
+            outbox.append("Test", id, "Failing", Map.of("id", id));
+        }
+
+        outboxDispatcher.dispatchPending();
+
+        assertEquals(500, outboxDispatcher.getFailed() - failed);
+        assertEquals(600, outboxDispatcher.getPending());
+    }
+}
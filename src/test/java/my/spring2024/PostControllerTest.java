@@ -0,0 +1,42 @@
+package my.spring2024;
+
+import my.spring2024.api.PostController;
+import my.spring2024.app.PostService;
+import my.spring2024.domain.Post;
+import my.spring2024.domain.TeamRoleTag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class PostControllerTest {
+    @Autowired
+    private PostController postController;
+    @Autowired
+    private PostService postService;
+
+    @Test
+    public void testGetAllPostsWithSparseFields() {
+        Post post = postService.savePost(Post.builder().text("Ищем дизайнера")
+                .teamRoleTags(List.of(TeamRoleTag.DESIGNER)).build());
+
+        var response = postController.getAllPosts(Set.of("text", "teamRoleTags"), PageRequest.of(0, 100));
+        var row = response.getBody().getContent().stream().map(r -> (Map<?, ?>) r)
+                .filter(r -> post.getId().equals(r.get("id"))).findFirst().orElseThrow();
+        assertEquals(Set.of("id", "text", "teamRoleTags"), row.keySet());
+        assertEquals("Ищем дизайнера", row.get("text"));
+        assertEquals(List.of(TeamRoleTag.DESIGNER), row.get("teamRoleTags"));
+
+        assertEquals(400, postController.getAllPosts(Set.of("author"), PageRequest.of(0, 10)).getStatusCode().value());
+        assertEquals(400, postController.getAllPosts(Set.of("version"), PageRequest.of(0, 10)).getStatusCode().value());
+    }
+}
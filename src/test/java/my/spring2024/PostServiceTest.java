@@ -1,9 +1,14 @@
 package my.spring2024;
 
+import my.spring2024.app.DomainEvent;
+import my.spring2024.app.OutboxDispatcher;
 import my.spring2024.app.PostService;
+import my.spring2024.app.SerializedResponseCache;
+import my.spring2024.app.TrendingService;
 import my.spring2024.app.UserService;
 import my.spring2024.domain.Post;
 import my.spring2024.domain.User;
+import my.spring2024.infrastructure.PostRepository;
 import my.spring2024.infrastructure.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,9 +17,13 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,6 +41,18 @@ public class PostServiceTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private SerializedResponseCache responseCache;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
     private User user1;
     private User user2;
 
@@ -85,6 +106,30 @@ public class PostServiceTest {
         assertEquals(newText, updatedPost.getText());
     }
 
+    @Test
+    public void testPostVersionChangesOnUpdate() {
+        Post post = postService.savePost(new Post());
+        postRepository.flush();
+        Long initialVersion = post.getVersion();
+        postService.updatePostText(post.getId(), "Updated text");
+        postRepository.flush();
+        assertNotEquals(initialVersion, postService.getPostById(post.getId()).getVersion());
+    }
+
+    @Test
+    @DirtiesContext
+    public void testUpdatePostEvictsCachedResponse() {
+        Post post = postService.savePost(new Post());
+        commit();
+        responseCache.put(SerializedResponseCache.POST, post.getId(), "json", post.getVersion(), "{}".getBytes());
+        assertNotNull(responseCache.get(SerializedResponseCache.POST, post.getId(), "json"));
+
+        postService.updatePostText(post.getId(), "Updated text");
+        assertNotNull(responseCache.get(SerializedResponseCache.POST, post.getId(), "json"));
+        commit();
+        assertNull(responseCache.get(SerializedResponseCache.POST, post.getId(), "json"));
+    }
+
     @Test
     public void testAddRespondentToPost() {
         Post post = new Post();
@@ -95,6 +140,63 @@ public class PostServiceTest {
         assertTrue(updatedPost.getRespondents().contains(user1));
     }
 
+    @Test
+    @DirtiesContext
+    public void testTrendingPostsOrderedByRecentResponses() {
+        Post quiet = postService.savePost(new Post());
+        Post hot = postService.savePost(new Post());
+        postService.addRespondentToPost(hot.getId(), user1.getId());
+        postService.addRespondentToPost(hot.getId(), user2.getId());
+        commit();
+
+        assertNotNull(hot.getCreatedAt());
+        assertNotNull(postService.getPostById(hot.getId()).getLastRespondedAt());
+
+        var ids = trendingService.getTrending(100).stream().map(TrendingService.Entry::id).toList();
+        assertEquals(hot.getId(), ids.getFirst());
+        assertTrue(ids.indexOf(hot.getId()) < ids.indexOf(quiet.getId()));
+        assertEquals(2, trendingService.getTrending(1).getFirst().respondents());
+
+        postService.deletePost(hot.getId());
+        commit();
+        assertFalse(trendingService.getTrending(100).stream().anyMatch(entry -> entry.id().equals(hot.getId())));
+    }
+
+    @Test
+    public void testTrendingSkipsRedeliveredEvents() {
+        var trending = new TrendingService(postRepository, 10, Duration.ofHours(6));
+        Post post = postService.savePost(new Post());
+        postService.addRespondentToPost(post.getId(), user1.getId());
+        var createdAt = Instant.now();
+        var response = new DomainEvent(2L, "Post", post.getId(), "PostRespondentAdded", "{}", createdAt);
+
+        trending.onDomainEvent(new DomainEvent(1L, "Post", post.getId(), "PostCreated", "{}", createdAt));
+        trending.onDomainEvent(response);
+        var once = trending.getTrending(10).getFirst();
+        trending.onDomainEvent(response);
+
+        assertEquals(once, trending.getTrending(10).getFirst());
+        assertEquals(1, once.respondents());
+    }
+
+    @Test
+    public void testTrendingRefilledFromDatabaseAfterRemoval() {
+        var trending = new TrendingService(postRepository, 1, Duration.ofHours(6));
+        Post older = postService.savePost(Post.builder().title("older").text("Older text")
+                .createdAt(Instant.parse("2024-02-01T00:00:00Z")).build());
+        Post newer = postService.savePost(Post.builder().title("newer").text("Newer text")
+                .createdAt(Instant.parse("2024-03-01T00:00:00Z")).build());
+        trending.indexPost(older);
+        trending.indexPost(newer);
+        assertEquals(List.of(newer.getId()), trending.getTrending(10).stream().map(TrendingService.Entry::id).toList());
+
+        trending.removePost(newer.getId());
+        var refilled = trending.getTrending(10);
+        assertEquals(1, refilled.size());
+        assertEquals(older.getId(), refilled.getFirst().id());
+        assertEquals("Older text", refilled.getFirst().text());
+    }
+
     @Test
     public void testRemoveRespondentFromPost() {
         Post post = new Post();
@@ -146,4 +248,14 @@ public class PostServiceTest {
         Pageable pageable = PageRequest.of(0, 10);
         assertEquals(1, postService.getPostsByAuthor(author.getId(), pageable).getTotalElements());
     }
-}
\ No newline at end of file
+
+    /**
+     * Фиксирует тестовую транзакцию, открывает новую и доставляет индексам события outbox.
+     */
+    private void commit() {
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+        outboxDispatcher.dispatchPending();
+    }
+}
@@ -0,0 +1,48 @@
+package my.spring2024;
+
+import my.spring2024.app.PostCreatedEvent;
+import my.spring2024.app.PostRespondentsChangedEvent;
+import my.spring2024.app.PostStreamService;
+import my.spring2024.domain.TeamRoleTag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PostStreamServiceTest {
+    @Test
+    public void testSubscriptionFiltersByRoleAndAuthor() throws InterruptedException {
+        var service = new PostStreamService(4);
+        var designers = service.subscribe(Set.of(TeamRoleTag.DESIGNER), 7L);
+
+        service.onPostCreated(new PostCreatedEvent(1L, 2L, "Backend", List.of(TeamRoleTag.BACKEND), Instant.now()));
+        service.onPostCreated(new PostCreatedEvent(2L, 2L, "Design", List.of(TeamRoleTag.DESIGNER), Instant.now()));
+        service.onRespondentsChanged(new PostRespondentsChangedEvent(3L, 8L, 9L, true, 1));
+        service.onRespondentsChanged(new PostRespondentsChangedEvent(4L, 7L, 9L, true, 1));
+
+        assertEquals(2L, ((PostCreatedEvent) designers.next(Duration.ZERO)).postId());
+        assertEquals(4L, ((PostRespondentsChangedEvent) designers.next(Duration.ZERO)).postId());
+        assertNull(designers.next(Duration.ZERO));
+    }
+
+    @Test
+    public void testSlowSubscriberIsDropped() {
+        var service = new PostStreamService(2);
+        var slow = service.subscribe(Set.of(), null);
+        var fast = service.subscribe(Set.of(), null);
+
+        for (long id = 0; id < 3; id++) {
+            service.onPostCreated(new PostCreatedEvent(id, null, "Post", List.of(), Instant.now()));
+            if (id < 2) assertDoesNotThrow(() -> fast.next(Duration.ZERO));
+        }
+
+        assertTrue(slow.isClosed());
+        assertFalse(fast.isClosed());
+        assertEquals(1, service.getSubscriberCount());
+        assertEquals(1, service.getDropped());
+    }
+}
@@ -0,0 +1,59 @@
+package my.spring2024;
+
+import my.spring2024.infrastructure.PersistenceSelfCheck;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Запуск приложения с настоящим профилем production.
+ * Заменяется только адрес базы данных: вместо PostgreSQL используется H2 в режиме совместимости с ним.
+ */
+@SpringBootTest
+@ActiveProfiles("production")
+public class ProductionProfileTest {
+    @TempDir
+    static Path journalDirectory;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:production;MODE=PostgreSQL");
+        registry.add("spring.datasource.driver-class-name", () -> "org.h2.Driver");
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+        registry.add("journal.dir", () -> journalDirectory.toString());
+    }
+
+    @Autowired
+    private PersistenceSelfCheck selfCheck;
+    @Autowired
+    private ClientRegistrationRepository clientRegistrations;
+
+    @Test
+    public void testProductionProfileStarts() {
+        assertNotNull(clientRegistrations.findByRegistrationId("yandex"));
+
+        var report = selfCheck.check();
+        assertEquals(1, report.pools().size());
+        var pool = report.pools().getFirst();
+        assertEquals("primary", pool.name());
+        assertEquals(16, pool.maximumPoolSize());
+        assertEquals("3", pool.properties().get("prepareThreshold"));
+        assertEquals("true", pool.properties().get("reWriteBatchedInserts"));
+        assertTrue(pool.database().startsWith("H2"));
+
+        assertEquals(50, report.batchSize());
+        assertTrue(report.orderInserts());
+        assertTrue(report.orderUpdates());
+        assertTrue(report.identityEntities().isEmpty(), report.identityEntities().toString());
+        assertTrue(report.warnings().isEmpty(), report.warnings().toString());
+    }
+}
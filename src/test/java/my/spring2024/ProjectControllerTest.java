@@ -0,0 +1,98 @@
+package my.spring2024;
+
+import my.spring2024.api.ProjectController;
+import my.spring2024.app.ProjectService;
+import my.spring2024.app.RequestCoalescer;
+import my.spring2024.domain.Project;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doAnswer;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class ProjectControllerTest {
+    @Autowired
+    private ProjectController projectController;
+    @Autowired
+    private RequestCoalescer coalescer;
+    @SpyBean
+    private ProjectService projectService;
+
+    @Test
+    public void testConcurrentCardMissesBuildCardOnce() throws Exception {
+        long id = 424242L;
+        var loads = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            loads.incrementAndGet();
+            started.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return Optional.of(Project.builder().id(id).name("Shared").version(3L).build());
+        }).when(projectService).getProjectById(id);
+        long executedBefore = coalescer.getExecuted("project");
+        long coalescedBefore = coalescer.getCoalesced("project");
+        int callers = 6;
+
+        try (var executor = Executors.newFixedThreadPool(callers)) {
+            var responses = new ArrayList<Future<ResponseEntity<byte[]>>>();
+            responses.add(executor.submit(() -> projectController.getProjectById(id, request())));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < callers; i++) {
+                responses.add(executor.submit(() -> projectController.getProjectById(id, request())));
+            }
+            while (coalescer.getCoalesced("project") - coalescedBefore < callers - 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            byte[] body = responses.get(0).get(5, TimeUnit.SECONDS).getBody();
+            for (var response : responses) {
+                assertTrue(Arrays.equals(body, response.get(5, TimeUnit.SECONDS).getBody()));
+            }
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, coalescer.getExecuted("project") - executedBefore);
+        assertEquals(callers - 1, coalescer.getCoalesced("project") - coalescedBefore);
+        assertEquals(200, projectController.getProjectById(id, request()).getStatusCode().value());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testGetAllProjectsWithSparseFields() {
+        Project project = projectService.saveProject(Project.builder().name("Sparse").build());
+
+        var response = projectController.getAllProjects(Set.of("name"), null, PageRequest.of(0, 100));
+        var row = response.getBody().getContent().stream().map(r -> (Map<?, ?>) r)
+                .filter(r -> project.getId().equals(r.get("id"))).findFirst().orElseThrow();
+        assertEquals(Map.of("id", project.getId(), "name", "Sparse"), row);
+
+        assertEquals(400, projectController.getAllProjects(Set.of("version"), null, PageRequest.of(0, 10))
+                .getStatusCode().value());
+    }
+
+    private static ServletWebRequest request() {
+        return new ServletWebRequest(new MockHttpServletRequest());
+    }
+}
@@ -16,6 +16,9 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.jdbc.Sql;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -61,6 +64,20 @@ public class ProjectServiceTest {
         assertTrue(updatedProject.getUsers().contains(user));
     }
 
+    @Test
+    public void testSaveProjectResolvesUserReferences() {
+        User leader = userService.saveUser(new User());
+        User member = userService.saveUser(new User());
+        var users = new ArrayList<User>(List.of(new User(leader.getId()), member));
+
+        Project project = projectService.saveProject(Project.builder().name("References")
+                .leader(new User(leader.getId())).users(users).build());
+
+        assertSame(leader, project.getLeader());
+        assertSame(leader, project.getUsers().get(0));
+        assertSame(member, project.getUsers().get(1));
+    }
+
     @Test
     public void testRemoveUserFromProject() {
         Project project = projectService.saveProject(Project.builder().leader(new User()).users(new ArrayList<>()).build());
@@ -116,4 +133,20 @@ public class ProjectServiceTest {
         Page<Project> result = projectService.searchProjectsByKeyword(keyword, pageable);
         assertEquals(1, result.getTotalElements());
     }
+
+    @Test
+    public void testGetAllProjectsWithSparseFields() {
+        User user = userService.saveUser(new User());
+        Project project = projectService.saveProject(Project.builder().name("Sparse").users(new ArrayList<>()).build());
+        projectService.addUserToProject(project.getId(), user);
+
+        var page = projectService.getAllProjects(Map.of("name", "name", "users", "users"), null, PageRequest.of(0, 100));
+        var row = page.getContent().stream().filter(r -> project.getId().equals(r.get("id"))).findFirst().orElseThrow();
+        assertEquals(Set.of("id", "name", "users"), row.keySet());
+        assertEquals("Sparse", row.get("name"));
+        assertEquals(List.of(user.getId()), row.get("users"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> projectService.getAllProjects(Map.of("password", "password"), null, PageRequest.of(0, 10)));
+    }
 }
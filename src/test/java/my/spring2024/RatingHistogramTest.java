@@ -0,0 +1,38 @@
+package my.spring2024;
+
+import my.spring2024.app.RatingHistogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RatingHistogramTest {
+    @Test
+    public void testQuantilesAndMean() {
+        var histogram = new RatingHistogram();
+        for (int rating : new int[]{1, 2, 4, 4, 5}) {
+            histogram.add(rating, 1);
+        }
+        assertEquals(5, histogram.total());
+        assertEquals(3.2, histogram.mean(), 1e-9);
+        assertEquals(1, histogram.quantile(0));
+        assertEquals(4, histogram.quantile(0.5));
+        assertEquals(5, histogram.quantile(1));
+        assertArrayEquals(new long[]{1, 1, 0, 2, 1}, histogram.counts());
+    }
+
+    @Test
+    public void testRemoveAndMerge() {
+        var first = new RatingHistogram();
+        first.add(5, 1);
+        first.add(3, 1);
+        first.add(3, -1);
+        var second = new RatingHistogram();
+        second.add(1, 1);
+
+        var merged = new RatingHistogram().merge(first).merge(second);
+        assertEquals(2, merged.total());
+        assertEquals(3.0, merged.mean(), 1e-9);
+        assertEquals(0, new RatingHistogram().quantile(0.5));
+        assertThrows(IllegalArgumentException.class, () -> merged.quantile(1.5));
+    }
+}
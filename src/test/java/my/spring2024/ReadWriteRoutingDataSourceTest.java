@@ -0,0 +1,96 @@
+package my.spring2024;
+
+import my.spring2024.infrastructure.ReadWriteRoutingDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadWriteRoutingDataSourceTest {
+    private JdbcTemplate jdbc;
+    private TransactionTemplate write;
+    private TransactionTemplate read;
+
+    @BeforeEach
+    public void setUp() {
+        var dataSource = new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(
+                marked("primary"), marked("replica"), Duration.ofMinutes(1)));
+        var transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        write = new TransactionTemplate(transactionManager);
+        read = new TransactionTemplate(transactionManager);
+        read.setReadOnly(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testReadOnlyTransactionUsesReplica() {
+        assertEquals("replica", read.execute(status -> target()));
+        assertEquals("primary", write.execute(status -> target()));
+        assertEquals("primary", target());
+    }
+
+    @Test
+    public void testReadYourWritesWithinRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertEquals("replica", read.execute(status -> target()));
+
+        write.execute(status -> target());
+        assertEquals("primary", read.execute(status -> target()));
+    }
+
+    @Test
+    public void testReadYourWritesWithinSession() {
+        var first = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(first));
+        var session = first.getSession(true);
+        write.execute(status -> target());
+
+        var second = new MockHttpServletRequest();
+        second.setSession(session);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(second));
+        assertEquals("primary", read.execute(status -> target()));
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertEquals("replica", read.execute(status -> target()));
+    }
+
+    @Test
+    public void testRolledBackWriteDoesNotPinPrimary() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        write.execute(status -> {
+            target();
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals("replica", read.execute(status -> target()));
+    }
+
+    private String target() {
+        return jdbc.queryForObject("select name from marker", String.class);
+    }
+
+    private static DriverManagerDataSource marked(String name) {
+        var dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+        var jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table if not exists marker(name varchar(16))");
+        jdbc.update("delete from marker");
+        jdbc.update("insert into marker values (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,70 @@
+package my.spring2024;
+
+import jakarta.persistence.EntityManagerFactory;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.Role;
+import my.spring2024.domain.User;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Маршрутизация на реплику через JPA при открытом на весь запрос EntityManager (open-in-view).
+ * Реплика - отдельная база данных H2 без репликации, поэтому по ней видно, куда попала запись.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingJpaTest.PRIMARY,
+        "datasource.replica.url=" + ReplicaRoutingJpaTest.REPLICA
+})
+@ActiveProfiles("test")
+public class ReplicaRoutingJpaTest {
+    static final String PRIMARY = "jdbc:h2:mem:jpa-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA = "jdbc:h2:mem:jpa-replica;DB_CLOSE_DELAY=-1";
+
+    static {
+        Flyway.configure().dataSource(REPLICA, "root", "root").load().migrate();
+        new JdbcTemplate(new DriverManagerDataSource(REPLICA, "root", "root"))
+                .update("insert into \"user\" (\"id\", \"email\", \"role\") values (1000, 'replica@example.com', 'USER')");
+    }
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void testReadWriteReadInOneRequest() {
+        var entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            assertTrue(userService.getUserById(Long.MAX_VALUE).isEmpty());
+            assertNotNull(userService.getUserByEmail("replica@example.com"));
+            userService.saveUser(User.builder().email("routing@example.com").role(Role.USER).build());
+            assertNotNull(userService.getUserByEmail("routing@example.com"));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+
+        assertEquals(1, countUsers(PRIMARY, "routing@example.com"));
+        assertEquals(0, countUsers(REPLICA, "routing@example.com"));
+    }
+
+    private static int countUsers(String url, String email) {
+        var jdbc = new JdbcTemplate(new DriverManagerDataSource(url, "root", "root"));
+        return jdbc.queryForObject("select count(*) from \"user\" where \"email\" = ?", Integer.class, email);
+    }
+}
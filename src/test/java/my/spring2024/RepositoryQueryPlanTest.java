@@ -0,0 +1,160 @@
+package my.spring2024;
+
+import my.spring2024.domain.OutboxEvent;
+import my.spring2024.domain.Post;
+import my.spring2024.domain.Project;
+import my.spring2024.domain.Review;
+import my.spring2024.domain.Role;
+import my.spring2024.domain.TeamRoleTag;
+import my.spring2024.domain.User;
+import my.spring2024.infrastructure.OutboxRepository;
+import my.spring2024.infrastructure.PostRepository;
+import my.spring2024.infrastructure.ProjectRepository;
+import my.spring2024.infrastructure.ReviewRepository;
+import my.spring2024.infrastructure.UserRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет по EXPLAIN, что запросы репозиториев, выбирающие часть строк, используют индексы из миграций.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@TestPropertySource(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=my.spring2024.RepositoryQueryPlanTest$Recorder")
+public class RepositoryQueryPlanTest {
+    private static final Pattern TABLE_SCAN = Pattern.compile("\\.\"(\\w+)\"\\.tableScan");
+
+    /**
+     * Запросы, которые по назначению читают таблицу целиком: загрузка структур в памяти при старте
+     * и поиск по подстроке. Значение - таблицы, которые разрешено читать полностью.
+     */
+    private static final Map<String, Set<String>> FULL_SCANS = Map.of(
+            "UserRepository.findAllEmails", Set.of("user"),
+            "UserRepository.findAllTeamRoles", Set.of("user"),
+            "UserRepository.findAllPastMembers", Set.of("user_past_projects"),
+            "ProjectRepository.countUsersByProject", Set.of("project"),
+            "ProjectRepository.findAllMembers", Set.of("project", "project_users"),
+            "ProjectRepository.findByNameContainingOrDescriptionContaining", Set.of("project"),
+            "PostRepository.countRespondentsByPost", Set.of("post"),
+            "PostRepository.findByTitleContainingOrTextContaining", Set.of("post"),
+            "ReviewRepository.findAverageRatingByReceiver", Set.of("review"),
+            "ReviewRepository.findAllSnapshots", Set.of("review"));
+
+    /**
+     * Запоминает SQL, который Hibernate отправляет в базу данных.
+     */
+    public static class Recorder implements StatementInspector {
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProjectRepository projectRepository;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private ReviewRepository reviewRepository;
+    @Autowired
+    private OutboxRepository outboxRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testRepositoryQueriesDoNotScanTables() {
+        User user = userRepository.save(User.builder().firstname("Ivan").email("plan@example.com")
+                .teamRole(TeamRoleTag.BACKEND).role(Role.USER).build());
+        Project project = projectRepository.save(Project.builder().name("Plan").build());
+        postRepository.save(Post.builder().title("Plan").author(user).createdAt(Instant.now()).build());
+        reviewRepository.save(Review.builder().rating(5).sender(user).receiver(user).project(project).build());
+        outboxRepository.save(OutboxEvent.builder().aggregateType("User").aggregateId(user.getId()).type("UserSaved")
+                .createdAt(Instant.now()).build());
+        userRepository.flush();
+
+        var page = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"));
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("UserRepository.findByEmail", () -> userRepository.findByEmail("plan@example.com"));
+        queries.put("UserRepository.existsByEmail", () -> userRepository.existsByEmail("plan@example.com"));
+        queries.put("UserRepository.findAllEmails", userRepository::findAllEmails);
+        queries.put("UserRepository.findAllByTeamRole", () -> userRepository.findAllByTeamRole(TeamRoleTag.BACKEND));
+        queries.put("UserRepository.findAllTeamRoles", userRepository::findAllTeamRoles);
+        queries.put("UserRepository.findAllByCurrentProjects_Id", () -> userRepository.findAllByCurrentProjects_Id(project.getId()));
+        queries.put("UserRepository.findAllByPastProjects_Id", () -> userRepository.findAllByPastProjects_Id(project.getId()));
+        queries.put("UserRepository.findAllPastMembers", userRepository::findAllPastMembers);
+        queries.put("ProjectRepository.findProjectsByName", () -> projectRepository.findProjectsByName("Plan"));
+        queries.put("ProjectRepository.findByNameContainingOrDescriptionContaining",
+                () -> projectRepository.findByNameContainingOrDescriptionContaining("Pl", "Pl", PageRequest.of(0, 20)));
+        queries.put("ProjectRepository.countUsersByProject", projectRepository::countUsersByProject);
+        queries.put("ProjectRepository.findAllMembers", projectRepository::findAllMembers);
+        queries.put("PostRepository.findByTitleContainingOrTextContaining",
+                () -> postRepository.findByTitleContainingOrTextContaining("Pl", "Pl", PageRequest.of(0, 20)));
+        queries.put("PostRepository.findByAuthor", () -> postRepository.findByAuthor(user, page));
+        queries.put("PostRepository.countRespondentsByPost", postRepository::countRespondentsByPost);
+        queries.put("ReviewRepository.findAllBySender", () -> reviewRepository.findAllBySender(user));
+        queries.put("ReviewRepository.findAllByReceiver", () -> reviewRepository.findAllByReceiver(user));
+        queries.put("ReviewRepository.findAllByProject", () -> reviewRepository.findAllByProject(project));
+        queries.put("ReviewRepository.findAverageRatingByReceiver", reviewRepository::findAverageRatingByReceiver);
+        queries.put("ReviewRepository.findAllSnapshots", reviewRepository::findAllSnapshots);
+        queries.put("OutboxRepository.findByDispatchedAtIsNullOrderByIdAsc",
+                () -> outboxRepository.findByDispatchedAtIsNullOrderByIdAsc(PageRequest.of(0, 500)));
+        queries.put("OutboxRepository.countByDispatchedAtIsNull", outboxRepository::countByDispatchedAtIsNull);
+        queries.put("OutboxRepository.findOldestPendingCreatedAt", outboxRepository::findOldestPendingCreatedAt);
+        queries.put("OutboxRepository.deleteDispatchedBefore", () -> outboxRepository.deleteDispatchedBefore(Instant.now()));
+
+        assertEquals(declaredQueries(), new TreeSet<>(queries.keySet()), "Для каждого запроса репозитория нужна проверка плана");
+
+        var failures = new ArrayList<String>();
+        queries.forEach((name, query) -> {
+            Recorder.statements.clear();
+            query.run();
+            var allowed = FULL_SCANS.getOrDefault(name, Set.of());
+            for (String sql : List.copyOf(Recorder.statements)) {
+                String plan = String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class));
+                var scanned = TABLE_SCAN.matcher(plan).results().map(m -> m.group(1))
+                        .filter(table -> !allowed.contains(table))
+                        .collect(Collectors.toCollection(TreeSet::new));
+                if (!scanned.isEmpty()) {
+                    failures.add(name + " читает целиком " + scanned + ":\n" + plan);
+                }
+            }
+        });
+        assertTrue(failures.isEmpty(), String.join("\n\n", failures));
+    }
+
+    private static Set<String> declaredQueries() {
+        return Stream.of(UserRepository.class, ProjectRepository.class, PostRepository.class,
+                        ReviewRepository.class, OutboxRepository.class)
+                .flatMap(repository -> Arrays.stream(repository.getDeclaredMethods())
+                        .map(method -> repository.getSimpleName() + "." + method.getName()))
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+}
@@ -0,0 +1,79 @@
+package my.spring2024;
+
+import my.spring2024.app.RequestCoalescer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestCoalescerTest {
+    @Test
+    public void testConcurrentIdenticalRequestsShareOneCall() throws Exception {
+        var coalescer = new RequestCoalescer();
+        var calls = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        int callers = 8;
+
+        try (var executor = Executors.newFixedThreadPool(callers)) {
+            var results = new ArrayList<Future<String>>();
+            results.add(executor.submit(() -> coalescer.execute("project", 1L, () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "project 1";
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> coalescer.execute("project", 1L, () -> {
+                    calls.incrementAndGet();
+                    return "project 1";
+                })));
+            }
+            while (coalescer.getCoalesced("project") < callers - 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("project 1", result.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(1, coalescer.getExecuted("project"));
+        assertEquals(callers - 1, coalescer.getCoalesced("project"));
+    }
+
+    @Test
+    public void testDifferentKeysAndFinishedRequestsAreNotShared() {
+        var coalescer = new RequestCoalescer();
+        assertEquals("1", coalescer.execute("project", 1L, () -> "1"));
+        assertEquals("2", coalescer.execute("project", 2L, () -> "2"));
+        assertEquals("1 again", coalescer.execute("project", 1L, () -> "1 again"));
+        assertEquals(3, coalescer.getExecuted("project"));
+        assertEquals(0, coalescer.getCoalesced("project"));
+    }
+
+    @Test
+    public void testFailureIsPropagatedAndNotRemembered() {
+        var coalescer = new RequestCoalescer();
+        assertThrows(IllegalStateException.class, () -> coalescer.execute("post", 1L, () -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals("ok", coalescer.execute("post", 1L, () -> "ok"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
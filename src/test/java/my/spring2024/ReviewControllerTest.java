@@ -0,0 +1,44 @@
+package my.spring2024;
+
+import my.spring2024.api.ReviewController;
+import my.spring2024.app.ReviewService;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.Review;
+import my.spring2024.domain.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class ReviewControllerTest {
+    @Autowired
+    private ReviewController reviewController;
+    @Autowired
+    private ReviewService reviewService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void testGetAllReviewsWithSparseFields() {
+        User sender = userService.saveUser(new User());
+        User receiver = userService.saveUser(new User());
+        Review review = reviewService.saveReview(Review.builder().rating(4).sender(sender).receiver(receiver).build());
+
+        var response = reviewController.getAllReviews(Set.of("rating", "sender"), PageRequest.of(0, 100));
+        var row = response.getBody().getContent().stream().map(r -> (Map<?, ?>) r)
+                .filter(r -> review.getId().equals(r.get("id"))).findFirst().orElseThrow();
+        assertEquals(Set.of("id", "rating", "sender"), row.keySet());
+        assertEquals(4, row.get("rating"));
+        assertEquals(sender.getId(), row.get("sender"));
+
+        assertEquals(400, reviewController.getAllReviews(Set.of("version"), PageRequest.of(0, 10)).getStatusCode().value());
+    }
+}
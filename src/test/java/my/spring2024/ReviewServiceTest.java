@@ -1,6 +1,10 @@
 package my.spring2024;
 
+import my.spring2024.app.Leaderboard;
+import my.spring2024.app.LeaderboardService;
 import my.spring2024.app.ProjectService;
+import my.spring2024.app.RatingDistributionService;
+import my.spring2024.app.ReputationService;
 import my.spring2024.app.ReviewService;
 import my.spring2024.app.UserService;
 import my.spring2024.domain.Project;
@@ -10,8 +14,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
 import org.springframework.test.context.jdbc.Sql;
 
 
@@ -27,6 +34,12 @@ public class ReviewServiceTest {
     private UserService userService;
     @Autowired
     private ProjectService projectService;
+    @Autowired
+    private ReputationService reputationService;
+    @Autowired
+    private LeaderboardService leaderboardService;
+    @Autowired
+    private RatingDistributionService ratingDistributionService;
 
     @Test
     public void testCreateReview() {
@@ -43,6 +56,64 @@ public class ReviewServiceTest {
         assertEquals(review.getId(), returnedReview.getId());
     }
 
+    @Test
+    @DirtiesContext
+    public void testReputationFollowsReviewGraph() {
+        User first = userService.saveUser(new User());
+        User second = userService.saveUser(new User());
+        User popular = userService.saveUser(new User());
+        userService.addReviewToUsers(first.getId(), popular.getId(), Review.builder().rating(5).build());
+        userService.addReviewToUsers(second.getId(), popular.getId(), Review.builder().rating(5).build());
+        userService.addReviewToUsers(popular.getId(), first.getId(), Review.builder().rating(5).build());
+        commit();
+
+        double popularScore = reputationService.getReputation(popular.getId()).orElseThrow();
+        double firstScore = reputationService.getReputation(first.getId()).orElseThrow();
+        double secondScore = reputationService.getReputation(second.getId()).orElseThrow();
+        assertTrue(popularScore > firstScore);
+        assertTrue(firstScore > secondScore);
+
+        var leaderboard = reputationService.getLeaderboard(Integer.MAX_VALUE).stream().map(ReputationService.Score::userId).toList();
+        assertTrue(leaderboard.indexOf(popular.getId()) < leaderboard.indexOf(first.getId()));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testLowRatingDoesNotRaiseReputation() {
+        User first = userService.saveUser(new User());
+        User second = userService.saveUser(new User());
+        User popular = userService.saveUser(new User());
+        User disliked = userService.saveUser(new User());
+        userService.addReviewToUsers(first.getId(), popular.getId(), Review.builder().rating(5).build());
+        userService.addReviewToUsers(second.getId(), popular.getId(), Review.builder().rating(5).build());
+        userService.addReviewToUsers(popular.getId(), first.getId(), Review.builder().rating(5).build());
+        commit();
+        double firstScore = reputationService.getReputation(first.getId()).orElseThrow();
+
+        userService.addReviewToUsers(second.getId(), first.getId(), Review.builder().rating(1).build());
+        userService.addReviewToUsers(popular.getId(), disliked.getId(), Review.builder().rating(3).build());
+        commit();
+
+        assertEquals(firstScore, reputationService.getReputation(first.getId()).orElseThrow(), 1e-6);
+        assertTrue(reputationService.getReputation(disliked.getId()).isEmpty());
+    }
+
+    @Test
+    public void testRolledBackReviewDoesNotChangeMetrics() {
+        User sender = userService.saveUser(new User());
+        User receiver = userService.saveUser(new User());
+        long overall = ratingDistributionService.getOverallDistribution().total();
+        long receivers = leaderboardService.getReceivers(Leaderboard.Order.VOLUME, PageRequest.of(0, 10)).getTotalElements();
+
+        userService.addReviewToUsers(sender.getId(), receiver.getId(), Review.builder().rating(5).build());
+        TestTransaction.end();
+
+        assertTrue(reputationService.getReputation(receiver.getId()).isEmpty());
+        assertEquals(overall, ratingDistributionService.getOverallDistribution().total());
+        assertEquals(0, ratingDistributionService.getUserDistribution(receiver.getId()).total());
+        assertEquals(receivers, leaderboardService.getReceivers(Leaderboard.Order.VOLUME, PageRequest.of(0, 10)).getTotalElements());
+    }
+
     @Test
     public void testDeleteReview(){
         Review review = Review.builder().rating(5).build();
@@ -136,4 +207,13 @@ public class ReviewServiceTest {
         userService.addReviewToUsers(sender.getId(), receiver.getId(), review);
         assertEquals(receiver, review.getReceiver());
     }
+
+    /**
+     * Фиксирует тестовую транзакцию, чтобы индексы получили изменения, и открывает новую.
+     */
+    private static void commit() {
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+    }
 }
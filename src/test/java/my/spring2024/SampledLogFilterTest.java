@@ -0,0 +1,141 @@
+package my.spring2024;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.spi.FilterReply;
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.infrastructure.SampledLogFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class SampledLogFilterTest {
+    private final LoggerContext context = new LoggerContext();
+    private SampledLogFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        filter = new SampledLogFilter();
+        filter.setContext(context);
+        filter.setPermitsPerSecond(2);
+        filter.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        filter.stop();
+    }
+
+    @Test
+    public void testRoutineMessagesAreRateLimitedPerTemplate() {
+        long now = System.currentTimeMillis();
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event(Level.INFO, "Пользователь с id {} найден", now)));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event(Level.INFO, "Пользователь с id {} найден", now)));
+        assertEquals(FilterReply.DENY, filter.decide(event(Level.INFO, "Пользователь с id {} найден", now)));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event(Level.INFO, "Пост с id {} найден", now)));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event(Level.INFO, "Пользователь с id {} найден", now + 1000)));
+        assertEquals(1, filter.getSuppressedCount());
+    }
+
+    @Test
+    public void testWarningsAreLeftToSynchronousAppender() {
+        assertEquals(FilterReply.DENY, filter.decide(event(Level.WARN, "Не удалось найти пост с id {}", System.currentTimeMillis())));
+        assertEquals(0, filter.getSuppressedCount());
+    }
+
+    @Test
+    public void testAppenderThroughput(@TempDir Path dir) throws Exception {
+        int messages = 20_000;
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        var sync = logger("sync", fileAppender(dir.resolve("sync.log")));
+        var async = logger("async", asyncAppender(fileAppender(dir.resolve("async.log")), null));
+        var sampling = new SampledLogFilter();
+        sampling.setContext(context);
+        sampling.setPermitsPerSecond(20);
+        sampling.start();
+        var sampled = logger("sampled", asyncAppender(fileAppender(dir.resolve("sampled.log")), sampling));
+
+        for (var logger : List.of(sync, async, sampled)) {
+            for (int i = 0; i < 2_000; i++) {
+                logger.info("Прогрев {}", i);
+            }
+        }
+        long syncNanos = time(sync, messages);
+        long asyncNanos = time(async, messages);
+        long sampledNanos = time(sampled, messages);
+        context.stop();
+
+        log.info("Запись {} сообщений: синхронно {} мс, асинхронно {} мс, асинхронно с выборкой {} мс",
+                messages, syncNanos / 1_000_000, asyncNanos / 1_000_000, sampledNanos / 1_000_000);
+        assertEquals(2_000 + messages, Files.readAllLines(dir.resolve("sync.log")).size());
+        assertTrue(Files.readAllLines(dir.resolve("sampled.log")).size() < 1_000);
+    }
+
+    private static long time(Logger logger, int messages) {
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            logger.info("Пользователь с id {} найден", i);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private Logger logger(String name, Appender<ILoggingEvent> appender) {
+        var logger = context.getLogger("benchmark." + name);
+        logger.setAdditive(false);
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+        return logger;
+    }
+
+    private FileAppender<ILoggingEvent> fileAppender(Path file) {
+        var encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %-5level [%thread] %logger - %msg%n");
+        encoder.start();
+        var appender = new FileAppender<ILoggingEvent>();
+        appender.setContext(context);
+        appender.setFile(file.toString());
+        appender.setEncoder(encoder);
+        appender.start();
+        return appender;
+    }
+
+    private AsyncAppender asyncAppender(Appender<ILoggingEvent> target, SampledLogFilter sampling) {
+        var appender = new AsyncAppender();
+        appender.setContext(context);
+        appender.setQueueSize(8192);
+        appender.setNeverBlock(true);
+        appender.setMaxFlushTime(5000);
+        if (sampling != null) {
+            appender.addFilter(sampling);
+        }
+        appender.addAppender(target);
+        appender.start();
+        return appender;
+    }
+
+    private LoggingEvent event(Level level, String message, long timestamp) {
+        var event = new LoggingEvent();
+        event.setLoggerName("my.spring2024.app.UserService");
+        event.setLevel(level);
+        event.setMessage(message);
+        event.setTimeStamp(timestamp);
+        return event;
+    }
+}
@@ -0,0 +1,69 @@
+package my.spring2024;
+
+import my.spring2024.app.MinHashIndex;
+import my.spring2024.app.OutboxDispatcher;
+import my.spring2024.app.ProjectService;
+import my.spring2024.app.SimilarityService;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.Project;
+import my.spring2024.domain.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class SimilarityServiceTest {
+    @Autowired
+    private SimilarityService similarityService;
+    @Autowired
+    private ProjectService projectService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Test
+    public void testSimilarProjectsShareMembers() {
+        var users = new ArrayList<User>();
+        for (int i = 0; i < 5; i++) {
+            users.add(userService.saveUser(new User()));
+        }
+        Project original = projectService.saveProject(Project.builder().users(new ArrayList<>(users)).build());
+        Project copy = projectService.saveProject(Project.builder().users(new ArrayList<>(users)).build());
+        Project unrelated = projectService.saveProject(
+                Project.builder().users(new ArrayList<>(List.of(userService.saveUser(new User())))).build());
+        commit();
+
+        var similar = similarityService.getSimilarProjects(original.getId(), 10);
+        assertEquals(List.of(copy.getId()), similar.stream().map(MinHashIndex.Match::id).toList());
+        assertEquals(1.0, similar.getFirst().similarity());
+        assertTrue(similar.stream().noneMatch(match -> match.id().equals(unrelated.getId())));
+
+        var coworkers = similarityService.getSimilarUsers(users.getFirst().getId(), 10);
+        assertEquals(4, coworkers.size());
+
+        projectService.deleteProject(copy.getId());
+        commit();
+        assertTrue(similarityService.getSimilarProjects(original.getId(), 10).isEmpty());
+    }
+
+    /**
+     * Фиксирует тестовую транзакцию, открывает новую и доставляет индексам события outbox.
+     */
+    private void commit() {
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+        outboxDispatcher.dispatchPending();
+    }
+}
@@ -0,0 +1,72 @@
+package my.spring2024;
+
+import my.spring2024.app.OutboxDispatcher;
+import my.spring2024.app.PostService;
+import my.spring2024.app.ProjectService;
+import my.spring2024.app.TeamFormationService;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class TeamFormationServiceTest {
+    @Autowired
+    private TeamFormationService teamFormationService;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private ProjectService projectService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Test
+    public void testProposeTeamPrefersPastCollaborators() {
+        userService.saveUser(user(TeamRoleTag.GAMEDESIGNER));
+        User collaborator = userService.saveUser(user(TeamRoleTag.GAMEDESIGNER));
+        User analyst = userService.saveUser(user(TeamRoleTag.ANALYST));
+        userService.saveUser(user(TeamRoleTag.ANALYST));
+        projectService.saveProject(Project.builder().users(new ArrayList<>(List.of(collaborator, analyst))).build());
+        Post post = postService.savePost(Post.builder()
+                .teamRoleTags(new ArrayList<>(List.of(TeamRoleTag.GAMEDESIGNER, TeamRoleTag.ANALYST, TeamRoleTag.OTHER)))
+                .build());
+        commit();
+
+        var proposals = teamFormationService.proposeTeams(post.getId(), 3).orElseThrow();
+        var best = proposals.getFirst();
+        assertEquals(Set.of(collaborator.getId(), analyst.getId()),
+                best.members().stream().map(TeamFormationService.Member::userId).collect(Collectors.toSet()));
+        assertEquals(List.of(TeamRoleTag.OTHER), best.missingRoles());
+        assertTrue(proposals.size() > 1);
+        assertTrue(best.score() >= proposals.get(1).score());
+    }
+
+    private static User user(TeamRoleTag teamRole) {
+        return User.builder().teamRole(teamRole).role(Role.USER).build();
+    }
+
+    /**
+     * Фиксирует тестовую транзакцию, открывает новую и доставляет индексам события outbox.
+     */
+    private void commit() {
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+        outboxDispatcher.dispatchPending();
+    }
+}
@@ -0,0 +1,105 @@
+package my.spring2024;
+
+import my.spring2024.api.UserController;
+import my.spring2024.api.DTO.UserDTO;
+import my.spring2024.app.EmailIndex;
+import my.spring2024.app.UserService;
+import my.spring2024.domain.Role;
+import my.spring2024.domain.TeamRoleTag;
+import my.spring2024.domain.User;
+import my.spring2024.infrastructure.UserRepository;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class UserControllerTest {
+    @Autowired
+    private UserController userController;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void testRegisterUser() {
+        var response = userController.createUser(dto("new.user@example.com", TeamRoleTag.BACKEND));
+
+        assertEquals(200, response.getStatusCode().value());
+        var saved = response.getBody();
+        assertNotNull(saved.getId());
+        assertEquals(TeamRoleTag.BACKEND, saved.getRole());
+        var user = userService.getUserById(saved.getId()).orElseThrow();
+        assertEquals(TeamRoleTag.BACKEND, user.getTeamRole());
+        assertEquals(Role.USER, user.getRole());
+        assertEquals(TeamRoleTag.BACKEND, userController.getUserByEmail("new.user@example.com").getBody().getRole());
+    }
+
+    @Test
+    public void testRegisterDuplicateEmailIsConflict() {
+        userController.createUser(dto("taken@example.com", TeamRoleTag.BACKEND));
+
+        assertEquals(409, userController.createUser(dto("Taken@Example.com", TeamRoleTag.FRONTEND)).getStatusCode().value());
+    }
+
+    @Test
+    public void testGetAllUsersWithSparseFields() {
+        var saved = userController.createUser(dto("sparse@example.com", TeamRoleTag.DESIGNER)).getBody();
+
+        var response = userController.getAllUsers(Set.of("firstname", "role"), PageRequest.of(0, 100));
+        var row = response.getBody().getContent().stream().map(r -> (Map<?, ?>) r)
+                .filter(r -> saved.getId().equals(r.get("id"))).findFirst().orElseThrow();
+        assertEquals(Set.of("id", "firstname", "role"), row.keySet());
+        assertEquals("Ivan", row.get("firstname"));
+        assertEquals(TeamRoleTag.DESIGNER, row.get("role"));
+
+        assertEquals(400, userController.getAllUsers(Set.of("version"), PageRequest.of(0, 10)).getStatusCode().value());
+        assertEquals(400, userController.getAllUsers(Set.of("teamRole"), PageRequest.of(0, 10)).getStatusCode().value());
+    }
+
+    @Nested
+    @TestPropertySource(properties = "users.email-filter.enabled=true")
+    public class WithEmailFilter {
+        @Autowired
+        private UserController userController;
+        @Autowired
+        private UserRepository userRepository;
+        @Autowired
+        private EmailIndex emailIndex;
+
+        @Test
+        @DirtiesContext
+        @Transactional(propagation = Propagation.NOT_SUPPORTED)
+        public void testConcurrentRegistrationIsConflict() {
+            emailIndex.load();
+            userRepository.save(User.builder().email("race@example.com").role(Role.USER).build());
+            assertFalse(emailIndex.mightBeRegistered("race@example.com"));
+
+            var response = userController.createUser(dto("race@example.com", TeamRoleTag.BACKEND));
+
+            assertEquals(409, response.getStatusCode().value());
+            assertEquals(1, userRepository.findAll().stream()
+                    .filter(user -> "race@example.com".equals(user.getEmail())).count());
+        }
+    }
+
+    static UserDTO dto(String email, TeamRoleTag role) {
+        var dto = new UserDTO();
+        dto.setFirstname("Ivan");
+        dto.setLastname("Petrov");
+        dto.setEmail(email);
+        dto.setRole(role);
+        return dto;
+    }
+}
@@ -39,6 +39,17 @@ public class UserServiceTest {
         assertEquals(user.getId(), returnedUser.getId());
     }
 
+    @Test
+    public void testGetUsersByIdsKeepsRequestOrder() {
+        var first = userService.saveUser(new User()).getId();
+        var second = userService.saveUser(new User()).getId();
+        var missing = Long.MAX_VALUE;
+
+        var users = userService.getUsersByIds(List.of(second, missing, first, second));
+        assertEquals(List.of(second, first), List.copyOf(users.keySet()));
+        assertFalse(users.containsKey(missing));
+    }
+
     @Test
     public void testDeleteUser(){
         User user = new User();
@@ -53,6 +64,19 @@ public class UserServiceTest {
         assertNotNull(userService.getUserByEmail("john.doe@example.com"));
     }
 
+    @Test
+    public void testGetUserByEmailIgnoresCase(){
+        assertNotNull(userService.getUserByEmail("  John.Doe@Example.com "));
+    }
+
+    @Test
+    public void testSaveUserNormalizesEmail(){
+        User user = userService.saveUser(User.builder().email(" Jane.Roe@Example.com").role(Role.USER).build());
+        assertEquals("jane.roe@example.com", userService.getUserById(user.getId()).get().getEmail());
+        assertTrue(userService.isEmailRegistered("JANE.ROE@example.com"));
+        assertFalse(userService.isEmailRegistered("nobody@example.com"));
+    }
+
     @Test
     public void testGetUsersByTeamRole() {
         TeamRoleTag role = TeamRoleTag.DEVELOPER;
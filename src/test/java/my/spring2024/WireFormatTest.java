@@ -0,0 +1,159 @@
+package my.spring2024;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import my.spring2024.api.DTO.PostDTO;
+import my.spring2024.api.DTO.ProjectDTO;
+import my.spring2024.api.DTO.ReviewDTO;
+import my.spring2024.api.DTO.UserDTO;
+import my.spring2024.domain.Project;
+import my.spring2024.domain.Review;
+import my.spring2024.domain.Role;
+import my.spring2024.domain.TeamRoleTag;
+import my.spring2024.domain.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сравнение размера и времени сериализации страниц DTO в JSON, CBOR и Smile.
+ * Страницы заполнены вместе со связями, как их возвращают списочные эндпоинты.
+ */
+@Slf4j
+public class WireFormatTest {
+    private static final int SIZE = 1000;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cbor = Jackson2ObjectMapperBuilder.cbor().build();
+    private final ObjectMapper smile = Jackson2ObjectMapperBuilder.smile().build();
+
+    @Test
+    public void testBinaryFormatsAreSmallerThanJson() throws Exception {
+        for (Page<?> page : List.of(posts(), projects(), reviews(), users())) {
+            var jsonBytes = json.writeValueAsBytes(page).length;
+            var cborBytes = cbor.writeValueAsBytes(page).length;
+            var smileBytes = smile.writeValueAsBytes(page).length;
+            assertTrue(cborBytes < jsonBytes);
+            assertTrue(smileBytes < jsonBytes);
+        }
+    }
+
+    @Test
+    public void testSerializationTiming() throws Exception {
+        Map<String, Page<?>> pages = new LinkedHashMap<>();
+        pages.put("posts", posts());
+        pages.put("projects", projects());
+        pages.put("reviews", reviews());
+        pages.put("users", users());
+        Map<String, ObjectMapper> formats = new LinkedHashMap<>();
+        formats.put("json", json);
+        formats.put("cbor", cbor);
+        formats.put("smile", smile);
+        for (var page : pages.entrySet()) {
+            for (var format : formats.entrySet()) {
+                long bytes = 0;
+                for (int i = 0; i < WARMUP; i++) {
+                    bytes += format.getValue().writeValueAsBytes(page.getValue()).length;
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    bytes += format.getValue().writeValueAsBytes(page.getValue()).length;
+                }
+                long micros = (System.nanoTime() - start) / ITERATIONS / 1000;
+                log.info("Страница {} из {} элементов в {}: {} байт, {} мкс на сериализацию",
+                        page.getKey(), SIZE, format.getKey(), bytes / (WARMUP + ITERATIONS), micros);
+                assertTrue(bytes > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryFormatsRoundTrip() throws Exception {
+        var post = new PostDTO();
+        post.setId(1L);
+        post.setText("Ищем разработчика в команду проекта");
+        post.setTeamRoleTags(List.of(TeamRoleTag.BACKEND, TeamRoleTag.DESIGNER));
+        var fromCbor = cbor.readValue(cbor.writeValueAsBytes(post), PostDTO.class);
+        var fromSmile = smile.readValue(smile.writeValueAsBytes(post), PostDTO.class);
+        assertEquals(post, fromCbor);
+        assertEquals(post, fromSmile);
+    }
+
+    private static <T> Page<T> page(Function<Integer, T> element) {
+        var content = new ArrayList<T>();
+        for (int i = 0; i < SIZE; i++) {
+            content.add(element.apply(i));
+        }
+        return new PageImpl<>(content, PageRequest.of(0, SIZE), SIZE * 10L);
+    }
+
+    private static User user(int i) {
+        return User.builder().id((long) i).version(1L).firstname("John" + i).lastname("Doe")
+                .email("john" + i + "@example.com").teamRole(TeamRoleTag.values()[i % TeamRoleTag.values().length])
+                .role(Role.USER).build();
+    }
+
+    private Page<PostDTO> posts() {
+        return page(i -> {
+            var dto = new PostDTO();
+            dto.setId((long) i);
+            dto.setText("Ищем разработчика в команду проекта номер " + i);
+            dto.setTeamRoleTags(List.of(TeamRoleTag.BACKEND, TeamRoleTag.DESIGNER));
+            dto.setRespondents(List.of(user(i), user(i + 1), user(i + 2)));
+            return dto;
+        });
+    }
+
+    private Page<ProjectDTO> projects() {
+        return page(i -> {
+            var dto = new ProjectDTO();
+            dto.setId((long) i);
+            dto.setName("Project " + i);
+            dto.setDescription("Description for project " + i);
+            dto.setLeader(user(i));
+            dto.setUsers(List.of(user(i), user(i + 1), user(i + 2), user(i + 3)));
+            dto.setReviews(List.of(Review.builder().id((long) i).rating(i % 5 + 1).text("Отличная работа в команде")
+                    .sender(user(i + 1)).receiver(user(i)).build()));
+            return dto;
+        });
+    }
+
+    private Page<ReviewDTO> reviews() {
+        return page(i -> {
+            var dto = new ReviewDTO();
+            dto.setId((long) i);
+            dto.setRating(i % 5 + 1);
+            dto.setText("Отличная работа в команде");
+            dto.setSender(user(i + 1));
+            dto.setReceiver(user(i));
+            dto.setProject(Project.builder().id((long) i).name("Project " + i).leader(user(i)).build());
+            return dto;
+        });
+    }
+
+    private Page<UserDTO> users() {
+        return page(i -> {
+            var dto = new UserDTO();
+            dto.setId((long) i);
+            dto.setFirstname("John" + i);
+            dto.setLastname("Doe");
+            dto.setEmail("john" + i + "@example.com");
+            dto.setRole(TeamRoleTag.DEVELOPER);
+            dto.setCurrentProjects(List.of(Project.builder().id((long) i).name("Project " + i).build()));
+            dto.setSentReviews(List.of(Review.builder().id((long) i).rating(5).text("Спасибо за проект").build()));
+            return dto;
+        });
+    }
+}
@@ -1,3 +1,3 @@
-INSERT INTO "post" ("title", "text") VALUES ('post1', 'First post text');
-INSERT INTO "post" ("title", "text") VALUES ('post2', 'Second post text');
+INSERT INTO "post" ("id", "title", "text") VALUES (NEXT VALUE FOR "post_seq", 'post1', 'First post text');
+INSERT INTO "post" ("id", "title", "text") VALUES (NEXT VALUE FOR "post_seq", 'post2', 'Second post text');
 
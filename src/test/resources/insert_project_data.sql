@@ -1,3 +1,3 @@
-INSERT INTO "project" ("name", "description", "link") VALUES ('Project 1', 'Description for Project 1', 'http://example.com/project1');
-INSERT INTO "project" ("name", "description", "link") VALUES ('Project 2', 'Description for Project 2', 'http://example.com/project2');
+INSERT INTO "project" ("id", "name", "description", "link") VALUES (NEXT VALUE FOR "project_seq", 'Project 1', 'Description for Project 1', 'http://example.com/project1');
+INSERT INTO "project" ("id", "name", "description", "link") VALUES (NEXT VALUE FOR "project_seq", 'Project 2', 'Description for Project 2', 'http://example.com/project2');
 
@@ -1,2 +1,2 @@
-INSERT INTO "review" ("rating", "text") VALUES (5, 'Отлично');
-INSERT INTO "review" ("rating", "text") VALUES (3, 'Более менее');
+INSERT INTO "review" ("id", "rating", "text") VALUES (NEXT VALUE FOR "review_seq", 5, 'Отлично');
+INSERT INTO "review" ("id", "rating", "text") VALUES (NEXT VALUE FOR "review_seq", 3, 'Более менее');
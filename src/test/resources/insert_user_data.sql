@@ -1,2 +1,2 @@
-INSERT INTO "user" ("firstname", "lastname", "email", "git_hub_link", "team_role")
-VALUES ('John', 'Doe', 'john.doe@example.com', 'https://github.com/johndoe', 1);
+INSERT INTO "user" ("id", "firstname", "lastname", "email", "git_hub_link", "team_role")
+VALUES (NEXT VALUE FOR "user_seq", 'John', 'Doe', 'john.doe@example.com', 'https://github.com/johndoe', 1);